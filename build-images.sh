@@ -1,10 +1,15 @@
-mvn clean install
+# AOT=true builds the AOT-processed context into the jar and starts the image from it
+if [ "$AOT" = "true" ]; then
+  mvn clean install -Paot
+else
+  mvn clean install
+fi
 
 mv target/seasonsforce-ms-payment-api-1.0-SNAPSHOT.jar api-image/seasonsforce-ms-payment-api-1.0-SNAPSHOT.jar
 
 cd api-image
 
-docker build -t payment-api .
+docker build --build-arg AOT_ENABLED=${AOT:-false} -t payment-api .
 
 cd ../postgres-image
 
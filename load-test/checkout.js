@@ -0,0 +1,36 @@
+// Checkout load test: POST /api/v1/payment/ from many concurrent clients.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e TOKEN=<recruiter access token> \
+//          -e RECRUITER_ID=<uuid> -e PLAN_ID=<uuid> -e VUS=1000 load-test/checkout.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+export const options = {
+    scenarios: {
+        checkout: {
+            executor: 'constant-vus',
+            vus: Number(__ENV.VUS || 1000),
+            duration: __ENV.DURATION || '2m',
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+const payload = JSON.stringify({
+    recruiterId: __ENV.RECRUITER_ID,
+    planId: __ENV.PLAN_ID,
+    paymentDate: new Date().toISOString(),
+    paymentMethod: 'CREDIT_CARD',
+});
+
+const params = {
+    headers: {
+        'Content-Type': 'application/json',
+        'Authorization': `Bearer ${__ENV.TOKEN}`,
+    },
+};
+
+export default function () {
+    const response = http.post(`${__ENV.BASE_URL || 'http://localhost:8080'}/api/v1/payment/`, payload, params);
+    check(response, { 'payment created': (r) => r.status === 201 });
+}
@@ -0,0 +1,64 @@
+# Stand-ins for the config server (port 8888), with an empty JWK set, and for Eureka (port 8761), used by startup.sh.
+# The configuration served points payment-api at the PostgreSQL of STANDIN_DB_URL.
+import json
+import os
+import threading
+from http.server import BaseHTTPRequestHandler, ThreadingHTTPServer
+
+CONFIG = {
+    "spring.datasource.url": os.environ.get("STANDIN_DB_URL", "jdbc:postgresql://localhost:5432/payment"),
+    "spring.datasource.username": os.environ.get("STANDIN_DB_USERNAME", "postgres"),
+    "spring.datasource.password": os.environ.get("STANDIN_DB_PASSWORD", "postgres"),
+    "spring.jpa.hibernate.ddl-auto": "update",
+    "eureka.client.service-url.defaultZone": "http://localhost:8761/eureka/",
+}
+
+
+class Handler(BaseHTTPRequestHandler):
+
+    def reply(self, status, body=None):
+        payload = json.dumps(body).encode() if body is not None else b""
+        self.send_response(status)
+        self.send_header("Content-Type", "application/json")
+        self.send_header("Content-Length", str(len(payload)))
+        self.end_headers()
+        self.wfile.write(payload)
+
+    def log_message(self, format, *args):
+        pass
+
+
+class ConfigServer(Handler):
+
+    def do_GET(self):
+        if self.path.endswith("/certs"):
+            self.reply(200, {"keys": []})
+        else:
+            self.reply(200, {
+                "name": "payment-api",
+                "profiles": ["default"],
+                "propertySources": [{"name": "stand-in", "source": CONFIG}],
+            })
+
+
+class Eureka(Handler):
+
+    def do_GET(self):
+        self.reply(200, {"applications": {"versions__delta": "1", "apps__hashcode": "", "application": []}})
+
+    def do_POST(self):
+        self.rfile.read(int(self.headers.get("Content-Length", 0)))
+        self.reply(204)
+
+    def do_PUT(self):
+        self.reply(200)
+
+    def do_DELETE(self):
+        self.reply(200)
+
+
+if __name__ == "__main__":
+    servers = [ThreadingHTTPServer(("", 8888), ConfigServer), ThreadingHTTPServer(("", 8761), Eureka)]
+    for server in servers[1:]:
+        threading.Thread(target=server.serve_forever, daemon=True).start()
+    servers[0].serve_forever()
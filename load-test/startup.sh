@@ -0,0 +1,40 @@
+#!/bin/sh
+# Time to first successful request: milliseconds from `docker run` until /actuator/health answers 200, against the
+# stand-in config server and Eureka of stand-ins.py and a local PostgreSQL.
+#
+#   load-test/startup.sh <image> [runs] [docker run options...]
+#
+#   load-test/startup.sh payment-api 5                        # with the CDS archive
+#   load-test/startup.sh payment-api 5 -e JAVA_CDS_OPTS=      # without it
+IMAGE=${1:?image}
+RUNS=${2:-5}
+shift
+[ $# -gt 0 ] && shift
+
+python3 "$(dirname "$0")/stand-ins.py" &
+STAND_INS=$!
+trap 'kill $STAND_INS' EXIT
+sleep 1
+
+TOTAL=0
+for RUN in $(seq "$RUNS"); do
+  START=$(date +%s%N)
+  CONTAINER=$(docker run -d --network host \
+    -e CONFIG_SERVER_URI=http://localhost:8888 \
+    -e JWT_ISSUER_URI=http://localhost:8888/realms/stand-in \
+    -e JWT_JWK_SET_URI=http://localhost:8888/realms/stand-in/protocol/openid-connect/certs \
+    "$@" "$IMAGE")
+  until curl -fs -o /dev/null http://localhost:8080/actuator/health; do
+    if [ "$(docker inspect -f '{{.State.Running}}' "$CONTAINER")" != "true" ]; then
+      docker logs "$CONTAINER"
+      docker rm -f "$CONTAINER" > /dev/null
+      exit 1
+    fi
+    sleep 0.05
+  done
+  ELAPSED=$(( ($(date +%s%N) - START) / 1000000 ))
+  docker rm -f "$CONTAINER" > /dev/null
+  echo "run $RUN: ${ELAPSED} ms"
+  TOTAL=$((TOTAL + ELAPSED))
+done
+echo "average: $((TOTAL / RUNS)) ms"
@@ -0,0 +1,310 @@
+package fr.polytech.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fr.polytech.App;
+import fr.polytech.model.Plan;
+import fr.polytech.repository.PlanRepository;
+import fr.polytech.service.PlanCatalog;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput and latency of POST /api/v1/payment/ with many concurrent clients, to compare the platform thread pool
+ * with virtual threads. The application runs in this JVM against PostgreSQL, with user-api, address-api, invoice-api
+ * and the JWK set of Keycloak replaced by an HTTP stand-in answering after a fixed latency. Every checkout is for
+ * another recruiter, so none is served from the upstream cache.
+ * <p>
+ * The first argument is the mode, platform or virtual. The other arguments are passed to the application, for example
+ * --payment.resilience.max-concurrent-calls=1000. Configured with BENCH_JDBC_URL, BENCH_JDBC_USER,
+ * BENCH_JDBC_PASSWORD, BENCH_CLIENTS, BENCH_WARMUP, BENCH_DURATION and BENCH_UPSTREAM_LATENCY (milliseconds).
+ */
+public class CheckoutLoadBenchmark {
+
+    private static final String JDBC_URL = env("BENCH_JDBC_URL", "jdbc:postgresql://localhost:5432/postgres");
+    private static final String JDBC_USER = env("BENCH_JDBC_USER", "postgres");
+    private static final String JDBC_PASSWORD = env("BENCH_JDBC_PASSWORD", "postgres");
+    private static final int CLIENTS = Integer.parseInt(env("BENCH_CLIENTS", "1000"));
+    private static final Duration WARMUP = Duration.ofSeconds(Long.parseLong(env("BENCH_WARMUP", "20")));
+    private static final Duration DURATION = Duration.ofSeconds(Long.parseLong(env("BENCH_DURATION", "60")));
+    private static final long UPSTREAM_LATENCY = Long.parseLong(env("BENCH_UPSTREAM_LATENCY", "50"));
+    private static final String ISSUER = "http://localhost/realms/bench";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "platform";
+        if (!mode.equals("platform") && !mode.equals("virtual")) {
+            throw new IllegalArgumentException("Mode must be platform or virtual, not " + mode);
+        }
+        RSAKey key = new RSAKeyGenerator(2048).keyID("bench").generate();
+        HttpServer standIn = standIn(key);
+        String standInUrl = "http://localhost:" + standIn.getAddress().getPort();
+
+        List<String> properties = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--CONFIG_SERVER_URI=http://localhost:8888",
+                "--eureka.client.enabled=false",
+                "--spring.security.oauth2.resourceserver.jwt.issuer-uri=" + ISSUER,
+                "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + standInUrl + "/certs",
+                "--spring.datasource.url=" + JDBC_URL,
+                "--spring.datasource.username=" + JDBC_USER,
+                "--spring.datasource.password=" + JDBC_PASSWORD,
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--management.tracing.enabled=false",
+                "--logging.level.root=WARN",
+                "--payment.expiry.enabled=false",
+                "--payment.virtual-threads.enabled=" + mode.equals("virtual")
+        ));
+        properties.addAll(List.of(args).subList(Math.min(1, args.length), args.length));
+
+        ReactiveDiscoveryClient discoveryClient = discoveryClient(standIn.getAddress().getPort());
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(App.class)
+                .initializers(applicationContext -> applicationContext.getBeanFactory().registerSingleton("standInDiscoveryClient", discoveryClient))
+                .run(properties.toArray(String[]::new))) {
+            Plan plan = new Plan();
+            plan.setName("Premium");
+            plan.setDescription("Premium");
+            plan.setPrice(49.99f);
+            plan.setCurrency("EUR");
+            plan.setMonthsDuration(1);
+            plan = context.getBean(PlanRepository.class).save(plan);
+            context.getBean(PlanCatalog.class).planChanged();
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            run(mode, URI.create("http://localhost:" + port + "/api/v1/payment/"), token(key), plan.getId());
+        } finally {
+            standIn.stop(0);
+        }
+    }
+
+    /**
+     * Send checkouts from every client in a loop, and report the requests completed after the warm-up.
+     */
+    private static void run(String mode, URI uri, String token, UUID planId) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        long measureFrom = System.nanoTime() + WARMUP.toNanos();
+        long measureUntil = measureFrom + DURATION.toNanos();
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+        List<long[]> latencies = new ArrayList<>();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                long[] recorded = new long[1 << 16];
+                latencies.add(recorded);
+                clients.submit(() -> {
+                    int count = 0;
+                    while (true) {
+                        long start = System.nanoTime();
+                        if (start >= measureUntil) {
+                            break;
+                        }
+                        int status;
+                        try {
+                            status = client.send(checkout(uri, token, planId), HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (IOException e) {
+                            status = -1;
+                        }
+                        long end = System.nanoTime();
+                        if (start >= measureFrom && end <= measureUntil) {
+                            statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                            if (status == 201 && count < recorded.length - 1) {
+                                recorded[++count] = end - start;
+                            }
+                        }
+                    }
+                    recorded[0] = count;
+                    return null;
+                });
+            }
+        }
+
+        List<Long> created = new ArrayList<>();
+        for (long[] recorded : latencies) {
+            for (int i = 1; i <= recorded[0]; i++) {
+                created.add(recorded[i]);
+            }
+        }
+        created.sort(null);
+        double seconds = DURATION.toNanos() / 1e9;
+        System.out.printf("%-8s %5d clients %6.1f checkouts/s   p50 %6.0f ms   p99 %6.0f ms   max %6.0f ms   statuses %s%n",
+                mode, CLIENTS, created.size() / seconds,
+                percentile(created, 0.50), percentile(created, 0.99), percentile(created, 1.0),
+                new TreeMap<>(statuses));
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+    private static HttpRequest checkout(URI uri, String token, UUID planId) throws IOException {
+        byte[] body = MAPPER.writeValueAsBytes(Map.of(
+                "recruiterId", UUID.randomUUID(),
+                "planId", planId,
+                "paymentDate", new Date(),
+                "paymentMethod", "CREDIT_CARD"
+        ));
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + token)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    /**
+     * Access token of a recruiter, signed with the key of the stand-in JWK set.
+     */
+    private static String token(RSAKey key) throws JOSEException {
+        String resourceId = env("RESOURCE_ID", "payment-api");
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject(UUID.randomUUID().toString())
+                .claim("preferred_username", "recruiter")
+                .claim("resource_access", Map.of(resourceId, Map.of("roles", List.of("client_recruiter"))))
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    /**
+     * Stand-in for the JWK set, user-api, address-api and invoice-api. Each call is answered after the upstream
+     * latency, on its own virtual thread, so the stand-in never limits the concurrency of the application.
+     */
+    private static HttpServer standIn(RSAKey key) throws IOException {
+        // The server closes the idle connections beyond 200 by default, which the pooled client then fails to reuse
+        System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(4 * CLIENTS));
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        String jwkSet = new JWKSet(key.toPublicJWK()).toString();
+        server.createContext("/certs", exchange -> reply(exchange, jwkSet.getBytes()));
+        server.createContext("/api/v1/user/", exchange -> {
+            UUID id = UUID.fromString(lastSegment(exchange));
+            delay();
+            reply(exchange, MAPPER.writeValueAsBytes(Map.of(
+                    "id", id, "firstName", "Jane", "lastName", "Doe", "role", "recruiter",
+                    "addressId", UUID.nameUUIDFromBytes(id.toString().getBytes())
+            )));
+        });
+        server.createContext("/api/v1/address/", exchange -> {
+            UUID id = UUID.fromString(lastSegment(exchange));
+            delay();
+            reply(exchange, MAPPER.writeValueAsBytes(Map.of(
+                    "id", id, "street", "Route des Colles", "number", "930", "city", "Biot",
+                    "zipCode", "06410", "country", "France"
+            )));
+        });
+        server.createContext("/api/v1/invoice/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            delay();
+            reply(exchange, MAPPER.writeValueAsBytes(Map.of("id", UUID.randomUUID())));
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Discovery of the stand-in under the names of the upstream services, for the load balancer, which reads the
+     * reactive discovery clients. Like Eureka's, its instances tell their scheme, which replaces the lb scheme of the
+     * upstream URLs.
+     */
+    private static ReactiveDiscoveryClient discoveryClient(int port) {
+        List<String> services = List.of("user-api", "address-api", "invoice-api");
+        return new ReactiveDiscoveryClient() {
+
+            @Override
+            public String description() {
+                return "Stand-in of the upstream services";
+            }
+
+            @Override
+            public Flux<ServiceInstance> getInstances(String serviceId) {
+                if (!services.contains(serviceId)) {
+                    return Flux.empty();
+                }
+                return Flux.just(new DefaultServiceInstance(serviceId, serviceId, "localhost", port, false) {
+
+                    @Override
+                    public String getScheme() {
+                        return "http";
+                    }
+                });
+            }
+
+            @Override
+            public Flux<String> getServices() {
+                return Flux.fromIterable(services);
+            }
+        };
+    }
+
+    private static String lastSegment(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static void delay() {
+        try {
+            Thread.sleep(UPSTREAM_LATENCY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reply(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private static String env(String name, String defaultValue) {
+        return Optional.ofNullable(System.getenv(name)).orElse(defaultValue);
+    }
+}
@@ -0,0 +1,120 @@
+package fr.polytech.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.polytech.model.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private PaymentDTO payment;
+
+    private RecruiterDTO recruiter;
+
+    private InvoiceDataDTO invoiceData;
+
+    private AddressDTO address;
+
+    private byte[] paymentJson;
+
+    private byte[] recruiterJson;
+
+    private byte[] invoiceDataJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        payment = new PaymentDTO();
+        payment.setRecruiterId(UUID.randomUUID());
+        payment.setPlanId(UUID.randomUUID());
+        payment.setPaymentDate(new Date());
+        payment.setPaymentMethod(PaymentMethod.CREDIT_CARD);
+
+        recruiter = new RecruiterDTO();
+        recruiter.setId(UUID.randomUUID());
+        recruiter.setEmail("jane.doe@example.com");
+        recruiter.setFirstName("Jane");
+        recruiter.setLastName("Doe");
+        recruiter.setUsername("jdoe");
+        recruiter.setRole("recruiter");
+        recruiter.setRegistered(true);
+        recruiter.setToBeRemoved(false);
+        recruiter.setBirthdate(new Date());
+        recruiter.setCitizenship("French");
+        recruiter.setPhone("+33600000000");
+        recruiter.setAddressId(UUID.randomUUID());
+        recruiter.setGender(1);
+        recruiter.setCompanyId(UUID.randomUUID());
+        recruiter.setPlanId(UUID.randomUUID());
+        recruiter.setOfferIdList(List.of(UUID.randomUUID(), UUID.randomUUID()));
+        recruiter.setPaymentIdList(List.of(UUID.randomUUID()));
+
+        invoiceData = new InvoiceDataDTO();
+        invoiceData.setCreationDate(new Date());
+        invoiceData.setName("Doe");
+        invoiceData.setSurname("Jane");
+        invoiceData.setAddress("Place Eugène Bataillon 1, 34090 Montpellier, France");
+        invoiceData.setPlan("Premium");
+        invoiceData.setPrice(49.99);
+
+        address = new AddressDTO();
+        address.setStreet("Place Eugène Bataillon");
+        address.setNumber("1");
+        address.setZipCode("34090");
+        address.setCity("Montpellier");
+        address.setCountry("France");
+
+        paymentJson = objectMapper.writeValueAsBytes(payment);
+        recruiterJson = objectMapper.writeValueAsBytes(recruiter);
+        invoiceDataJson = objectMapper.writeValueAsBytes(invoiceData);
+    }
+
+    @Benchmark
+    public byte[] serializePayment() throws Exception {
+        return objectMapper.writeValueAsBytes(payment);
+    }
+
+    @Benchmark
+    public PaymentDTO deserializePayment() throws Exception {
+        return objectMapper.readValue(paymentJson, PaymentDTO.class);
+    }
+
+    @Benchmark
+    public byte[] serializeRecruiter() throws Exception {
+        return objectMapper.writeValueAsBytes(recruiter);
+    }
+
+    @Benchmark
+    public RecruiterDTO deserializeRecruiter() throws Exception {
+        return objectMapper.readValue(recruiterJson, RecruiterDTO.class);
+    }
+
+    @Benchmark
+    public byte[] serializeInvoiceData() throws Exception {
+        return objectMapper.writeValueAsBytes(invoiceData);
+    }
+
+    @Benchmark
+    public InvoiceDataDTO deserializeInvoiceData() throws Exception {
+        return objectMapper.readValue(invoiceDataJson, InvoiceDataDTO.class);
+    }
+
+    @Benchmark
+    public String addressToString() {
+        return address.toString();
+    }
+}
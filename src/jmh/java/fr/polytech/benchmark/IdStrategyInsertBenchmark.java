@@ -0,0 +1,83 @@
+package fr.polytech.benchmark;
+
+import fr.polytech.model.TimeOrderedUuidGenerator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Compare insert throughput and primary key index size of random UUIDs against time-ordered UUIDs on PostgreSQL.
+ * Rows have the same shape as the payment table and are inserted with JDBC batches, as Hibernate does.
+ * <p>
+ * Configured with BENCH_JDBC_URL, BENCH_JDBC_USER, BENCH_JDBC_PASSWORD, BENCH_ROWS and BENCH_BATCH_SIZE.
+ */
+public class IdStrategyInsertBenchmark {
+
+    private static final String JDBC_URL = env("BENCH_JDBC_URL", "jdbc:postgresql://localhost:5432/postgres?reWriteBatchedInserts=true");
+    private static final String JDBC_USER = env("BENCH_JDBC_USER", "postgres");
+    private static final String JDBC_PASSWORD = env("BENCH_JDBC_PASSWORD", "postgres");
+    private static final int ROWS = Integer.parseInt(env("BENCH_ROWS", "1000000"));
+    private static final int BATCH_SIZE = Integer.parseInt(env("BENCH_BATCH_SIZE", "50"));
+
+    public static void main(String[] args) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASSWORD)) {
+            connection.setAutoCommit(false);
+            run(connection, "bench_random_uuid", UUID::randomUUID);
+            run(connection, "bench_time_ordered_uuid", TimeOrderedUuidGenerator::next);
+        }
+    }
+
+    private static void run(Connection connection, String table, Supplier<UUID> ids) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + table);
+            statement.execute("CREATE TABLE " + table + " (id uuid PRIMARY KEY, recruiter_id uuid, payment_date timestamp(6), " +
+                    "expires_on timestamp(6), plan_id uuid, invoice_id uuid, payment_method varchar(255))");
+        }
+        connection.commit();
+
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= ROWS; i++) {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                insert.setObject(1, ids.get());
+                insert.setObject(2, UUID.randomUUID());
+                insert.setTimestamp(3, now);
+                insert.setTimestamp(4, now);
+                insert.setObject(5, UUID.randomUUID());
+                insert.setObject(6, UUID.randomUUID());
+                insert.setString(7, "CREDIT_CARD");
+                insert.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long indexSize;
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT pg_relation_size('" + table + "_pkey')")) {
+            result.next();
+            indexSize = result.getLong(1);
+        }
+        connection.commit();
+
+        System.out.printf("%-25s %,12d rows %10.1f s %,12.0f rows/s   pkey index %,8d KiB%n",
+                table, ROWS, seconds, ROWS / seconds, indexSize / 1024);
+    }
+
+    private static String env(String name, String defaultValue) {
+        return Optional.ofNullable(System.getenv(name)).orElse(defaultValue);
+    }
+}
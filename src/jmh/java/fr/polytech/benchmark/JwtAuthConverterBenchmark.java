@@ -0,0 +1,67 @@
+package fr.polytech.benchmark;
+
+import fr.polytech.config.JwtAuthConverter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthConverterBenchmark {
+
+    private JwtAuthConverter converter;
+
+    private JwtAuthConverter uncachedConverter;
+
+    private Jwt jwt;
+
+    @Setup
+    public void setUp() {
+        converter = new JwtAuthConverter();
+        uncachedConverter = new JwtAuthConverter(0);
+
+        String resourceId = Optional.ofNullable(System.getenv("RESOURCE_ID")).orElse("payment-api");
+        Map<String, Object> resourceAccess = new HashMap<>();
+        resourceAccess.put(resourceId, Map.of("roles", List.of("client_recruiter")));
+
+        Instant now = Instant.now();
+        jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject(UUID.randomUUID().toString())
+                .claim("jti", UUID.randomUUID().toString())
+                .claim("preferred_username", "recruiter")
+                .claim("scope", "openid profile email")
+                .claim("resource_access", resourceAccess)
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(3600))
+                .build();
+    }
+
+    /**
+     * Repeated requests with the same token, served from the per-token cache.
+     */
+    @Benchmark
+    public AbstractAuthenticationToken convert() {
+        return converter.convert(jwt);
+    }
+
+    /**
+     * First request of every token: the authentication is built, but the authority set is interned.
+     */
+    @Benchmark
+    public AbstractAuthenticationToken convertUncached() {
+        return uncachedConverter.convert(jwt);
+    }
+}
@@ -0,0 +1,103 @@
+package fr.polytech.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import fr.polytech.config.InfoLogSampler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a per-request INFO log, written by four request threads to a discarding output stream. Compares string
+ * concatenation with a parameterised message, a synchronous appender with the asynchronous one of
+ * logback-spring.xml, and sampling rates. Run with -prof gc to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LoggingBenchmark {
+
+    @Param({"sync", "async"})
+    private String appender;
+
+    @Param({"INFO", "WARN"})
+    private String level;
+
+    @Param({"1.0", "0.1"})
+    private double sampleRate;
+
+    private LoggerContext context;
+
+    private Logger logger;
+
+    private UUID id;
+
+    @Setup
+    public void setUp() {
+        context = new LoggerContext();
+
+        InfoLogSampler sampler = new InfoLogSampler();
+        sampler.setContext(context);
+        sampler.setRate(sampleRate);
+        sampler.start();
+        context.addTurboFilter(sampler);
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p [payment-api,%X{traceId:-},%X{spanId:-}] %logger{39} : %m%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> console = new OutputStreamAppender<>();
+        console.setContext(context);
+        console.setName("CONSOLE");
+        console.setEncoder(encoder);
+        console.setOutputStream(OutputStream.nullOutputStream());
+        console.start();
+
+        Appender<ILoggingEvent> root = console;
+        if ("async".equals(appender)) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setName("ASYNC_CONSOLE");
+            async.setQueueSize(8192);
+            async.setIncludeCallerData(false);
+            async.addAppender(console);
+            async.start();
+            root = async;
+        }
+
+        logger = context.getLogger("fr.polytech.service.PaymentService");
+        logger.setLevel(Level.toLevel(level));
+        logger.setAdditive(false);
+        logger.addAppender(root);
+
+        id = UUID.randomUUID();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Benchmark
+    public void concatenated() {
+        logger.info("Getting payment by id: " + id);
+    }
+
+    @Benchmark
+    public void parameterised() {
+        logger.info("Getting payment by id: {}", id);
+    }
+}
@@ -0,0 +1,40 @@
+package fr.polytech.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * In-memory stand-ins for the Spring Data repositories, so that benchmarks exercise the service code without a
+ * database.
+ */
+public final class Stubs {
+
+    private Stubs() {
+    }
+
+    /**
+     * Create a stub implementing a repository interface.
+     *
+     * @param type    Repository interface
+     * @param answers Answer of each stubbed method, by method name, given the call arguments
+     * @return Stub repository, throwing UnsupportedOperationException for methods without an answer
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T repository(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> type.getSimpleName() + " stub";
+                };
+            }
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer == null) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            return answer.apply(args);
+        });
+    }
+}
@@ -0,0 +1,187 @@
+package fr.polytech.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.polytech.benchmark.Stubs;
+import fr.polytech.config.ResilienceProperties;
+import fr.polytech.model.*;
+import fr.polytech.repository.PaymentRepository;
+import fr.polytech.repository.PlanCatalogVersionRepository;
+import fr.polytech.repository.PlanRepository;
+import fr.polytech.repository.RecruiterPlanSubscriptionRepository;
+import fr.polytech.repository.RevenueRollupRepository;
+import fr.polytech.repository.SubscriptionRollupRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * Benchmarks of the CPU-side work of PaymentService. Repositories are in-memory stubs and user-api, address-api and
+ * invoice-api are answered by a mock server bound to the RestTemplate, so createPayment measures our own code and
+ * the HTTP client stack without any network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentServiceBenchmark {
+
+    private PaymentService paymentService;
+
+    private PaymentDTO payment;
+
+    private RecruiterDTO recruiter;
+
+    private AddressDTO address;
+
+    private Plan plan;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        plan = new Plan();
+        plan.setId(UUID.randomUUID());
+        plan.setName("Premium");
+        plan.setDescription("Unlimited offers");
+        plan.setPrice(49.99f);
+        plan.setCurrency("EUR");
+        plan.setMonthsDuration(12);
+
+        address = new AddressDTO();
+        address.setId(UUID.randomUUID());
+        address.setStreet("Place Eugène Bataillon");
+        address.setNumber("1");
+        address.setZipCode("34090");
+        address.setCity("Montpellier");
+        address.setCountry("France");
+
+        recruiter = new RecruiterDTO();
+        recruiter.setId(UUID.randomUUID());
+        recruiter.setFirstName("Jane");
+        recruiter.setLastName("Doe");
+        recruiter.setRole("recruiter");
+        recruiter.setAddressId(address.getId());
+
+        InvoiceDTO invoice = new InvoiceDTO();
+        invoice.setId(UUID.randomUUID());
+        invoice.setCreationDate(new Date());
+
+        payment = new PaymentDTO();
+        payment.setRecruiterId(recruiter.getId());
+        payment.setPlanId(plan.getId());
+        payment.setPaymentDate(new Date());
+        payment.setPaymentMethod(PaymentMethod.CREDIT_CARD);
+
+        PlanRepository planRepository = Stubs.repository(PlanRepository.class, Map.of(
+                "findAll", args -> List.of(plan)
+        ));
+        PlanCatalogVersionRepository planCatalogVersionRepository = Stubs.repository(PlanCatalogVersionRepository.class, Map.of(
+                "findCatalogVersion", args -> Optional.of(1L)
+        ));
+        PaymentRepository paymentRepository = Stubs.repository(PaymentRepository.class, Map.of(
+                "save", args -> {
+                    Payment saved = (Payment) args[0];
+                    saved.setId(UUID.randomUUID());
+                    return saved;
+                }
+        ));
+
+        PlanCatalog planCatalog = new PlanCatalog();
+        ReflectionTestUtils.setField(planCatalog, "planRepository", planRepository);
+        ReflectionTestUtils.setField(planCatalog, "planCatalogVersionRepository", planCatalogVersionRepository);
+
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+        server.expect(ExpectedCount.manyTimes(), requestTo(containsString("/api/v1/user/")))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(recruiter), MediaType.APPLICATION_JSON));
+        server.expect(ExpectedCount.manyTimes(), requestTo(containsString("/api/v1/address/")))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(address), MediaType.APPLICATION_JSON));
+        server.expect(ExpectedCount.manyTimes(), method(HttpMethod.POST))
+                .andRespond(withSuccess(objectMapper.writeValueAsString(invoice), MediaType.APPLICATION_JSON));
+
+        paymentService = new PaymentService();
+        ReflectionTestUtils.setField(paymentService, "paymentRepository", paymentRepository);
+        ReflectionTestUtils.setField(paymentService, "planCatalog", planCatalog);
+        ReflectionTestUtils.setField(paymentService, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(paymentService, "paymentExecutor", (Executor) Runnable::run);
+        ReflectionTestUtils.setField(paymentService, "upstreamCache",
+                new UpstreamCache(meterRegistry, false, 1, Duration.ofSeconds(1), Duration.ofSeconds(1)));
+        ReflectionTestUtils.setField(paymentService, "upstreamGuard", new UpstreamGuard(new ResilienceProperties(), meterRegistry));
+        ReflectionTestUtils.setField(paymentService, "paymentMetrics", new PaymentMetrics(meterRegistry));
+        ReflectionTestUtils.setField(paymentService, "activeSubscriptionService",
+                new ActiveSubscriptionService(paymentRepository, meterRegistry, 1000, Duration.ofMinutes(5), Duration.ofSeconds(10)));
+        ReflectionTestUtils.setField(paymentService, "analyticsService", new AnalyticsService(
+                Stubs.repository(RevenueRollupRepository.class, Map.of("add", args -> null)),
+                Stubs.repository(SubscriptionRollupRepository.class, Map.of("add", args -> null)),
+                Stubs.repository(RecruiterPlanSubscriptionRepository.class, Map.of("extend", args -> new SubscriptionExpiryChange() {
+                    @Override
+                    public Date getPreviousExpiresOn() {
+                        return null;
+                    }
+
+                    @Override
+                    public Date getExpiresOn() {
+                        return (Date) args[2];
+                    }
+                }))
+        ));
+        ReflectionTestUtils.setField(paymentService, "transactionTemplate", new TransactionTemplate(new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        }));
+    }
+
+    @Benchmark
+    public InvoiceDataDTO buildInvoiceData() {
+        return PaymentService.buildInvoiceData(payment, recruiter, address, plan);
+    }
+
+    @Benchmark
+    public Date computeExpiryDate() {
+        return PaymentService.computeExpiryDate(plan.getMonthsDuration());
+    }
+
+    @Benchmark
+    public Payment createPayment() {
+        return paymentService.createPayment(payment, "Bearer token");
+    }
+}
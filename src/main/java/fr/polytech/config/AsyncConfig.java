@@ -0,0 +1,63 @@
+package fr.polytech.config;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    @Value("${payment.orchestration.pool-size:32}")
+    private int poolSize;
+
+    @Value("${payment.orchestration.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${payment.virtual-threads.enabled:false}")
+    private boolean virtualThreads;
+
+    /**
+     * Executor used to run the independent steps of the payment pipeline concurrently.
+     * When the queue is full, the task runs on the calling thread so the request degrades to sequential execution
+     * instead of failing. With virtual threads, every task gets its own virtual thread and concurrency is bounded by
+     * the HTTP connection pool instead.
+     * Tasks carry the trace context and MDC of the submitting thread, so upstream calls stay in the request trace.
+     *
+     * @return Executor for the payment pipeline
+     */
+    @Bean(name = "paymentExecutor")
+    Executor paymentExecutor() {
+        if (virtualThreads) {
+            return ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(), ContextSnapshot::captureAll);
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("payment-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(runnable -> ContextSnapshot.captureAll().wrap(runnable));
+        return executor;
+    }
+
+    /**
+     * Declaring paymentExecutor turns off Spring Boot's default executor, which Spring MVC uses for streamed
+     * responses. Declare it again from the auto-configured builder so spring.task.execution.* still applies.
+     *
+     * @param builder Auto-configured task executor builder
+     * @return Executor for asynchronous request processing
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+}
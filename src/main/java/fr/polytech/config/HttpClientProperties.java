@@ -0,0 +1,128 @@
+package fr.polytech.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "payment.http-client")
+public class HttpClientProperties {
+
+    /**
+     * Maximum number of connections in the pool, all routes included.
+     */
+    private int maxTotal = 200;
+
+    /**
+     * Maximum number of connections per route when the route has no specific limit.
+     */
+    private int defaultMaxPerRoute = 50;
+
+    /**
+     * Specific connection limits, keyed by route (for example http://10.0.0.12:8080).
+     */
+    private Map<String, Integer> maxPerRoute = new HashMap<>();
+
+    /**
+     * Time allowed to establish a connection.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Time allowed between two packets of a response.
+     */
+    private Duration responseTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Time allowed to lease a connection from the pool.
+     */
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);
+
+    /**
+     * How long an idle connection is kept alive when the server does not say otherwise.
+     */
+    private Duration keepAlive = Duration.ofSeconds(30);
+
+    /**
+     * Idle connections older than this are closed by the background evictor.
+     */
+    private Duration idleEviction = Duration.ofSeconds(60);
+
+    /**
+     * Idle connections are validated before reuse when they have been inactive for longer than this.
+     */
+    private Duration validateAfterInactivity = Duration.ofSeconds(2);
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getDefaultMaxPerRoute() {
+        return defaultMaxPerRoute;
+    }
+
+    public void setDefaultMaxPerRoute(int defaultMaxPerRoute) {
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+    }
+
+    public Map<String, Integer> getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public void setMaxPerRoute(Map<String, Integer> maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getResponseTimeout() {
+        return responseTimeout;
+    }
+
+    public void setResponseTimeout(Duration responseTimeout) {
+        this.responseTimeout = responseTimeout;
+    }
+
+    public Duration getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(Duration connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public Duration getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Duration keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public Duration getIdleEviction() {
+        return idleEviction;
+    }
+
+    public void setIdleEviction(Duration idleEviction) {
+        this.idleEviction = idleEviction;
+    }
+
+    public Duration getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    public void setValidateAfterInactivity(Duration validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+    }
+}
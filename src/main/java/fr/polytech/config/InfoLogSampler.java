@@ -0,0 +1,66 @@
+package fr.polytech.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keep only a share of the INFO and lower logs of the application, configured in logback-spring.xml.
+ * A turbo filter runs before the logging event is created, so a dropped log allocates nothing. Logs of the same trace
+ * are all kept or all dropped, so a sampled request can still be followed end to end. WARN and ERROR logs are always
+ * kept.
+ */
+public class InfoLogSampler extends TurboFilter {
+
+    private static final int BUCKETS = 10_000;
+
+    private String loggerPrefix = "fr.polytech";
+
+    private double rate = 1.0;
+
+    private int threshold = BUCKETS;
+
+    @Override
+    public void start() {
+        if (rate < 0 || rate > 1) {
+            addError("Sampling rate must be between 0 and 1, got " + rate);
+            return;
+        }
+        threshold = (int) Math.round(rate * BUCKETS);
+        super.start();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (threshold == BUCKETS || level == null || level.isGreaterOrEqual(Level.WARN)
+                || !logger.getName().startsWith(loggerPrefix)) {
+            return FilterReply.NEUTRAL;
+        }
+        String traceId = MDC.get("traceId");
+        int bucket = traceId != null
+                ? Math.floorMod(traceId.hashCode(), BUCKETS)
+                : ThreadLocalRandom.current().nextInt(BUCKETS);
+        return bucket < threshold ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public String getLoggerPrefix() {
+        return loggerPrefix;
+    }
+
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+}
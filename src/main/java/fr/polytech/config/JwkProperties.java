@@ -0,0 +1,115 @@
+package fr.polytech.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "payment.jwk")
+public class JwkProperties {
+
+    /**
+     * Time the keys fetched from the JWK set endpoint are used before being fetched again.
+     */
+    private Duration cacheTtl = Duration.ofMinutes(5);
+
+    /**
+     * The keys are fetched again in the background this long before the cached ones expire.
+     */
+    private Duration refreshAhead = Duration.ofSeconds(30);
+
+    /**
+     * Time a request waits for a refresh started by another request.
+     */
+    private Duration refreshTimeout = Duration.ofSeconds(15);
+
+    /**
+     * Time the last keys keep being used while the JWK set endpoint is unreachable, 0 to fail right away.
+     */
+    private Duration outageTolerance = Duration.ofHours(1);
+
+    /**
+     * Time allowed to connect to the JWK set endpoint.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Time allowed to read the JWK set.
+     */
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Signature algorithms accepted on tokens.
+     */
+    private List<String> algorithms = new ArrayList<>(List.of("RS256"));
+
+    /**
+     * Fetch the keys at startup rather than on the first request.
+     */
+    private boolean warmUp = true;
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    public Duration getRefreshAhead() {
+        return refreshAhead;
+    }
+
+    public void setRefreshAhead(Duration refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    public Duration getRefreshTimeout() {
+        return refreshTimeout;
+    }
+
+    public void setRefreshTimeout(Duration refreshTimeout) {
+        this.refreshTimeout = refreshTimeout;
+    }
+
+    public Duration getOutageTolerance() {
+        return outageTolerance;
+    }
+
+    public void setOutageTolerance(Duration outageTolerance) {
+        this.outageTolerance = outageTolerance;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public List<String> getAlgorithms() {
+        return algorithms;
+    }
+
+    public void setAlgorithms(List<String> algorithms) {
+        this.algorithms = algorithms;
+    }
+
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+}
@@ -1,5 +1,8 @@
 package fr.polytech.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
@@ -10,42 +13,120 @@ import org.springframework.security.oauth2.server.resource.authentication.JwtAut
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Component
 public class JwtAuthConverter implements Converter<Jwt, AbstractAuthenticationToken> {
 
+    private static final long DEFAULT_MAX_CACHED_TOKENS = 10_000;
+
+    private static final long MAX_AUTHORITY_SETS = 1_024;
+
     private final JwtGrantedAuthoritiesConverter jwtGrantedAuthoritiesConverter;
 
+    private final Cache<AuthorityKey, Set<GrantedAuthority>> authoritySets;
+
+    private final Cache<String, CachedAuthentication> authentications;
+
     public JwtAuthConverter() {
+        this(Optional.ofNullable(System.getenv("JWT_AUTHENTICATION_CACHE_MAX_SIZE"))
+                .map(Long::parseLong)
+                .orElse(DEFAULT_MAX_CACHED_TOKENS));
+    }
+
+    /**
+     * Create a converter caching at most the given number of authentications.
+     *
+     * @param maxCachedTokens Maximum number of tokens whose authentication is cached, 0 to disable the cache.
+     */
+    public JwtAuthConverter(long maxCachedTokens) {
         this.jwtGrantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
+        this.authoritySets = Caffeine.newBuilder()
+                .maximumSize(MAX_AUTHORITY_SETS)
+                .build();
+        this.authentications = Caffeine.newBuilder()
+                .maximumSize(maxCachedTokens)
+                .expireAfter(new UntilTokenExpiry())
+                .build();
     }
 
     private final String principleAttribute = System.getenv("PRINCIPLE_ATTRIBUTE_NAME");
     private final String resourceId = System.getenv("RESOURCE_ID");
 
     /**
-     * Convert a Jwt to an AbstractAuthenticationToken
+     * Convert a Jwt to an AbstractAuthenticationToken.
+     * The interned authority set and the principal name of a token are cached by jti until the token expires, and
+     * users with the same scopes and roles share the same authority set. Each request gets its own authentication,
+     * so the details set on it by one request are never seen by another.
      *
      * @param jwt Jwt to convert
      * @return AbstractAuthenticationToken
      */
     @Override
     public AbstractAuthenticationToken convert(@NonNull Jwt jwt) {
-        Collection<GrantedAuthority> authorities = Stream.concat(
-                jwtGrantedAuthoritiesConverter.convert(jwt).stream(),
-                extractResourceRoles(jwt).stream()
-        ).collect(Collectors.toSet());
-
-        return new JwtAuthenticationToken(
-                jwt,
-                authorities,
-                getPrincipleClaimName(jwt)
-        );
+        String jti = jwt.getId();
+        if (jti == null || jwt.getExpiresAt() == null) {
+            return authenticate(jwt);
+        }
+        CachedAuthentication cached = authentications.get(jti, key -> cache(jwt));
+        if (!cached.tokenValue().equals(jwt.getTokenValue())) {
+            // Another token reusing the jti, do not hand out the authorities of the first one
+            return authenticate(jwt);
+        }
+        return new JwtAuthenticationToken(jwt, cached.authorities(), cached.name());
+    }
+
+    /**
+     * Build the authentication of a token from its interned authority set.
+     *
+     * @param jwt Jwt to authenticate
+     * @return JwtAuthenticationToken
+     */
+    private JwtAuthenticationToken authenticate(Jwt jwt) {
+        return new JwtAuthenticationToken(jwt, internAuthorities(jwt), getPrincipleClaimName(jwt));
+    }
+
+    /**
+     * Build the part of the authentication of a token that can be shared between its requests.
+     *
+     * @param jwt Jwt to authenticate
+     * @return Cached authentication
+     */
+    private CachedAuthentication cache(Jwt jwt) {
+        return new CachedAuthentication(jwt.getTokenValue(), jwt.getExpiresAt(), internAuthorities(jwt), getPrincipleClaimName(jwt));
+    }
+
+    /**
+     * Get the interned authority set of a token.
+     *
+     * @param jwt Jwt to get the authorities of
+     * @return Immutable set of authorities, shared by the tokens with the same scopes and roles
+     */
+    private Set<GrantedAuthority> internAuthorities(Jwt jwt) {
+        Collection<String> resourceRoles = extractResourceRoles(jwt);
+        AuthorityKey key = new AuthorityKey(jwt.getClaims().get("scope"), jwt.getClaims().get("scp"), resourceRoles);
+        return authoritySets.get(key, k -> buildAuthorities(jwt, resourceRoles));
+    }
+
+    /**
+     * Build the authorities of a token: its scopes and its roles on this resource.
+     *
+     * @param jwt           Jwt to extract the scopes from
+     * @param resourceRoles Roles on this resource
+     * @return Immutable set of authorities
+     */
+    private Set<GrantedAuthority> buildAuthorities(Jwt jwt, Collection<String> resourceRoles) {
+        Set<GrantedAuthority> authorities = new LinkedHashSet<>(jwtGrantedAuthoritiesConverter.convert(jwt));
+        for (String role : resourceRoles) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+        }
+        return Set.copyOf(authorities);
     }
 
     /**
@@ -64,24 +145,62 @@ public class JwtAuthConverter implements Converter<Jwt, AbstractAuthenticationTo
      * @param jwt Jwt to extract the roles from
      * @return Collection of roles
      */
-    private Collection<? extends GrantedAuthority> extractResourceRoles(Jwt jwt) {
-        Map<String, Object> resourceAccess;
-        Map<String, Object> resource;
-        Collection<String> resourceRoles;
-        if (jwt.getClaim("resource_access") == null) {
+    private Collection<String> extractResourceRoles(Jwt jwt) {
+        Map<String, Object> resourceAccess = jwt.getClaim("resource_access");
+        if (resourceAccess == null) {
             return Set.of();
         }
-        resourceAccess = jwt.getClaim("resource_access");
-
-        if (resourceAccess.get(resourceId) == null) {
+        Map<String, Object> resource = (Map<String, Object>) resourceAccess.get(resourceId);
+        if (resource == null) {
             return Set.of();
         }
-        resource = (Map<String, Object>) resourceAccess.get(resourceId);
+        Collection<String> resourceRoles = (Collection<String>) resource.get("roles");
+        return resourceRoles == null ? Set.of() : resourceRoles;
+    }
+
+    /**
+     * Claims the authorities of a token are built from.
+     *
+     * @param scope Value of the scope claim
+     * @param scp   Value of the scp claim
+     * @param roles Roles on this resource
+     */
+    private record AuthorityKey(Object scope, Object scp, Collection<String> roles) {
+    }
+
+    /**
+     * Immutable part of the authentication of a token, shared by its requests.
+     *
+     * @param tokenValue  Token the authentication was built for
+     * @param expiresAt   Expiry of the token
+     * @param authorities Interned authority set
+     * @param name        Principal name
+     */
+    private record CachedAuthentication(String tokenValue, Instant expiresAt, Set<GrantedAuthority> authorities,
+                                        String name) {
+    }
+
+    /**
+     * Keep a cached authentication until its token expires.
+     */
+    private static final class UntilTokenExpiry implements Expiry<String, CachedAuthentication> {
+
+        @Override
+        public long expireAfterCreate(String jti, CachedAuthentication authentication, long currentTime) {
+            Duration lifetime = Duration.between(Instant.now(), authentication.expiresAt());
+            return Math.max(lifetime.toNanos(), 0);
+        }
 
-        resourceRoles = (Collection<String>) resource.get("roles");
-        return resourceRoles
-                .stream()
-                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                .collect(Collectors.toSet());
+        @Override
+        public long expireAfterUpdate(String jti, CachedAuthentication authentication, long currentTime,
+                                      long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String jti, CachedAuthentication authentication, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,202 @@
+package fr.polytech.config;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.BadJOSEException;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import com.nimbusds.jwt.proc.JWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Decoders of the resource server, replacing the ones Spring Boot creates from the JWK set URI. The keys are cached
+ * and refreshed in the background before they expire, fetched at startup, and kept while the JWK set endpoint is down,
+ * so no request waits on Keycloak after a deploy or a key rotation.
+ */
+@Configuration
+@EnableConfigurationProperties(JwkProperties.class)
+public class JwtDecoderConfig {
+
+    private static final int JWK_SET_SIZE_LIMIT = 50 * 1024;
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(JwtDecoderConfig.class);
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}")
+    private String jwkSetUri;
+
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}")
+    private String issuerUri;
+
+    /**
+     * Keys of the JWK set endpoint, cached and refreshed ahead of expiry by a background task.
+     *
+     * @param properties Cache and timeout settings
+     * @return Source of the signing keys
+     * @throws MalformedURLException if the JWK set URI is not a valid URL
+     */
+    @Bean
+    JWKSource<SecurityContext> jwkSource(JwkProperties properties) throws MalformedURLException {
+        DefaultResourceRetriever retriever = new DefaultResourceRetriever(
+                (int) properties.getConnectTimeout().toMillis(),
+                (int) properties.getReadTimeout().toMillis(),
+                JWK_SET_SIZE_LIMIT
+        );
+        JWKSourceBuilder<SecurityContext> builder = JWKSourceBuilder.<SecurityContext>create(new URL(jwkSetUri), retriever)
+                .cache(properties.getCacheTtl().toMillis(), properties.getRefreshTimeout().toMillis())
+                .refreshAheadCache(properties.getRefreshAhead().toMillis(), true)
+                // Nimbus requires the rate limiting interval to be shorter than the time to live of the cache
+                .rateLimited(Math.min(JWKSourceBuilder.DEFAULT_RATE_LIMIT_MIN_INTERVAL, properties.getCacheTtl().toMillis() / 2));
+        if (properties.getOutageTolerance().isZero()) {
+            builder.outageTolerant(false);
+        } else {
+            builder.outageTolerant(properties.getOutageTolerance().toMillis());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Verify token signatures with the cached keys. Claims are validated by Spring Security afterwards.
+     *
+     * @param jwkSource  Source of the signing keys
+     * @param properties Accepted algorithms
+     * @return Token processor
+     */
+    @Bean
+    JWTProcessor<SecurityContext> jwtProcessor(JWKSource<SecurityContext> jwkSource, JwkProperties properties) {
+        Set<JWSAlgorithm> algorithms = properties.getAlgorithms().stream()
+                .map(JWSAlgorithm::parse)
+                .collect(Collectors.toSet());
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(algorithms, jwkSource));
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        return processor;
+    }
+
+    /**
+     * Decoder of the servlet stack, timing every validation.
+     *
+     * @param jwtProcessor  Token processor
+     * @param meterRegistry Registry the validation timer is recorded in
+     * @return JWT decoder
+     */
+    @Bean
+    @Profile("!reactive")
+    JwtDecoder jwtDecoder(JWTProcessor<SecurityContext> jwtProcessor, MeterRegistry meterRegistry) {
+        NimbusJwtDecoder decoder = new NimbusJwtDecoder(jwtProcessor);
+        decoder.setJwtValidator(jwtValidator());
+        return token -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String outcome = "error";
+            try {
+                Jwt jwt = decoder.decode(token);
+                outcome = "success";
+                return jwt;
+            } catch (BadJwtException e) {
+                outcome = "invalid";
+                throw e;
+            } finally {
+                sample.stop(validationTimer(meterRegistry, outcome));
+            }
+        };
+    }
+
+    /**
+     * Decoder of the reactive stack, timing every validation. Processing moves to a bounded elastic thread, as a
+     * missing key is fetched with a blocking call.
+     *
+     * @param jwtProcessor  Token processor
+     * @param meterRegistry Registry the validation timer is recorded in
+     * @return Reactive JWT decoder
+     */
+    @Bean
+    @Profile("reactive")
+    ReactiveJwtDecoder reactiveJwtDecoder(JWTProcessor<SecurityContext> jwtProcessor, MeterRegistry meterRegistry) {
+        NimbusReactiveJwtDecoder decoder = new NimbusReactiveJwtDecoder(jwt -> Mono
+                .fromCallable(() -> jwtProcessor.process(jwt, null))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorMap(BadJOSEException.class, e -> new BadJwtException(e.getMessage(), e))
+                .onErrorMap(JOSEException.class, e -> new JwtException(e.getMessage(), e)));
+        decoder.setJwtValidator(jwtValidator());
+        return token -> Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return decoder.decode(token)
+                    .doOnSuccess(jwt -> sample.stop(validationTimer(meterRegistry, "success")))
+                    .doOnError(e -> sample.stop(validationTimer(meterRegistry, e instanceof BadJwtException ? "invalid" : "error")));
+        });
+    }
+
+    /**
+     * Fetch the keys before the application starts serving requests. A failure is logged, and the keys are then
+     * fetched on the first request.
+     *
+     * @param jwkSource  Source of the signing keys
+     * @param properties Warm-up setting
+     * @return Warm-up callback
+     */
+    @Bean
+    SmartInitializingSingleton jwkWarmUp(JWKSource<SecurityContext> jwkSource, JwkProperties properties) {
+        return () -> {
+            if (!properties.isWarmUp()) {
+                return;
+            }
+            try {
+                int keys = jwkSource.get(new JWKSelector(new JWKMatcher.Builder().build()), null).size();
+                logger.info("Fetched {} keys from the JWK set endpoint", keys);
+            } catch (Exception e) {
+                logger.warn("Could not fetch the keys from the JWK set endpoint at startup", e);
+            }
+        };
+    }
+
+    /**
+     * Validate the timestamps and the issuer of the tokens, as Spring Boot does with an issuer URI.
+     *
+     * @return Token validator
+     */
+    private OAuth2TokenValidator<Jwt> jwtValidator() {
+        return JwtValidators.createDefaultWithIssuer(issuerUri);
+    }
+
+    private static Timer validationTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("payment.jwt.validation")
+                .description("Time to decode and validate a bearer token")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
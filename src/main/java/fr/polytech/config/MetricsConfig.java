@@ -0,0 +1,21 @@
+package fr.polytech.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Record the methods annotated with @Timed, such as those of PlanService.
+     *
+     * @param meterRegistry Registry the timers are recorded in
+     * @return Aspect timing @Timed methods
+     */
+    @Bean
+    TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
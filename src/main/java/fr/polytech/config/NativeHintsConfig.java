@@ -0,0 +1,58 @@
+package fr.polytech.config;
+
+import fr.polytech.annotation.IsAdmin;
+import fr.polytech.annotation.IsRecruiter;
+import fr.polytech.annotation.IsRecruiterOrAdmin;
+import fr.polytech.model.AddressDTO;
+import fr.polytech.model.InvoiceDTO;
+import fr.polytech.model.InvoiceDataDTO;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentDTO;
+import fr.polytech.model.Plan;
+import fr.polytech.model.RecruiterDTO;
+import fr.polytech.model.TimeOrderedUuid;
+import fr.polytech.model.TimeOrderedUuidGenerator;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * Reflection a native image needs on top of what Spring AOT infers from the beans. Spring registers the bodies of the
+ * controller methods and the JPA entities itself, but not the DTOs exchanged with user-api, address-api and
+ * invoice-api through the load-balanced RestTemplate, nor the payloads written with the ObjectMapper directly.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.Hints.class)
+@RegisterReflectionForBinding({
+        RecruiterDTO.class,
+        AddressDTO.class,
+        InvoiceDTO.class,
+        InvoiceDataDTO.class,
+        PaymentDTO.class,
+        Payment.class,
+        Plan.class
+})
+public class NativeHintsConfig {
+
+    static class Hints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Hibernate creates the identifier generator of @TimeOrderedUuid reflectively
+            hints.reflection().registerType(TimeOrderedUuidGenerator.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.reflection().registerType(TimeOrderedUuid.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+            // Method security reads the @PreAuthorize meta-annotation through these annotations
+            hints.reflection().registerType(IsAdmin.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.reflection().registerType(IsRecruiter.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.reflection().registerType(IsRecruiterOrAdmin.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+            // Logback creates the sampler of logback-spring.xml and sets its properties reflectively
+            hints.reflection().registerType(InfoLogSampler.class,
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
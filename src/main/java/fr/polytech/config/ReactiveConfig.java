@@ -0,0 +1,76 @@
+package fr.polytech.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.netty.channel.ChannelOption;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Hooks;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Beans of the reactive stack, selected with the reactive profile: Netty server, non-blocking HTTP client and R2DBC
+ * access to PostgreSQL.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveConfig {
+
+    /**
+     * Restore the trace context, and with it the trace ids in the logs, on every thread a reactive pipeline runs on.
+     */
+    ReactiveConfig() {
+        Hooks.enableAutomaticContextPropagation();
+    }
+
+    /**
+     * Run on Netty rather than on Tomcat, which spring-boot-starter-web also puts on the classpath.
+     *
+     * @return Netty server factory
+     */
+    @Bean
+    NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    /**
+     * Connection pool shared by every call to the other microservices, sized like the blocking pool.
+     *
+     * @param properties Pool and timeout settings
+     * @return Connection provider
+     */
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider webClientConnectionProvider(HttpClientProperties properties) {
+        return ConnectionProvider.builder("payment-api")
+                .maxConnections(properties.getMaxTotal())
+                .pendingAcquireTimeout(properties.getConnectionRequestTimeout())
+                .maxIdleTime(properties.getKeepAlive())
+                .evictInBackground(properties.getIdleEviction())
+                .metrics(true)
+                .build();
+    }
+
+    @LoadBalanced
+    @Bean
+    WebClient.Builder webClientBuilder(ConnectionProvider connectionProvider, HttpClientProperties properties,
+                                       ObservationRegistry observationRegistry) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .responseTimeout(properties.getResponseTimeout());
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .observationRegistry(observationRegistry);
+    }
+
+    @Bean
+    DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+}
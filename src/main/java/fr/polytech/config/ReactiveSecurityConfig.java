@@ -0,0 +1,49 @@
+package fr.polytech.config;
+
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+
+@Configuration
+@Profile("reactive")
+@EnableWebFluxSecurity
+@EnableReactiveMethodSecurity
+public class ReactiveSecurityConfig {
+
+    private final JwtAuthConverter jwtAuthConverter = new JwtAuthConverter();
+
+    /**
+     * Configure the security filter chain of the reactive stack the same way as SecurityConfig
+     *
+     * @param http ServerHttpSecurity object to configure
+     * @return SecurityWebFilterChain to be used by Spring Security
+     */
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .authorizeExchange((exchange) -> exchange
+                        .matchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                        .anyExchange().authenticated());
+
+        http
+                .oauth2ResourceServer((oauth2) -> oauth2
+                        .jwt((jwt) -> jwt
+                                .jwtAuthenticationConverter(new ReactiveJwtAuthenticationConverterAdapter(jwtAuthConverter))
+                        )
+                );
+
+        http
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance());
+
+        return http.build();
+    }
+}
@@ -0,0 +1,68 @@
+package fr.polytech.config;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.Advised;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * Observe every call to a Spring Data repository, so each query shows up as a span of the request trace and as a
+ * payment.repository timer.
+ */
+@Aspect
+@Component
+public class RepositoryObservationAspect {
+
+    private final ObservationRegistry observationRegistry;
+
+    public RepositoryObservationAspect(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * Run the repository method inside an observation named after the repository and the method.
+     *
+     * @param joinPoint Repository method call
+     * @return Result of the repository method
+     * @throws Throwable if the repository method fails
+     */
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object observe(ProceedingJoinPoint joinPoint) throws Throwable {
+        String repository = repositoryName(joinPoint);
+        String method = joinPoint.getSignature().getName();
+        Observation observation = Observation.createNotStarted("payment.repository", observationRegistry)
+                .contextualName(repository + "." + method)
+                .lowCardinalityKeyValue("repository", repository)
+                .lowCardinalityKeyValue("method", method)
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.stop();
+        }
+    }
+
+    /**
+     * Name of the repository interface behind the proxy, rather than the Spring Data interface declaring the method.
+     *
+     * @param joinPoint Repository method call
+     * @return Simple name of the repository
+     */
+    private static String repositoryName(ProceedingJoinPoint joinPoint) {
+        if (joinPoint.getThis() instanceof Advised advised) {
+            for (Class<?> type : advised.getProxiedInterfaces()) {
+                if (Repository.class.isAssignableFrom(type) && type != Repository.class) {
+                    return type.getSimpleName();
+                }
+            }
+        }
+        return joinPoint.getSignature().getDeclaringType().getSimpleName();
+    }
+}
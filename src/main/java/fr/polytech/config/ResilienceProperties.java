@@ -0,0 +1,193 @@
+package fr.polytech.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "payment.resilience")
+public class ResilienceProperties {
+
+    /**
+     * Percentage of failed calls, in the sliding window, above which a circuit breaker opens.
+     */
+    private float failureRateThreshold = 50;
+
+    /**
+     * Percentage of slow calls, in the sliding window, above which a circuit breaker opens.
+     */
+    private float slowCallRateThreshold = 50;
+
+    /**
+     * Duration above which a call counts as slow.
+     */
+    private Duration slowCallDuration = Duration.ofSeconds(3);
+
+    /**
+     * Number of calls a circuit breaker computes its failure rate on.
+     */
+    private int slidingWindowSize = 50;
+
+    /**
+     * Number of calls needed before a circuit breaker computes its failure rate.
+     */
+    private int minimumNumberOfCalls = 20;
+
+    /**
+     * Time a circuit breaker stays open, failing fast, before letting trial calls through.
+     */
+    private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+
+    /**
+     * Number of trial calls let through by a half-open circuit breaker.
+     */
+    private int permittedCallsInHalfOpenState = 5;
+
+    /**
+     * Maximum number of concurrent calls to a dependency when it has no specific limit.
+     */
+    private int maxConcurrentCalls = 25;
+
+    /**
+     * Specific concurrent call limits, keyed by dependency (user-api, address-api or invoice-api).
+     */
+    private Map<String, Integer> maxConcurrentCallsPerDependency = new HashMap<>();
+
+    /**
+     * Time a call waits for a free slot of a full bulkhead before being rejected.
+     */
+    private Duration maxWaitDuration = Duration.ofMillis(100);
+
+    /**
+     * Maximum number of attempts of a call, the first one included.
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * Backoff before the first retry, then multiplied on each retry and randomised.
+     */
+    private Duration initialBackoff = Duration.ofMillis(100);
+
+    /**
+     * Factor applied to the backoff on each retry.
+     */
+    private double backoffMultiplier = 2;
+
+    /**
+     * Maximum backoff between two attempts.
+     */
+    private Duration maxBackoff = Duration.ofSeconds(1);
+
+    public float getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(float failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public float getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public void setSlowCallRateThreshold(float slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    public Duration getSlowCallDuration() {
+        return slowCallDuration;
+    }
+
+    public void setSlowCallDuration(Duration slowCallDuration) {
+        this.slowCallDuration = slowCallDuration;
+    }
+
+    public int getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    public void setSlidingWindowSize(int slidingWindowSize) {
+        this.slidingWindowSize = slidingWindowSize;
+    }
+
+    public int getMinimumNumberOfCalls() {
+        return minimumNumberOfCalls;
+    }
+
+    public void setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+    }
+
+    public Duration getWaitDurationInOpenState() {
+        return waitDurationInOpenState;
+    }
+
+    public void setWaitDurationInOpenState(Duration waitDurationInOpenState) {
+        this.waitDurationInOpenState = waitDurationInOpenState;
+    }
+
+    public int getPermittedCallsInHalfOpenState() {
+        return permittedCallsInHalfOpenState;
+    }
+
+    public void setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    public Map<String, Integer> getMaxConcurrentCallsPerDependency() {
+        return maxConcurrentCallsPerDependency;
+    }
+
+    public void setMaxConcurrentCallsPerDependency(Map<String, Integer> maxConcurrentCallsPerDependency) {
+        this.maxConcurrentCallsPerDependency = maxConcurrentCallsPerDependency;
+    }
+
+    public Duration getMaxWaitDuration() {
+        return maxWaitDuration;
+    }
+
+    public void setMaxWaitDuration(Duration maxWaitDuration) {
+        this.maxWaitDuration = maxWaitDuration;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(Duration initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    public void setBackoffMultiplier(double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+}
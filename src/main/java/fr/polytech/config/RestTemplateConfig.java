@@ -1,17 +1,118 @@
 package fr.polytech.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.micrometer.observation.ObservationRegistry;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Map;
+
 @Configuration
+@EnableConfigurationProperties({HttpClientProperties.class, ResilienceProperties.class})
 public class RestTemplateConfig {
 
+    /**
+     * Client used to call the other microservices. Every call is observed, which records a client span and
+     * propagates the trace context to the called service.
+     *
+     * @param httpClient          Pooled HTTP client
+     * @param observationRegistry Registry the calls are observed with
+     * @return Load balanced REST client
+     */
     @LoadBalanced
     @Bean
-    RestTemplate restTemplate() {
-        return new RestTemplate();
+    RestTemplate restTemplate(CloseableHttpClient httpClient, ObservationRegistry observationRegistry) {
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        restTemplate.setObservationRegistry(observationRegistry);
+        return restTemplate;
+    }
+
+    /**
+     * Connection pool shared by every call to the other microservices.
+     *
+     * @param properties Pool and timeout settings
+     * @return Pooling connection manager
+     * @throws URISyntaxException if a route of payment.http-client.max-per-route is not a valid host
+     */
+    @Bean(destroyMethod = "close")
+    PoolingHttpClientConnectionManager connectionManager(HttpClientProperties properties) throws URISyntaxException {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(toTimeout(properties.getConnectTimeout()))
+                .setSocketTimeout(toTimeout(properties.getResponseTimeout()))
+                .setValidateAfterInactivity(toTimeValue(properties.getValidateAfterInactivity()))
+                .build();
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxTotal())
+                .setMaxConnPerRoute(properties.getDefaultMaxPerRoute())
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+
+        for (Map.Entry<String, Integer> route : properties.getMaxPerRoute().entrySet()) {
+            connectionManager.setMaxPerRoute(new HttpRoute(HttpHost.create(route.getKey())), route.getValue());
+        }
+        return connectionManager;
+    }
+
+    /**
+     * HTTP client backed by the connection pool, with bounded timeouts and idle connection eviction. Connections are
+     * kept alive for the timeout of the server's Keep-Alive header, or for payment.http-client.keep-alive without one.
+     *
+     * @param connectionManager Connection pool
+     * @param properties        Pool and timeout settings
+     * @return HTTP client
+     */
+    @Bean(destroyMethod = "close")
+    CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager, HttpClientProperties properties) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(toTimeout(properties.getConnectionRequestTimeout()))
+                .setResponseTimeout(toTimeout(properties.getResponseTimeout()))
+                .setConnectionKeepAlive(toTimeValue(properties.getKeepAlive()))
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictExpiredConnections()
+                .evictIdleConnections(toTimeValue(properties.getIdleEviction()))
+                .build();
+    }
+
+    /**
+     * Export leased, pending and available connections of the pool to actuator metrics.
+     *
+     * @param connectionManager Connection pool
+     * @return Meter binder for the pool
+     */
+    @Bean
+    MeterBinder connectionPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "payment-api");
     }
 
+    private static Timeout toTimeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
+    }
+
+    private static TimeValue toTimeValue(Duration duration) {
+        return TimeValue.ofMilliseconds(duration.toMillis());
+    }
 }
@@ -1,7 +1,10 @@
 package fr.polytech.config;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -11,6 +14,7 @@ import org.springframework.security.web.SecurityFilterChain;
 import static org.springframework.security.config.http.SessionCreationPolicy.STATELESS;
 
 @Configuration
+@Profile("!reactive")
 @EnableWebSecurity
 @EnableMethodSecurity
 public class SecurityConfig {
@@ -18,7 +22,7 @@ public class SecurityConfig {
     private final JwtAuthConverter jwtAuthConverter = new JwtAuthConverter();
 
     /**
-     * Configure the security filter chain to intercept all requests
+     * Configure the security filter chain to intercept all requests but the health endpoint, used by probes
      *
      * @param http HttpSecurity object to configure
      * @return SecurityFilterChain to be used by Spring Security
@@ -29,6 +33,7 @@ public class SecurityConfig {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests((auth) -> auth
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
                         .anyRequest().authenticated());
 
         http
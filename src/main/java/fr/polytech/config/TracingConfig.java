@@ -0,0 +1,22 @@
+package fr.polytech.config;
+
+import io.opentelemetry.exporter.logging.LoggingSpanExporter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TracingConfig {
+
+    /**
+     * Write every finished span to the application log, next to the OTLP export, so traces can be followed without
+     * a collector.
+     *
+     * @return Span exporter writing to the log
+     */
+    @Bean
+    @ConditionalOnProperty(name = "payment.tracing.log-spans", havingValue = "true")
+    LoggingSpanExporter loggingSpanExporter() {
+        return LoggingSpanExporter.create();
+    }
+}
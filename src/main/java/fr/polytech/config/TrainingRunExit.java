@@ -0,0 +1,27 @@
+package fr.polytech.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stop the application as soon as it is ready when payment.startup.exit-on-ready is set. The image build starts the
+ * application once this way to record the classes it loads in a CDS archive.
+ * The property is read at runtime rather than through a condition, so the listener is also present in an
+ * AOT-processed context.
+ */
+@Component
+public class TrainingRunExit implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Value("${payment.startup.exit-on-ready:false}")
+    private boolean exitOnReady;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (exitOnReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+}
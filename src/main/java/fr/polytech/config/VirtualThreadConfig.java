@@ -0,0 +1,24 @@
+package fr.polytech.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+@Configuration
+@ConditionalOnProperty(name = "payment.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    /**
+     * Handle every Tomcat request on its own virtual thread instead of the bounded worker pool, so that requests
+     * blocked on user-api, address-api, invoice-api or PostgreSQL do not hold a platform thread.
+     *
+     * @return Customizer replacing the Tomcat executor
+     */
+    @Bean
+    TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
@@ -0,0 +1,33 @@
+package fr.polytech.model;
+
+import java.util.UUID;
+
+public class ActivePlanSubscriptionsDTO {
+
+    private UUID planId;
+
+    private Long activeSubscriptions;
+
+    public ActivePlanSubscriptionsDTO() { }
+
+    public ActivePlanSubscriptionsDTO(UUID planId, Long activeSubscriptions) {
+        this.planId = planId;
+        this.activeSubscriptions = activeSubscriptions;
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(UUID planId) {
+        this.planId = planId;
+    }
+
+    public Long getActiveSubscriptions() {
+        return activeSubscriptions;
+    }
+
+    public void setActiveSubscriptions(Long activeSubscriptions) {
+        this.activeSubscriptions = activeSubscriptions;
+    }
+}
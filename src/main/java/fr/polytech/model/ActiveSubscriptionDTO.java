@@ -0,0 +1,45 @@
+package fr.polytech.model;
+
+import java.util.Date;
+import java.util.UUID;
+
+public class ActiveSubscriptionDTO {
+
+    private UUID recruiterId;
+
+    private UUID planId;
+
+    private Date expiresOn;
+
+    public ActiveSubscriptionDTO() { }
+
+    public ActiveSubscriptionDTO(UUID recruiterId, UUID planId, Date expiresOn) {
+        this.recruiterId = recruiterId;
+        this.planId = planId;
+        this.expiresOn = expiresOn;
+    }
+
+    public UUID getRecruiterId() {
+        return recruiterId;
+    }
+
+    public void setRecruiterId(UUID recruiterId) {
+        this.recruiterId = recruiterId;
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(UUID planId) {
+        this.planId = planId;
+    }
+
+    public Date getExpiresOn() {
+        return expiresOn;
+    }
+
+    public void setExpiresOn(Date expiresOn) {
+        this.expiresOn = expiresOn;
+    }
+}
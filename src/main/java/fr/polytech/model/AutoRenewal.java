@@ -0,0 +1,52 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Opt-in of a recruiter to the automatic renewal of their subscriptions.
+ */
+@Entity
+@Table(name = "auto_renewal", schema = "public")
+public class AutoRenewal {
+
+    @Id
+    @Column(name = "recruiter_id")
+    private UUID recruiterId;
+
+    /**
+     * Payment method of the renewals, or null to use the one of the renewed payment.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method")
+    private PaymentMethod paymentMethod;
+
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    public UUID getRecruiterId() {
+        return recruiterId;
+    }
+
+    public void setRecruiterId(UUID recruiterId) {
+        this.recruiterId = recruiterId;
+    }
+
+    public PaymentMethod getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public void setPaymentMethod(PaymentMethod paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,56 @@
+package fr.polytech.model;
+
+import java.util.Date;
+import java.util.UUID;
+
+public class ExpiringSubscriptionDTO {
+
+    private UUID paymentId;
+
+    private UUID recruiterId;
+
+    private UUID planId;
+
+    private Date expiresOn;
+
+    public ExpiringSubscriptionDTO() { }
+
+    public ExpiringSubscriptionDTO(UUID paymentId, UUID recruiterId, UUID planId, Date expiresOn) {
+        this.paymentId = paymentId;
+        this.recruiterId = recruiterId;
+        this.planId = planId;
+        this.expiresOn = expiresOn;
+    }
+
+    public UUID getPaymentId() {
+        return paymentId;
+    }
+
+    public void setPaymentId(UUID paymentId) {
+        this.paymentId = paymentId;
+    }
+
+    public UUID getRecruiterId() {
+        return recruiterId;
+    }
+
+    public void setRecruiterId(UUID recruiterId) {
+        this.recruiterId = recruiterId;
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(UUID planId) {
+        this.planId = planId;
+    }
+
+    public Date getExpiresOn() {
+        return expiresOn;
+    }
+
+    public void setExpiresOn(Date expiresOn) {
+        this.expiresOn = expiresOn;
+    }
+}
@@ -0,0 +1,80 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Payment created for an Idempotency-Key, kept for the idempotency window.
+ * A record without payment id is a reservation held while the payment is being created. A reservation older than the
+ * lease was left by a replica that stopped, and can be taken over.
+ */
+@Entity
+@Table(name = "idempotency_record", schema = "public", indexes = {
+        @Index(name = "idempotency_record_created_at_idx", columnList = "created_at")
+})
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+
+    @Column(name = "payment_id")
+    private UUID paymentId;
+
+    /**
+     * Fingerprint of the request the key was first used with.
+     */
+    @Column(name = "fingerprint", length = 64, nullable = false)
+    private String fingerprint;
+
+    /**
+     * Start of the lease of the current reservation.
+     */
+    @Column(name = "reserved_at")
+    private Date reservedAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public UUID getPaymentId() {
+        return paymentId;
+    }
+
+    public void setPaymentId(UUID paymentId) {
+        this.paymentId = paymentId;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public Date getReservedAt() {
+        return reservedAt;
+    }
+
+    public void setReservedAt(Date reservedAt) {
+        this.reservedAt = reservedAt;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,111 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Invoice still to be created in invoice-api for a saved payment.
+ * The row is written in the same transaction as the payment and deleted once the invoice id is set on the payment.
+ */
+@Entity
+@Table(name = "invoice_outbox", schema = "public", indexes = {
+        @Index(name = "invoice_outbox_status_next_attempt_at_idx", columnList = "status, next_attempt_at")
+})
+public class InvoiceOutbox {
+
+    @Id
+    @TimeOrderedUuid
+    private UUID id;
+
+    @Column(name = "payment_id", nullable = false)
+    private UUID paymentId;
+
+    /**
+     * Invoice data serialised as JSON.
+     */
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private InvoiceOutboxStatus status;
+
+    private int attempts;
+
+    /**
+     * Time of the next attempt of a pending entry, or end of the lease of an entry being dispatched.
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private Date nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private Date createdAt;
+
+    public UUID getId() {
+        return id;
+    }
+
+    public void setId(UUID id) {
+        this.id = id;
+    }
+
+    public UUID getPaymentId() {
+        return paymentId;
+    }
+
+    public void setPaymentId(UUID paymentId) {
+        this.paymentId = paymentId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public InvoiceOutboxStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(InvoiceOutboxStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Date nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,7 @@
+package fr.polytech.model;
+
+public enum InvoiceOutboxStatus {
+    PENDING,
+    DISPATCHING,
+    FAILED
+}
@@ -2,23 +2,33 @@ package fr.polytech.model;
 
 import jakarta.persistence.*;
 
+import java.math.BigDecimal;
 import java.util.Date;
 import java.util.UUID;
 
 @Entity
-@Table(name = "payment", schema = "public")
+@Table(name = "payment", schema = "public", indexes = {
+        @Index(name = "payment_payment_date_id_idx", columnList = "payment_date, id"),
+        @Index(name = "payment_recruiter_id_payment_date_idx", columnList = "recruiter_id, payment_date, id"),
+        @Index(name = "payment_recruiter_id_expires_on_idx", columnList = "recruiter_id, expires_on DESC, plan_id"),
+        @Index(name = "payment_expires_on_id_idx", columnList = "expires_on, id")
+})
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
+    @Column(name = "recruiter_id")
     private UUID recruiterId;
 
+    @Column(name = "payment_date")
     private Date paymentDate;
 
+    @Column(name = "expires_on")
     private Date expiresOn;
 
+    @Column(name = "plan_id")
     private UUID planId;
 
     private UUID invoiceId;
@@ -26,6 +36,12 @@ public class Payment {
     @Enumerated(EnumType.STRING)
     private PaymentMethod paymentMethod;
 
+    @Column(name = "amount", precision = 19, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "currency")
+    private String currency;
+
     public UUID getId() {
         return id;
     }
@@ -81,4 +97,20 @@ public class Payment {
     public void setPaymentMethod(PaymentMethod paymentMethod) {
         this.paymentMethod = paymentMethod;
     }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
 }
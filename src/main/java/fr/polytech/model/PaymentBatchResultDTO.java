@@ -0,0 +1,53 @@
+package fr.polytech.model;
+
+public class PaymentBatchResultDTO {
+
+    private int index;
+
+    private int status;
+
+    private Payment payment;
+
+    private String error;
+
+    public PaymentBatchResultDTO() { }
+
+    public PaymentBatchResultDTO(int index, int status, Payment payment, String error) {
+        this.index = index;
+        this.status = status;
+        this.payment = payment;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Payment getPayment() {
+        return payment;
+    }
+
+    public void setPayment(Payment payment) {
+        this.payment = payment;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
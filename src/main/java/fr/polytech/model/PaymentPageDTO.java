@@ -0,0 +1,33 @@
+package fr.polytech.model;
+
+import java.util.List;
+
+public class PaymentPageDTO {
+
+    private List<Payment> payments;
+
+    private String nextCursor;
+
+    public PaymentPageDTO() { }
+
+    public PaymentPageDTO(List<Payment> payments, String nextCursor) {
+        this.payments = payments;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Payment> getPayments() {
+        return payments;
+    }
+
+    public void setPayments(List<Payment> payments) {
+        this.payments = payments;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
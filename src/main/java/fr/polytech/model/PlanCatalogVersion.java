@@ -0,0 +1,31 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "plan_catalog_version", schema = "public")
+public class PlanCatalogVersion {
+
+    public static final int CATALOG_ID = 1;
+
+    @Id
+    private Integer id;
+
+    private Long version;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,53 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * Latest expiry of the subscription of a recruiter to a plan, over all of its payments. The subscription rollup
+ * counts each recruiter and plan once, in the bucket of this expiry, so renewals and repeated purchases of a plan
+ * move the subscription between buckets instead of adding one.
+ */
+@Entity
+@Table(name = "recruiter_plan_subscription", schema = "public", indexes = {
+        @Index(name = "recruiter_plan_subscription_expires_on_idx", columnList = "expires_on")
+})
+public class RecruiterPlanSubscription {
+
+    @EmbeddedId
+    private RecruiterPlanSubscriptionId id;
+
+    @Column(name = "expires_on", nullable = false)
+    private Date expiresOn;
+
+    /**
+     * Expiry before the last payment, returned by the upsert to move the subscription out of its previous bucket.
+     */
+    @Column(name = "previous_expires_on")
+    private Date previousExpiresOn;
+
+    public RecruiterPlanSubscriptionId getId() {
+        return id;
+    }
+
+    public void setId(RecruiterPlanSubscriptionId id) {
+        this.id = id;
+    }
+
+    public Date getExpiresOn() {
+        return expiresOn;
+    }
+
+    public void setExpiresOn(Date expiresOn) {
+        this.expiresOn = expiresOn;
+    }
+
+    public Date getPreviousExpiresOn() {
+        return previousExpiresOn;
+    }
+
+    public void setPreviousExpiresOn(Date previousExpiresOn) {
+        this.previousExpiresOn = previousExpiresOn;
+    }
+}
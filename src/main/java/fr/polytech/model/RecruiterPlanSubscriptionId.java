@@ -0,0 +1,55 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Recruiter and plan of a subscription, renewals included.
+ */
+@Embeddable
+public class RecruiterPlanSubscriptionId implements Serializable {
+
+    @Column(name = "recruiter_id")
+    private UUID recruiterId;
+
+    @Column(name = "plan_id")
+    private UUID planId;
+
+    public RecruiterPlanSubscriptionId() { }
+
+    public RecruiterPlanSubscriptionId(UUID recruiterId, UUID planId) {
+        this.recruiterId = recruiterId;
+        this.planId = planId;
+    }
+
+    public UUID getRecruiterId() {
+        return recruiterId;
+    }
+
+    public void setRecruiterId(UUID recruiterId) {
+        this.recruiterId = recruiterId;
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(UUID planId) {
+        this.planId = planId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RecruiterPlanSubscriptionId that)) return false;
+        return Objects.equals(recruiterId, that.recruiterId) && Objects.equals(planId, that.planId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(recruiterId, planId);
+    }
+}
@@ -0,0 +1,151 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Renewal of a subscription of an opted-in recruiter, queued when it falls due and run by the renewal job.
+ * The row is the checkpoint of the job: a renewal is RUNNING while leased to a replica, until next_attempt_at, and
+ * done once RENEWED, CANCELLED or FAILED.
+ */
+@Entity
+@Table(name = "renewal_task", schema = "public", indexes = {
+        @Index(name = "renewal_task_status_next_attempt_at_idx", columnList = "status, next_attempt_at")
+})
+public class RenewalTask {
+
+    /**
+     * Id of the payment being renewed.
+     */
+    @Id
+    @Column(name = "payment_id")
+    private UUID paymentId;
+
+    @Column(name = "recruiter_id", nullable = false)
+    private UUID recruiterId;
+
+    @Column(name = "plan_id", nullable = false)
+    private UUID planId;
+
+    @Column(name = "expires_on", nullable = false)
+    private Date expiresOn;
+
+    /**
+     * Payment method of the renewed payment, used when the opt-in does not set one.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", nullable = false)
+    private PaymentMethod paymentMethod;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RenewalTaskStatus status;
+
+    private int attempts;
+
+    /**
+     * Time the renewal is run at, spread over the renewal window so that subscriptions expiring together are not
+     * renewed in one burst.
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private Date nextAttemptAt;
+
+    @Column(name = "renewal_payment_id")
+    private UUID renewalPaymentId;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    public UUID getPaymentId() {
+        return paymentId;
+    }
+
+    public void setPaymentId(UUID paymentId) {
+        this.paymentId = paymentId;
+    }
+
+    public UUID getRecruiterId() {
+        return recruiterId;
+    }
+
+    public void setRecruiterId(UUID recruiterId) {
+        this.recruiterId = recruiterId;
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(UUID planId) {
+        this.planId = planId;
+    }
+
+    public Date getExpiresOn() {
+        return expiresOn;
+    }
+
+    public void setExpiresOn(Date expiresOn) {
+        this.expiresOn = expiresOn;
+    }
+
+    public PaymentMethod getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public void setPaymentMethod(PaymentMethod paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
+    public RenewalTaskStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(RenewalTaskStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Date nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public UUID getRenewalPaymentId() {
+        return renewalPaymentId;
+    }
+
+    public void setRenewalPaymentId(UUID renewalPaymentId) {
+        this.renewalPaymentId = renewalPaymentId;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
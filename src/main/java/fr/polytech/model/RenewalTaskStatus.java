@@ -0,0 +1,9 @@
+package fr.polytech.model;
+
+public enum RenewalTaskStatus {
+    PENDING,
+    RUNNING,
+    RENEWED,
+    CANCELLED,
+    FAILED
+}
@@ -0,0 +1,104 @@
+package fr.polytech.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Revenue of a group of payments. Only the fields the payments are grouped by are set, and amounts are never summed
+ * across currencies.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RevenueDTO {
+
+    private UUID planId;
+
+    private String currency;
+
+    private PaymentMethod paymentMethod;
+
+    private LocalDate month;
+
+    private BigDecimal totalAmount;
+
+    private Long paymentCount;
+
+    public RevenueDTO() { }
+
+    public RevenueDTO(UUID planId, String currency, BigDecimal totalAmount, Long paymentCount) {
+        this.planId = planId;
+        this.currency = currency;
+        this.totalAmount = totalAmount;
+        this.paymentCount = paymentCount;
+    }
+
+    public RevenueDTO(String currency, BigDecimal totalAmount, Long paymentCount) {
+        this.currency = currency;
+        this.totalAmount = totalAmount;
+        this.paymentCount = paymentCount;
+    }
+
+    public RevenueDTO(PaymentMethod paymentMethod, String currency, BigDecimal totalAmount, Long paymentCount) {
+        this.paymentMethod = paymentMethod;
+        this.currency = currency;
+        this.totalAmount = totalAmount;
+        this.paymentCount = paymentCount;
+    }
+
+    public RevenueDTO(LocalDate month, String currency, BigDecimal totalAmount, Long paymentCount) {
+        this.month = month;
+        this.currency = currency;
+        this.totalAmount = totalAmount;
+        this.paymentCount = paymentCount;
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(UUID planId) {
+        this.planId = planId;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public PaymentMethod getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public void setPaymentMethod(PaymentMethod paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
+    public LocalDate getMonth() {
+        return month;
+    }
+
+    public void setMonth(LocalDate month) {
+        this.month = month;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public Long getPaymentCount() {
+        return paymentCount;
+    }
+
+    public void setPaymentCount(Long paymentCount) {
+        this.paymentCount = paymentCount;
+    }
+}
@@ -0,0 +1,46 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Revenue and number of payments of one bucket, maintained in the transaction inserting each payment.
+ */
+@Entity
+@Table(name = "revenue_rollup", schema = "public")
+public class RevenueRollup {
+
+    @EmbeddedId
+    private RevenueRollupId id;
+
+    @Column(name = "total_amount", precision = 19, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "payment_count")
+    private Long paymentCount;
+
+    public RevenueRollupId getId() {
+        return id;
+    }
+
+    public void setId(RevenueRollupId id) {
+        this.id = id;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public Long getPaymentCount() {
+        return paymentCount;
+    }
+
+    public void setPaymentCount(Long paymentCount) {
+        this.paymentCount = paymentCount;
+    }
+}
@@ -0,0 +1,92 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Bucket of the revenue rollup: plan, currency, payment method and month of the payment date.
+ */
+@Embeddable
+public class RevenueRollupId implements Serializable {
+
+    @Column(name = "plan_id")
+    private UUID planId;
+
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method")
+    private PaymentMethod paymentMethod;
+
+    @Column(name = "payment_month")
+    private LocalDate month;
+
+    public RevenueRollupId() { }
+
+    public RevenueRollupId(UUID planId, String currency, PaymentMethod paymentMethod, LocalDate month) {
+        this.planId = planId;
+        this.currency = currency;
+        this.paymentMethod = paymentMethod;
+        this.month = month;
+    }
+
+    /**
+     * Month bucket of a payment date: first day of its month, in the time zone the payment dates are stored in.
+     *
+     * @param paymentDate Payment date.
+     * @return First day of the month.
+     */
+    public static LocalDate monthOf(Date paymentDate) {
+        return SubscriptionRollupId.dayOf(paymentDate).withDayOfMonth(1);
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(UUID planId) {
+        this.planId = planId;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public PaymentMethod getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public void setPaymentMethod(PaymentMethod paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
+    public LocalDate getMonth() {
+        return month;
+    }
+
+    public void setMonth(LocalDate month) {
+        this.month = month;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RevenueRollupId that)) return false;
+        return Objects.equals(planId, that.planId) && Objects.equals(currency, that.currency)
+                && paymentMethod == that.paymentMethod && Objects.equals(month, that.month);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(planId, currency, paymentMethod, month);
+    }
+}
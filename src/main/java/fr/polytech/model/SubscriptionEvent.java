@@ -0,0 +1,117 @@
+package fr.polytech.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Subscription expiry event stored for the other services, which read the events after the last id they consumed.
+ * Ids are assigned by the expiry scheduler under its lock, so they increase in commit order and a reader paging by id
+ * never skips an event committed after its page. Events are only ever inserted.
+ */
+@Entity
+@Table(name = "subscription_event", schema = "public")
+public class SubscriptionEvent implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private SubscriptionEventType type;
+
+    @Column(name = "payment_id", nullable = false)
+    private UUID paymentId;
+
+    @Column(name = "recruiter_id", nullable = false)
+    private UUID recruiterId;
+
+    @Column(name = "plan_id", nullable = false)
+    private UUID planId;
+
+    @Column(name = "expires_on", nullable = false)
+    private Date expiresOn;
+
+    @Column(name = "published_at", nullable = false)
+    private Date publishedAt;
+
+    public SubscriptionEvent() { }
+
+    public SubscriptionEvent(SubscriptionEventType type, ExpiringSubscriptionDTO subscription, Date publishedAt) {
+        this.type = type;
+        this.paymentId = subscription.getPaymentId();
+        this.recruiterId = subscription.getRecruiterId();
+        this.planId = subscription.getPlanId();
+        this.expiresOn = subscription.getExpiresOn();
+        this.publishedAt = publishedAt;
+    }
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public SubscriptionEventType getType() {
+        return type;
+    }
+
+    public void setType(SubscriptionEventType type) {
+        this.type = type;
+    }
+
+    public UUID getPaymentId() {
+        return paymentId;
+    }
+
+    public void setPaymentId(UUID paymentId) {
+        this.paymentId = paymentId;
+    }
+
+    public UUID getRecruiterId() {
+        return recruiterId;
+    }
+
+    public void setRecruiterId(UUID recruiterId) {
+        this.recruiterId = recruiterId;
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(UUID planId) {
+        this.planId = planId;
+    }
+
+    public Date getExpiresOn() {
+        return expiresOn;
+    }
+
+    public void setExpiresOn(Date expiresOn) {
+        this.expiresOn = expiresOn;
+    }
+
+    public Date getPublishedAt() {
+        return publishedAt;
+    }
+
+    public void setPublishedAt(Date publishedAt) {
+        this.publishedAt = publishedAt;
+    }
+
+    /**
+     * Events are only ever inserted, so they are saved without being looked up first.
+     */
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -0,0 +1,6 @@
+package fr.polytech.model;
+
+public enum SubscriptionEventType {
+    RENEWAL_DUE,
+    EXPIRED
+}
@@ -0,0 +1,11 @@
+package fr.polytech.model;
+
+/**
+ * The subscription bought by a payment has expired.
+ */
+public class SubscriptionExpiredEvent extends SubscriptionExpiryEvent {
+
+    public SubscriptionExpiredEvent(ExpiringSubscriptionDTO subscription) {
+        super(subscription);
+    }
+}
@@ -0,0 +1,19 @@
+package fr.polytech.model;
+
+import java.util.Date;
+
+/**
+ * Expiry of the subscription of a recruiter to a plan before and after a payment.
+ */
+public interface SubscriptionExpiryChange {
+
+    /**
+     * @return Expiry before the payment, or null if the recruiter had no subscription to the plan.
+     */
+    Date getPreviousExpiresOn();
+
+    /**
+     * @return Expiry after the payment, the latest of the previous one and the one of the payment.
+     */
+    Date getExpiresOn();
+}
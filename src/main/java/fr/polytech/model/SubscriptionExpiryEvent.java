@@ -0,0 +1,41 @@
+package fr.polytech.model;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Application event about the subscription bought by a payment, published by the expiry scheduler.
+ */
+public abstract class SubscriptionExpiryEvent {
+
+    private final UUID paymentId;
+
+    private final UUID recruiterId;
+
+    private final UUID planId;
+
+    private final Date expiresOn;
+
+    protected SubscriptionExpiryEvent(ExpiringSubscriptionDTO subscription) {
+        this.paymentId = subscription.getPaymentId();
+        this.recruiterId = subscription.getRecruiterId();
+        this.planId = subscription.getPlanId();
+        this.expiresOn = subscription.getExpiresOn();
+    }
+
+    public UUID getPaymentId() {
+        return paymentId;
+    }
+
+    public UUID getRecruiterId() {
+        return recruiterId;
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public Date getExpiresOn() {
+        return expiresOn;
+    }
+}
@@ -0,0 +1,56 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Last subscription an expiry stage emitted an event for, in expiry order. The node running the expiry scheduler
+ * resumes after it.
+ */
+@Entity
+@Table(name = "subscription_expiry_watermark", schema = "public")
+public class SubscriptionExpiryWatermark {
+
+    @Id
+    private String stage;
+
+    @Column(name = "expires_on", nullable = false)
+    private Date expiresOn;
+
+    @Column(name = "payment_id", nullable = false)
+    private UUID paymentId;
+
+    public SubscriptionExpiryWatermark() { }
+
+    public SubscriptionExpiryWatermark(String stage, Date expiresOn, UUID paymentId) {
+        this.stage = stage;
+        this.expiresOn = expiresOn;
+        this.paymentId = paymentId;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    public void setStage(String stage) {
+        this.stage = stage;
+    }
+
+    public Date getExpiresOn() {
+        return expiresOn;
+    }
+
+    public void setExpiresOn(Date expiresOn) {
+        this.expiresOn = expiresOn;
+    }
+
+    public UUID getPaymentId() {
+        return paymentId;
+    }
+
+    public void setPaymentId(UUID paymentId) {
+        this.paymentId = paymentId;
+    }
+}
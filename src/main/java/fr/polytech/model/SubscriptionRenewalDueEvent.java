@@ -0,0 +1,11 @@
+package fr.polytech.model;
+
+/**
+ * The subscription bought by a payment expires within the renewal notice period.
+ */
+public class SubscriptionRenewalDueEvent extends SubscriptionExpiryEvent {
+
+    public SubscriptionRenewalDueEvent(ExpiringSubscriptionDTO subscription) {
+        super(subscription);
+    }
+}
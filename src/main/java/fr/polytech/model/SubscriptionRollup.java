@@ -0,0 +1,36 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Number of subscriptions of a plan expiring on a given day, maintained in the transaction inserting each payment.
+ * The subscriptions active today are the sum of the buckets from today on.
+ */
+@Entity
+@Table(name = "subscription_rollup", schema = "public", indexes = {
+        @Index(name = "subscription_rollup_expires_on_plan_id_idx", columnList = "expires_on, plan_id")
+})
+public class SubscriptionRollup {
+
+    @EmbeddedId
+    private SubscriptionRollupId id;
+
+    @Column(name = "subscription_count")
+    private Long subscriptionCount;
+
+    public SubscriptionRollupId getId() {
+        return id;
+    }
+
+    public void setId(SubscriptionRollupId id) {
+        this.id = id;
+    }
+
+    public Long getSubscriptionCount() {
+        return subscriptionCount;
+    }
+
+    public void setSubscriptionCount(Long subscriptionCount) {
+        this.subscriptionCount = subscriptionCount;
+    }
+}
@@ -0,0 +1,68 @@
+package fr.polytech.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Bucket of the subscription rollup: plan and day the subscription expires on.
+ */
+@Embeddable
+public class SubscriptionRollupId implements Serializable {
+
+    @Column(name = "plan_id")
+    private UUID planId;
+
+    @Column(name = "expires_on")
+    private LocalDate expiresOn;
+
+    public SubscriptionRollupId() { }
+
+    public SubscriptionRollupId(UUID planId, LocalDate expiresOn) {
+        this.planId = planId;
+        this.expiresOn = expiresOn;
+    }
+
+    /**
+     * Day bucket of an expiry date, in the time zone the payment dates are stored in.
+     *
+     * @param expiresOn Expiry date.
+     * @return Day of the expiry.
+     */
+    public static LocalDate dayOf(Date expiresOn) {
+        return expiresOn.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    public UUID getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(UUID planId) {
+        this.planId = planId;
+    }
+
+    public LocalDate getExpiresOn() {
+        return expiresOn;
+    }
+
+    public void setExpiresOn(LocalDate expiresOn) {
+        this.expiresOn = expiresOn;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SubscriptionRollupId that)) return false;
+        return Objects.equals(planId, that.planId) && Objects.equals(expiresOn, that.expiresOn);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(planId, expiresOn);
+    }
+}
@@ -0,0 +1,18 @@
+package fr.polytech.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generate the identifier as a time-ordered UUID (version 7), so that new rows are appended at the end of the primary
+ * key index instead of being scattered across it.
+ */
+@IdGeneratorType(TimeOrderedUuidGenerator.class)
+@Target({ElementType.FIELD, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface TimeOrderedUuid {
+}
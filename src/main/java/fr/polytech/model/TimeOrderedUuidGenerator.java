@@ -0,0 +1,41 @@
+package fr.polytech.model;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+
+import java.lang.reflect.Member;
+import java.security.SecureRandom;
+import java.util.UUID;
+
+public class TimeOrderedUuidGenerator implements IdentifierGenerator {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    public TimeOrderedUuidGenerator() {
+    }
+
+    public TimeOrderedUuidGenerator(TimeOrderedUuid config, Member idMember, CustomIdGeneratorCreationContext context) {
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return next();
+    }
+
+    /**
+     * Generate a version 7 UUID: 48 bits of Unix time in milliseconds followed by 74 random bits, so that the UUIDs
+     * sort in creation order.
+     *
+     * @return Time-ordered UUID
+     */
+    public static UUID next() {
+        long timestamp = System.currentTimeMillis();
+        long randomHigh = RANDOM.nextLong();
+        long randomLow = RANDOM.nextLong();
+
+        long mostSigBits = (timestamp << 16) | 0x7000L | (randomHigh & 0x0FFFL);
+        long leastSigBits = (randomLow & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
@@ -0,0 +1,11 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.AutoRenewal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface AutoRenewalRepository extends JpaRepository<AutoRenewal, UUID> {
+}
@@ -0,0 +1,60 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.UUID;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+    /**
+     * Reserve a key.
+     *
+     * @return 1 if the key has been reserved, 0 if a record already exists for it.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO idempotency_record (idempotency_key, fingerprint, reserved_at, created_at) " +
+            "VALUES (:key, :fingerprint, :reservedAt, :reservedAt) ON CONFLICT (idempotency_key) DO NOTHING", nativeQuery = true)
+    int reserve(@Param("key") String key, @Param("fingerprint") String fingerprint, @Param("reservedAt") Date reservedAt);
+
+    /**
+     * Take over a reservation whose lease expired.
+     *
+     * @return 1 if the reservation has been taken over, 0 if it completed or another request holds or took it.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.reservedAt = :reservedAt WHERE r.key = :key AND r.paymentId IS NULL " +
+            "AND (r.reservedAt IS NULL OR r.reservedAt < :expiredBefore)")
+    int takeOver(@Param("key") String key, @Param("reservedAt") Date reservedAt, @Param("expiredBefore") Date expiredBefore);
+
+    /**
+     * Store the payment created under a reservation, in the transaction saving the payment.
+     *
+     * @return 1 if the reservation was still held, 0 if it was taken over.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.paymentId = :paymentId WHERE r.key = :key AND r.reservedAt = :reservedAt")
+    int complete(@Param("key") String key, @Param("reservedAt") Date reservedAt, @Param("paymentId") UUID paymentId);
+
+    /**
+     * Release a reservation, if it is still held.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.key = :key AND r.reservedAt = :reservedAt AND r.paymentId IS NULL")
+    int release(@Param("key") String key, @Param("reservedAt") Date reservedAt);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.createdAt < :createdAt")
+    int deleteCreatedBefore(@Param("createdAt") Date createdAt);
+}
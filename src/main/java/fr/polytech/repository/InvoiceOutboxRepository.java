@@ -0,0 +1,29 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.InvoiceOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface InvoiceOutboxRepository extends JpaRepository<InvoiceOutbox, UUID> {
+    /**
+     * Lock the pending entries that are due, and the entries whose dispatch lease expired because their dispatcher
+     * stopped, skipping the ones another replica is already claiming.
+     */
+    @Query(value = "SELECT * FROM invoice_outbox WHERE status IN ('PENDING', 'DISPATCHING') AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<InvoiceOutbox> lockDueEntries(@Param("now") Date now, @Param("limit") int limit);
+
+    /**
+     * Lock an entry, so another replica cannot claim it until the transaction ends.
+     */
+    @Query(value = "SELECT * FROM invoice_outbox WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<InvoiceOutbox> lockById(@Param("id") UUID id);
+}
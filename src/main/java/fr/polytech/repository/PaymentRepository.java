@@ -1,16 +1,63 @@
 package fr.polytech.repository;
 
+import fr.polytech.model.ActiveSubscriptionDTO;
+import fr.polytech.model.ExpiringSubscriptionDTO;
 import fr.polytech.model.Payment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, UUID> {
     @Query("SELECT p FROM Payment p WHERE p.recruiterId = :userId")
     List<Payment> getPaymentsByUserId(@Param("userId") UUID userId);
+
+    @Query("SELECT p FROM Payment p ORDER BY p.paymentDate, p.id")
+    List<Payment> findFirstPage(Pageable pageable);
+
+    @Query("SELECT p FROM Payment p " +
+            "WHERE p.paymentDate >= :paymentDate AND (p.paymentDate > :paymentDate OR p.id > :id) " +
+            "ORDER BY p.paymentDate, p.id")
+    List<Payment> findPageAfter(@Param("paymentDate") Date paymentDate, @Param("id") UUID id, Pageable pageable);
+
+    @Query("SELECT p FROM Payment p WHERE p.recruiterId = :userId ORDER BY p.paymentDate DESC, p.id DESC")
+    List<Payment> findFirstPageByUserId(@Param("userId") UUID userId, Pageable pageable);
+
+    @Query("SELECT p FROM Payment p " +
+            "WHERE p.recruiterId = :userId AND p.paymentDate <= :paymentDate AND (p.paymentDate < :paymentDate OR p.id < :id) " +
+            "ORDER BY p.paymentDate DESC, p.id DESC")
+    List<Payment> findPageByUserIdBefore(@Param("userId") UUID userId, @Param("paymentDate") Date paymentDate, @Param("id") UUID id, Pageable pageable);
+
+    @Query("SELECT new fr.polytech.model.ActiveSubscriptionDTO(p.recruiterId, p.planId, p.expiresOn) FROM Payment p " +
+            "WHERE p.recruiterId = :userId AND p.expiresOn > :now ORDER BY p.expiresOn DESC")
+    List<ActiveSubscriptionDTO> findActiveSubscriptions(@Param("userId") UUID userId, @Param("now") Date now, Pageable pageable);
+
+    @Query("SELECT new fr.polytech.model.ExpiringSubscriptionDTO(p.id, p.recruiterId, p.planId, p.expiresOn) FROM Payment p " +
+            "WHERE p.expiresOn >= :expiresOn AND (p.expiresOn > :expiresOn OR p.id > :id) AND p.expiresOn <= :until " +
+            "ORDER BY p.expiresOn, p.id")
+    List<ExpiringSubscriptionDTO> findExpiringAfter(@Param("expiresOn") Date expiresOn, @Param("id") UUID id, @Param("until") Date until, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT p FROM Payment p ORDER BY p.paymentDate, p.id")
+    Stream<Payment> streamAll();
+
+    /**
+     * Set the invoice of a payment that has none yet.
+     *
+     * @return Number of payments updated, 0 when the payment already has an invoice.
+     */
+    @Modifying
+    @Query("UPDATE Payment p SET p.invoiceId = :invoiceId WHERE p.id = :paymentId AND p.invoiceId IS NULL")
+    int setInvoiceId(@Param("paymentId") UUID paymentId, @Param("invoiceId") UUID invoiceId);
 }
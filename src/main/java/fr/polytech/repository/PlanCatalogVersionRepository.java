@@ -0,0 +1,22 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.PlanCatalogVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface PlanCatalogVersionRepository extends JpaRepository<PlanCatalogVersion, Integer> {
+    @Query("SELECT v.version FROM PlanCatalogVersion v WHERE v.id = " + PlanCatalogVersion.CATALOG_ID)
+    Optional<Long> findCatalogVersion();
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO plan_catalog_version (id, version) VALUES (" + PlanCatalogVersion.CATALOG_ID + ", 1) " +
+            "ON CONFLICT (id) DO UPDATE SET version = plan_catalog_version.version + 1", nativeQuery = true)
+    void incrementCatalogVersion();
+}
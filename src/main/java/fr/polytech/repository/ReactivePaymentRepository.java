@@ -0,0 +1,193 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.ActiveSubscriptionDTO;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.model.RevenueRollupId;
+import fr.polytech.model.TimeOrderedUuidGenerator;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Non-blocking access to the payment table, used by the reactive stack instead of PaymentRepository.
+ * Queries mirror those of PaymentRepository and use the same indexes.
+ */
+@Repository
+@Profile("reactive")
+public class ReactivePaymentRepository {
+
+    private static final String SELECT_PAYMENT = "SELECT id, recruiter_id, payment_date, expires_on, plan_id, invoice_id, payment_method, amount, currency FROM payment ";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    public Flux<Payment> findAll() {
+        return databaseClient.sql(SELECT_PAYMENT)
+                .map(ReactivePaymentRepository::toPayment)
+                .all();
+    }
+
+    public Mono<Payment> findById(UUID id) {
+        return databaseClient.sql(SELECT_PAYMENT + "WHERE id = :id")
+                .bind("id", id)
+                .map(ReactivePaymentRepository::toPayment)
+                .one();
+    }
+
+    public Flux<Payment> getPaymentsByUserId(UUID userId) {
+        return databaseClient.sql(SELECT_PAYMENT + "WHERE recruiter_id = :userId")
+                .bind("userId", userId)
+                .map(ReactivePaymentRepository::toPayment)
+                .all();
+    }
+
+    public Flux<Payment> findFirstPage(int limit) {
+        return databaseClient.sql(SELECT_PAYMENT + "ORDER BY payment_date, id LIMIT :limit")
+                .bind("limit", limit)
+                .map(ReactivePaymentRepository::toPayment)
+                .all();
+    }
+
+    public Flux<Payment> findPageAfter(Date paymentDate, UUID id, int limit) {
+        return databaseClient.sql(SELECT_PAYMENT + "WHERE (payment_date, id) > (:paymentDate, :id) ORDER BY payment_date, id LIMIT :limit")
+                .bind("paymentDate", toLocalDateTime(paymentDate))
+                .bind("id", id)
+                .bind("limit", limit)
+                .map(ReactivePaymentRepository::toPayment)
+                .all();
+    }
+
+    public Flux<Payment> findFirstPageByUserId(UUID userId, int limit) {
+        return databaseClient.sql(SELECT_PAYMENT + "WHERE recruiter_id = :userId ORDER BY payment_date DESC, id DESC LIMIT :limit")
+                .bind("userId", userId)
+                .bind("limit", limit)
+                .map(ReactivePaymentRepository::toPayment)
+                .all();
+    }
+
+    public Flux<Payment> findPageByUserIdBefore(UUID userId, Date paymentDate, UUID id, int limit) {
+        return databaseClient.sql(SELECT_PAYMENT + "WHERE recruiter_id = :userId AND (payment_date, id) < (:paymentDate, :id) " +
+                        "ORDER BY payment_date DESC, id DESC LIMIT :limit")
+                .bind("userId", userId)
+                .bind("paymentDate", toLocalDateTime(paymentDate))
+                .bind("id", id)
+                .bind("limit", limit)
+                .map(ReactivePaymentRepository::toPayment)
+                .all();
+    }
+
+    public Mono<ActiveSubscriptionDTO> findActiveSubscription(UUID userId, Date now) {
+        return databaseClient.sql("SELECT recruiter_id, plan_id, expires_on FROM payment " +
+                        "WHERE recruiter_id = :userId AND expires_on > :now ORDER BY expires_on DESC LIMIT 1")
+                .bind("userId", userId)
+                .bind("now", toLocalDateTime(now))
+                .map(row -> new ActiveSubscriptionDTO(
+                        row.get("recruiter_id", UUID.class),
+                        row.get("plan_id", UUID.class),
+                        toDate(row.get("expires_on", LocalDateTime.class))
+                ))
+                .one();
+    }
+
+    /**
+     * Stream every payment ordered by payment date and id, fetching rows from the server 500 at a time as the
+     * subscriber requests them.
+     *
+     * @return Payments.
+     */
+    public Flux<Payment> streamAll() {
+        return databaseClient.sql(SELECT_PAYMENT + "ORDER BY payment_date, id")
+                .filter(statement -> statement.fetchSize(500))
+                .map(ReactivePaymentRepository::toPayment)
+                .all();
+    }
+
+    /**
+     * Insert a new payment, generating its id, and add it to the analytics rollups as AnalyticsService does.
+     * The rollups are updated by data-modifying common table expressions of the insert statement, so the payment and
+     * its rollup buckets are written atomically without a reactive transaction manager. The subscription of the
+     * recruiter to the plan is extended, and moved from the bucket of its previous expiry, if still read, to the one
+     * of its new expiry.
+     *
+     * @param payment Payment to insert, with the amount charged and its currency.
+     * @return Inserted payment.
+     */
+    public Mono<Payment> insert(Payment payment) {
+        payment.setId(TimeOrderedUuidGenerator.next());
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("WITH inserted AS (" +
+                        "INSERT INTO payment (id, recruiter_id, payment_date, expires_on, plan_id, invoice_id, payment_method, amount, currency) " +
+                        "VALUES (:id, :recruiterId, :paymentDate, :expiresOn, :planId, :invoiceId, :paymentMethod, :amount, :currency)" +
+                        "), revenue AS (" +
+                        "INSERT INTO revenue_rollup (plan_id, currency, payment_method, payment_month, total_amount, payment_count) " +
+                        "VALUES (:planId, :currency, :paymentMethod, :month, :amount, 1) " +
+                        "ON CONFLICT (plan_id, currency, payment_method, payment_month) DO UPDATE SET " +
+                        "total_amount = revenue_rollup.total_amount + EXCLUDED.total_amount, " +
+                        "payment_count = revenue_rollup.payment_count + 1" +
+                        "), subscription AS (" +
+                        "INSERT INTO recruiter_plan_subscription (recruiter_id, plan_id, expires_on, previous_expires_on) " +
+                        "VALUES (:recruiterId, :planId, :expiresOn, NULL) " +
+                        "ON CONFLICT (recruiter_id, plan_id) DO UPDATE SET " +
+                        "previous_expires_on = recruiter_plan_subscription.expires_on, " +
+                        "expires_on = GREATEST(recruiter_plan_subscription.expires_on, EXCLUDED.expires_on) " +
+                        "RETURNING CAST(previous_expires_on AS date) AS previous_day, CAST(expires_on AS date) AS expires_day" +
+                        "), moves AS (" +
+                        "SELECT expires_day, 1 AS delta FROM subscription WHERE previous_day IS NULL OR previous_day <> expires_day " +
+                        "UNION ALL " +
+                        "SELECT previous_day, -1 FROM subscription WHERE previous_day <> expires_day AND previous_day >= :today" +
+                        ") " +
+                        "INSERT INTO subscription_rollup (plan_id, expires_on, subscription_count) " +
+                        "SELECT :planId, expires_day, delta FROM moves " +
+                        "ON CONFLICT (plan_id, expires_on) DO UPDATE SET " +
+                        "subscription_count = subscription_rollup.subscription_count + EXCLUDED.subscription_count")
+                .bind("id", payment.getId())
+                .bind("recruiterId", payment.getRecruiterId())
+                .bind("paymentDate", toLocalDateTime(payment.getPaymentDate()))
+                .bind("expiresOn", toLocalDateTime(payment.getExpiresOn()))
+                .bind("planId", payment.getPlanId())
+                .bind("paymentMethod", payment.getPaymentMethod().name())
+                .bind("currency", payment.getCurrency())
+                .bind("month", RevenueRollupId.monthOf(payment.getPaymentDate()))
+                .bind("amount", payment.getAmount())
+                .bind("today", LocalDate.now());
+        spec = payment.getInvoiceId() == null
+                ? spec.bindNull("invoiceId", UUID.class)
+                : spec.bind("invoiceId", payment.getInvoiceId());
+        return spec.then().thenReturn(payment);
+    }
+
+    private static Payment toPayment(Readable row) {
+        Payment payment = new Payment();
+        payment.setId(row.get("id", UUID.class));
+        payment.setRecruiterId(row.get("recruiter_id", UUID.class));
+        payment.setPaymentDate(toDate(row.get("payment_date", LocalDateTime.class)));
+        payment.setExpiresOn(toDate(row.get("expires_on", LocalDateTime.class)));
+        payment.setPlanId(row.get("plan_id", UUID.class));
+        payment.setInvoiceId(row.get("invoice_id", UUID.class));
+        String paymentMethod = row.get("payment_method", String.class);
+        payment.setPaymentMethod(paymentMethod == null ? null : PaymentMethod.valueOf(paymentMethod));
+        payment.setAmount(row.get("amount", BigDecimal.class));
+        payment.setCurrency(row.get("currency", String.class));
+        return payment;
+    }
+
+    // Timestamps are stored without time zone in the JVM time zone, as Hibernate writes them
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    private static Date toDate(LocalDateTime dateTime) {
+        return dateTime == null ? null : Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,133 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.Plan;
+import fr.polytech.model.PlanCatalogVersion;
+import fr.polytech.model.TimeOrderedUuidGenerator;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Non-blocking access to the plan table, used by the reactive stack instead of PlanRepository.
+ */
+@Repository
+@Profile("reactive")
+public class ReactivePlanRepository {
+
+    private static final String SELECT_PLAN = "SELECT id, name, description, price, currency, months_duration FROM plan ";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    public Flux<Plan> findAll() {
+        return databaseClient.sql(SELECT_PLAN)
+                .map(ReactivePlanRepository::toPlan)
+                .all();
+    }
+
+    public Mono<Plan> findById(UUID id) {
+        return databaseClient.sql(SELECT_PLAN + "WHERE id = :id")
+                .bind("id", id)
+                .map(ReactivePlanRepository::toPlan)
+                .one();
+    }
+
+    public Flux<Plan> findByCurrency(String currency) {
+        return databaseClient.sql(SELECT_PLAN + "WHERE currency = :currency")
+                .bind("currency", currency)
+                .map(ReactivePlanRepository::toPlan)
+                .all();
+    }
+
+    /**
+     * Insert a new plan, generating its id.
+     *
+     * @param plan Plan to insert.
+     * @return Inserted plan.
+     */
+    public Mono<Plan> insert(Plan plan) {
+        plan.setId(TimeOrderedUuidGenerator.next());
+        return bindPlan(databaseClient.sql("INSERT INTO plan (id, name, description, price, currency, months_duration) " +
+                "VALUES (:id, :name, :description, :price, :currency, :monthsDuration)"), plan)
+                .then()
+                .thenReturn(plan);
+    }
+
+    /**
+     * Update an existing plan.
+     *
+     * @param plan Plan to update.
+     * @return Updated plan, or an empty Mono if no plan has its id.
+     */
+    public Mono<Plan> update(Plan plan) {
+        return bindPlan(databaseClient.sql("UPDATE plan SET name = :name, description = :description, price = :price, " +
+                "currency = :currency, months_duration = :monthsDuration WHERE id = :id"), plan)
+                .fetch()
+                .rowsUpdated()
+                .filter(rows -> rows > 0)
+                .map(rows -> plan);
+    }
+
+    /**
+     * Delete a plan.
+     *
+     * @param id Plan id.
+     * @return Number of deleted plans.
+     */
+    public Mono<Long> deleteById(UUID id) {
+        return databaseClient.sql("DELETE FROM plan WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * Bump the plan catalog version so that the plan catalogs of servlet replicas reload, as
+     * PlanCatalogVersionRepository.incrementCatalogVersion does.
+     *
+     * @return Completion.
+     */
+    public Mono<Void> incrementCatalogVersion() {
+        return databaseClient.sql("INSERT INTO plan_catalog_version (id, version) VALUES (" + PlanCatalogVersion.CATALOG_ID + ", 1) " +
+                        "ON CONFLICT (id) DO UPDATE SET version = plan_catalog_version.version + 1")
+                .then();
+    }
+
+    /**
+     * Get the plan catalog version, as PlanCatalogVersionRepository.findCatalogVersion does.
+     *
+     * @return Catalog version, or an empty Mono if no plan was ever written.
+     */
+    public Mono<Long> findCatalogVersion() {
+        return databaseClient.sql("SELECT version FROM plan_catalog_version WHERE id = " + PlanCatalogVersion.CATALOG_ID)
+                .map(row -> row.get("version", Long.class))
+                .one();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindPlan(DatabaseClient.GenericExecuteSpec spec, Plan plan) {
+        return spec
+                .bind("id", plan.getId())
+                .bind("name", plan.getName())
+                .bind("description", plan.getDescription())
+                .bind("price", plan.getPrice())
+                .bind("currency", plan.getCurrency())
+                .bind("monthsDuration", plan.getMonthsDuration());
+    }
+
+    private static Plan toPlan(Readable row) {
+        Plan plan = new Plan();
+        plan.setId(row.get("id", UUID.class));
+        plan.setName(row.get("name", String.class));
+        plan.setDescription(row.get("description", String.class));
+        plan.setPrice(row.get("price", Float.class));
+        plan.setCurrency(row.get("currency", String.class));
+        plan.setMonthsDuration(row.get("months_duration", Integer.class));
+        return plan;
+    }
+}
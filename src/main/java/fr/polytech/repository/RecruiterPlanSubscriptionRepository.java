@@ -0,0 +1,45 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.RecruiterPlanSubscription;
+import fr.polytech.model.RecruiterPlanSubscriptionId;
+import fr.polytech.model.SubscriptionExpiryChange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.UUID;
+
+@Repository
+public interface RecruiterPlanSubscriptionRepository extends JpaRepository<RecruiterPlanSubscription, RecruiterPlanSubscriptionId> {
+    /**
+     * Extend the subscription of a recruiter to a plan to the expiry of a new payment, if later, and return the expiry
+     * before and after. The row lock of the upsert serialises payments of the same recruiter and plan, so each one sees
+     * the expiry left by the previous one.
+     */
+    @Query(value = "INSERT INTO recruiter_plan_subscription (recruiter_id, plan_id, expires_on, previous_expires_on) " +
+            "VALUES (:recruiterId, :planId, :expiresOn, NULL) " +
+            "ON CONFLICT (recruiter_id, plan_id) DO UPDATE SET " +
+            "previous_expires_on = recruiter_plan_subscription.expires_on, " +
+            "expires_on = GREATEST(recruiter_plan_subscription.expires_on, EXCLUDED.expires_on) " +
+            "RETURNING previous_expires_on AS \"previousExpiresOn\", expires_on AS \"expiresOn\"", nativeQuery = true)
+    SubscriptionExpiryChange extend(@Param("recruiterId") UUID recruiterId, @Param("planId") UUID planId, @Param("expiresOn") Date expiresOn);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM recruiter_plan_subscription WHERE expires_on < :before", nativeQuery = true)
+    int deleteExpiredBefore(@Param("before") Date before);
+
+    @Modifying
+    @Query(value = "DELETE FROM recruiter_plan_subscription", nativeQuery = true)
+    void clear();
+
+    @Modifying
+    @Query(value = "INSERT INTO recruiter_plan_subscription (recruiter_id, plan_id, expires_on, previous_expires_on) " +
+            "SELECT p.recruiter_id, p.plan_id, MAX(p.expires_on), NULL FROM payment p " +
+            "WHERE p.expires_on IS NOT NULL GROUP BY p.recruiter_id, p.plan_id", nativeQuery = true)
+    void rebuildFromPayments();
+}
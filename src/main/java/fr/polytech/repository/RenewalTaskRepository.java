@@ -0,0 +1,22 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.RenewalTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface RenewalTaskRepository extends JpaRepository<RenewalTask, UUID> {
+    /**
+     * Lock the pending renewals that are due and the running ones whose lease expired, skipping the ones another
+     * replica is claiming.
+     */
+    @Query(value = "SELECT * FROM renewal_task WHERE status IN ('PENDING', 'RUNNING') AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<RenewalTask> lockDueTasks(@Param("now") Date now, @Param("limit") int limit);
+}
@@ -0,0 +1,60 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.RevenueDTO;
+import fr.polytech.model.RevenueRollup;
+import fr.polytech.model.RevenueRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface RevenueRollupRepository extends JpaRepository<RevenueRollup, RevenueRollupId> {
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (plan_id, currency, payment_method, payment_month, total_amount, payment_count) " +
+            "VALUES (:planId, :currency, :paymentMethod, :month, :amount, :count) " +
+            "ON CONFLICT (plan_id, currency, payment_method, payment_month) DO UPDATE SET " +
+            "total_amount = revenue_rollup.total_amount + EXCLUDED.total_amount, " +
+            "payment_count = revenue_rollup.payment_count + EXCLUDED.payment_count", nativeQuery = true)
+    void add(@Param("planId") UUID planId, @Param("currency") String currency, @Param("paymentMethod") String paymentMethod,
+             @Param("month") LocalDate month, @Param("amount") BigDecimal amount, @Param("count") long count);
+
+    @Query("SELECT new fr.polytech.model.RevenueDTO(r.id.planId, r.id.currency, SUM(r.totalAmount), SUM(r.paymentCount)) " +
+            "FROM RevenueRollup r GROUP BY r.id.planId, r.id.currency ORDER BY r.id.planId")
+    List<RevenueDTO> sumByPlan();
+
+    @Query("SELECT new fr.polytech.model.RevenueDTO(r.id.currency, SUM(r.totalAmount), SUM(r.paymentCount)) " +
+            "FROM RevenueRollup r GROUP BY r.id.currency ORDER BY r.id.currency")
+    List<RevenueDTO> sumByCurrency();
+
+    @Query("SELECT new fr.polytech.model.RevenueDTO(r.id.paymentMethod, r.id.currency, SUM(r.totalAmount), SUM(r.paymentCount)) " +
+            "FROM RevenueRollup r GROUP BY r.id.paymentMethod, r.id.currency ORDER BY r.id.paymentMethod, r.id.currency")
+    List<RevenueDTO> sumByPaymentMethod();
+
+    @Query("SELECT new fr.polytech.model.RevenueDTO(r.id.month, r.id.currency, SUM(r.totalAmount), SUM(r.paymentCount)) " +
+            "FROM RevenueRollup r WHERE r.id.month BETWEEN :from AND :to " +
+            "GROUP BY r.id.month, r.id.currency ORDER BY r.id.month, r.id.currency")
+    List<RevenueDTO> sumByMonth(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "LOCK TABLE revenue_rollup, subscription_rollup, recruiter_plan_subscription IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockRollups();
+
+    @Modifying
+    @Query(value = "DELETE FROM revenue_rollup", nativeQuery = true)
+    void clear();
+
+    @Modifying
+    @Query(value = "INSERT INTO revenue_rollup (plan_id, currency, payment_method, payment_month, total_amount, payment_count) " +
+            "SELECT p.plan_id, p.currency, p.payment_method, CAST(date_trunc('month', p.payment_date) AS date), " +
+            "SUM(p.amount), COUNT(*) " +
+            "FROM payment p WHERE p.amount IS NOT NULL AND p.currency IS NOT NULL " +
+            "GROUP BY p.plan_id, p.currency, p.payment_method, CAST(date_trunc('month', p.payment_date) AS date)", nativeQuery = true)
+    void rebuildFromPayments();
+}
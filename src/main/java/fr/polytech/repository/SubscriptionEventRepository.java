@@ -0,0 +1,22 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.SubscriptionEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SubscriptionEventRepository extends JpaRepository<SubscriptionEvent, Long> {
+    /**
+     * Get the id of the last event, 0 if there is none.
+     */
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM SubscriptionEvent e")
+    long findLastId();
+
+    @Query("SELECT e FROM SubscriptionEvent e WHERE e.id > :after ORDER BY e.id")
+    List<SubscriptionEvent> findAfter(@Param("after") long after, Pageable pageable);
+}
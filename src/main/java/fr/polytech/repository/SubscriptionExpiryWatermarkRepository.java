@@ -0,0 +1,17 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.SubscriptionExpiryWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SubscriptionExpiryWatermarkRepository extends JpaRepository<SubscriptionExpiryWatermark, String> {
+    /**
+     * Take a transaction-level advisory lock without waiting, so only one replica runs the expiry scheduler at a time.
+     * The lock is released when the transaction ends.
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryLock(@Param("key") long key);
+}
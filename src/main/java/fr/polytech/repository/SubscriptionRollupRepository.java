@@ -0,0 +1,44 @@
+package fr.polytech.repository;
+
+import fr.polytech.model.ActivePlanSubscriptionsDTO;
+import fr.polytech.model.SubscriptionRollup;
+import fr.polytech.model.SubscriptionRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface SubscriptionRollupRepository extends JpaRepository<SubscriptionRollup, SubscriptionRollupId> {
+    @Modifying
+    @Query(value = "INSERT INTO subscription_rollup (plan_id, expires_on, subscription_count) " +
+            "VALUES (:planId, :expiresOn, :count) " +
+            "ON CONFLICT (plan_id, expires_on) DO UPDATE SET " +
+            "subscription_count = subscription_rollup.subscription_count + EXCLUDED.subscription_count", nativeQuery = true)
+    void add(@Param("planId") UUID planId, @Param("expiresOn") LocalDate expiresOn, @Param("count") long count);
+
+    @Query("SELECT new fr.polytech.model.ActivePlanSubscriptionsDTO(s.id.planId, SUM(s.subscriptionCount)) " +
+            "FROM SubscriptionRollup s WHERE s.id.expiresOn >= :today GROUP BY s.id.planId ORDER BY s.id.planId")
+    List<ActivePlanSubscriptionsDTO> sumActiveByPlan(@Param("today") LocalDate today);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM subscription_rollup WHERE expires_on < :before", nativeQuery = true)
+    int deleteExpiredBefore(@Param("before") LocalDate before);
+
+    @Modifying
+    @Query(value = "DELETE FROM subscription_rollup", nativeQuery = true)
+    void clear();
+
+    @Modifying
+    @Query(value = "INSERT INTO subscription_rollup (plan_id, expires_on, subscription_count) " +
+            "SELECT s.plan_id, CAST(s.expires_on AS date), COUNT(*) FROM recruiter_plan_subscription s " +
+            "GROUP BY s.plan_id, CAST(s.expires_on AS date)", nativeQuery = true)
+    void rebuildFromSubscriptions();
+}
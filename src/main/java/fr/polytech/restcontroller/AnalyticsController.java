@@ -0,0 +1,171 @@
+package fr.polytech.restcontroller;
+
+import fr.polytech.annotation.IsAdmin;
+import fr.polytech.model.ActivePlanSubscriptionsDTO;
+import fr.polytech.model.RevenueDTO;
+import fr.polytech.service.AnalyticsService;
+import jakarta.ws.rs.Produces;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/v1/analytics")
+public class AnalyticsController {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(AnalyticsController.class);
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    /**
+     * Get the revenue of each plan.
+     *
+     * @return Revenue by plan.
+     */
+    @GetMapping("/revenue/plan")
+    @IsAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RevenueDTO>> getRevenueByPlan() {
+        try {
+            List<RevenueDTO> revenue = analyticsService.getRevenueByPlan();
+            logger.info("Got revenue by plan");
+            return new ResponseEntity<>(revenue, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting revenue by plan {}", e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting revenue by plan", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the revenue in each currency.
+     *
+     * @return Revenue by currency.
+     */
+    @GetMapping("/revenue/currency")
+    @IsAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RevenueDTO>> getRevenueByCurrency() {
+        try {
+            List<RevenueDTO> revenue = analyticsService.getRevenueByCurrency();
+            logger.info("Got revenue by currency");
+            return new ResponseEntity<>(revenue, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting revenue by currency {}", e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting revenue by currency", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the revenue of each payment method, by currency.
+     *
+     * @return Revenue by payment method and currency.
+     */
+    @GetMapping("/revenue/payment-method")
+    @IsAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RevenueDTO>> getRevenueByPaymentMethod() {
+        try {
+            List<RevenueDTO> revenue = analyticsService.getRevenueByPaymentMethod();
+            logger.info("Got revenue by payment method");
+            return new ResponseEntity<>(revenue, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting revenue by payment method {}", e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting revenue by payment method", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the revenue of each month, by currency.
+     *
+     * @param from First month, any day of it. Defaults to the first month with payments.
+     * @param to   Last month, any day of it. Defaults to the current month.
+     * @return Revenue by month and currency.
+     */
+    @GetMapping("/revenue/month")
+    @IsAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RevenueDTO>> getRevenueByMonth(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        try {
+            List<RevenueDTO> revenue = analyticsService.getRevenueByMonth(from, to);
+            logger.info("Got revenue by month from {} to {}", from, to);
+            return new ResponseEntity<>(revenue, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting revenue by month from {} to {} {}", from, to, e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting revenue by month from {} to {}", from, to, e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the number of active subscriptions of each plan.
+     *
+     * @return Active subscriptions by plan.
+     */
+    @GetMapping("/subscriptions/active")
+    @IsAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ActivePlanSubscriptionsDTO>> getActiveSubscriptionsByPlan() {
+        try {
+            List<ActivePlanSubscriptionsDTO> subscriptions = analyticsService.getActiveSubscriptionsByPlan();
+            logger.info("Got active subscriptions by plan");
+            return new ResponseEntity<>(subscriptions, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting active subscriptions by plan {}", e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting active subscriptions by plan", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Recompute the rollups from the payments.
+     *
+     * @return True if the rollups were rebuilt.
+     */
+    @PostMapping("/rebuild")
+    @IsAdmin
+    @Produces(MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<Boolean> rebuild() {
+        try {
+            analyticsService.rebuild();
+            logger.info("Rebuilt analytics rollups");
+            return new ResponseEntity<>(true, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while rebuilding analytics rollups {}", e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while rebuilding analytics rollups", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
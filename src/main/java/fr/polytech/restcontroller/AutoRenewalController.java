@@ -0,0 +1,105 @@
+package fr.polytech.restcontroller;
+
+import fr.polytech.annotation.IsRecruiterOrAdmin;
+import fr.polytech.model.AutoRenewal;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.service.AutoRenewalService;
+import jakarta.ws.rs.Produces;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.UUID;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/v1/payment/auto-renewal")
+public class AutoRenewalController {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(AutoRenewalController.class);
+
+    @Autowired
+    private AutoRenewalService autoRenewalService;
+
+    /**
+     * Get the automatic renewal opt-in of a recruiter.
+     *
+     * @param id Recruiter id.
+     * @return Opt-in of the recruiter.
+     */
+    @GetMapping("/{id}")
+    @IsRecruiterOrAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AutoRenewal> getAutoRenewal(@PathVariable("id") UUID id) {
+        try {
+            AutoRenewal autoRenewal = autoRenewalService.getAutoRenewal(id);
+            logger.info("Got auto-renewal of recruiter {}", id);
+            return new ResponseEntity<>(autoRenewal, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting auto-renewal of recruiter {} {}", id, e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting auto-renewal of recruiter {}", id, e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Opt a recruiter in to automatic renewal.
+     *
+     * @param id            Recruiter id.
+     * @param paymentMethod Payment method of the renewals. Defaults to the one of each renewed payment.
+     * @return Opt-in of the recruiter.
+     */
+    @PutMapping("/{id}")
+    @IsRecruiterOrAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AutoRenewal> enableAutoRenewal(
+            @PathVariable("id") UUID id,
+            @RequestParam(value = "paymentMethod", required = false) PaymentMethod paymentMethod
+    ) {
+        try {
+            AutoRenewal autoRenewal = autoRenewalService.enableAutoRenewal(id, paymentMethod);
+            logger.info("Enabled auto-renewal of recruiter {}", id);
+            return new ResponseEntity<>(autoRenewal, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while enabling auto-renewal of recruiter {} {}", id, e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while enabling auto-renewal of recruiter {}", id, e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Opt a recruiter out of automatic renewal.
+     *
+     * @param id Recruiter id.
+     * @return True if the recruiter was opted out.
+     */
+    @DeleteMapping("/{id}")
+    @IsRecruiterOrAdmin
+    @Produces(MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<Boolean> disableAutoRenewal(@PathVariable("id") UUID id) {
+        try {
+            autoRenewalService.disableAutoRenewal(id);
+            logger.info("Disabled auto-renewal of recruiter {}", id);
+            return new ResponseEntity<>(true, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while disabling auto-renewal of recruiter {} {}", id, e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while disabling auto-renewal of recruiter {}", id, e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -3,33 +3,61 @@ package fr.polytech.restcontroller;
 import fr.polytech.annotation.IsAdmin;
 import fr.polytech.annotation.IsRecruiter;
 import fr.polytech.annotation.IsRecruiterOrAdmin;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.polytech.model.ActiveSubscriptionDTO;
 import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentBatchResultDTO;
 import fr.polytech.model.PaymentDTO;
 import fr.polytech.model.PaymentMethod;
+import fr.polytech.model.PaymentPageDTO;
+import fr.polytech.service.ActiveSubscriptionService;
 import fr.polytech.service.PaymentService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.Produces;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/v1/payment")
 public class PaymentController {
 
     private final Logger logger = LoggerFactory.getLogger(PaymentController.class);
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private ActiveSubscriptionService activeSubscriptionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${payment.stream.timeout:10m}")
+    private Duration streamTimeout;
+
     /**
      * Get all payments.
      *
@@ -44,7 +72,7 @@ public class PaymentController {
             logger.info("Got all payments");
             return new ResponseEntity<>(payments, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while getting all payments" + e.getStatusCode(), e);
+            logger.error("Error while getting all payments {}", e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
         } catch (Exception e) {
             logger.error("Error while getting all payments", e);
@@ -52,6 +80,68 @@ public class PaymentController {
         }
     }
 
+    /**
+     * Get a page of payments ordered by payment date.
+     *
+     * @param cursor Cursor returned with the previous page, absent for the first page.
+     * @param size   Maximum number of payments in the page.
+     * @return Page of payments.
+     */
+    @GetMapping("/page")
+    @IsAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PaymentPageDTO> getPaymentPage(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "100") int size
+    ) {
+        try {
+            PaymentPageDTO page = paymentService.getPaymentsPage(cursor, size);
+            logger.info("Got payments page");
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting payments page {}", e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting payments page", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Stream all payments as newline-delimited JSON, one payment per line.
+     * The stream has its own timeout, longer than the default one of asynchronous requests.
+     *
+     * @param response Response the payments are written to.
+     * @return Task streaming the payments.
+     */
+    @GetMapping(value = "/stream", produces = APPLICATION_NDJSON_VALUE)
+    @IsAdmin
+    public WebAsyncTask<Void> streamPayments(HttpServletResponse response) {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                paymentService.streamAllPayments(payment -> {
+                    try {
+                        outputStream.write(objectMapper.writeValueAsBytes(payment));
+                        outputStream.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                logger.info("Streamed all payments");
+            } catch (Exception e) {
+                logger.error("Error while streaming all payments", e);
+                throw e;
+            }
+        };
+        return new WebAsyncTask<>(streamTimeout.toMillis(), () -> {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(APPLICATION_NDJSON_VALUE);
+            body.writeTo(response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
+    }
+
     /**
      * Get payment by id.
      *
@@ -64,13 +154,13 @@ public class PaymentController {
     public ResponseEntity<Payment> getPaymentById(@PathVariable("id") UUID id) {
         try {
             Payment payment = paymentService.getPaymentById(id);
-            logger.info("Got payment with id " + id);
+            logger.info("Got payment with id {}", id);
             return new ResponseEntity<>(payment, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while getting payment with id " + id + " " + e.getStatusCode(), e);
+            logger.error("Error while getting payment with id {} {}", id, e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
         } catch (Exception e) {
-            logger.error("Error while getting payment with id " + id, e);
+            logger.error("Error while getting payment with id {}", id, e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
@@ -87,13 +177,65 @@ public class PaymentController {
     public ResponseEntity<List<Payment>> getPaymentByUserId(@PathVariable("id") UUID id) {
         try {
             List<Payment> payments = paymentService.getPaymentsByUserId(id);
-            logger.info("Got payment with user id " + id);
+            logger.info("Got payment with user id {}", id);
             return new ResponseEntity<>(payments, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while getting payment with user id " + id + " " + e.getStatusCode(), e);
+            logger.error("Error while getting payment with user id {} {}", id, e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting payment with user id {}", id, e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get a page of the payments of a user, most recent first.
+     *
+     * @param id     User id.
+     * @param cursor Cursor returned with the previous page, absent for the first page.
+     * @param size   Maximum number of payments in the page.
+     * @return Page of payments with the specified user id.
+     */
+    @GetMapping("/user/{id}/page")
+    @IsRecruiterOrAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PaymentPageDTO> getPaymentPageByUserId(
+            @PathVariable("id") UUID id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        try {
+            PaymentPageDTO page = paymentService.getPaymentsPageByUserId(id, cursor, size);
+            logger.info("Got payments page with user id {}", id);
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting payments page with user id {} {}", id, e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
         } catch (Exception e) {
-            logger.error("Error while getting payment with user id " + id, e);
+            logger.error("Error while getting payments page with user id {}", id, e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get the active subscription of a user.
+     *
+     * @param id User id.
+     * @return Plan id and expiry date of the active subscription.
+     */
+    @GetMapping("/user/{id}/active")
+    @IsRecruiterOrAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ActiveSubscriptionDTO> getActiveSubscriptionByUserId(@PathVariable("id") UUID id) {
+        try {
+            ActiveSubscriptionDTO subscription = activeSubscriptionService.getActiveSubscription(id);
+            logger.info("Got active subscription with user id {}", id);
+            return new ResponseEntity<>(subscription, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting active subscription with user id {} {}", id, e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting active subscription with user id {}", id, e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
@@ -120,7 +262,9 @@ public class PaymentController {
     /**
      * Create a new payment.
      *
-     * @param payment Payment to create.
+     * @param payment        Payment to create.
+     * @param idempotencyKey Optional key making retries of the same request return the same payment.
+     * @param jwt            Token of the caller, the idempotency key is scoped to its subject.
      * @return Created payment.
      */
     @PostMapping("/")
@@ -129,18 +273,93 @@ public class PaymentController {
     @Produces(MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Payment> createPayment(
             @RequestBody PaymentDTO payment,
-            @RequestHeader("Authorization") String token
+            @RequestHeader("Authorization") String token,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal Jwt jwt
     ) {
         try {
-            Payment createdPayment = paymentService.createPayment(payment, token);
-            logger.info("Created payment with id " + createdPayment.getId());
+            Payment createdPayment = paymentService.createPayment(payment, token, idempotencyKey, jwt.getSubject());
+            logger.info("Created payment with id {}", createdPayment.getId());
             return new ResponseEntity<>(createdPayment, HttpStatus.CREATED);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while creating payment " + e.getStatusCode(), e);
+            logger.error("Error while creating payment {}", e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (HttpServerErrorException.ServiceUnavailable e) {
+            logger.error("Error while creating payment, a dependency is unavailable", e);
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             logger.error("Error while creating payment", e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    /**
+     * Create several payments at once.
+     *
+     * @param payments       Payments to create.
+     * @param idempotencyKey Optional key making retries of the same batch return the payments already created.
+     * @param jwt            Token of the caller, the idempotency key is scoped to its subject.
+     * @return Result of each payment, in the order of the request.
+     */
+    @PostMapping("/batch")
+    @IsRecruiterOrAdmin
+    @Consumes(MediaType.APPLICATION_JSON_VALUE)
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<PaymentBatchResultDTO>> createPayments(
+            @RequestBody List<PaymentDTO> payments,
+            @RequestHeader("Authorization") String token,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal Jwt jwt
+    ) {
+        try {
+            List<PaymentBatchResultDTO> results = paymentService.createPayments(payments, token, idempotencyKey, jwt.getSubject());
+            logger.info("Created batch of {} payments", results.size());
+            return new ResponseEntity<>(results, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while creating batch of payments {}", e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while creating batch of payments", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Evict a recruiter and its address from the upstream cache.
+     *
+     * @param id Recruiter id.
+     * @return True if the recruiter has been evicted.
+     */
+    @DeleteMapping("/cache/recruiter/{id}")
+    @IsAdmin
+    @Produces(MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<Boolean> evictRecruiterCache(@PathVariable("id") UUID id) {
+        try {
+            paymentService.evictRecruiterCache(id);
+            logger.info("Evicted recruiter with id {} from cache", id);
+            return new ResponseEntity<>(true, HttpStatus.OK);
+        } catch (Exception e) {
+            logger.error("Error while evicting recruiter with id {} from cache", id, e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Evict every recruiter and address from the upstream cache.
+     *
+     * @return True if the cache has been cleared.
+     */
+    @DeleteMapping("/cache/")
+    @IsAdmin
+    @Produces(MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<Boolean> evictUpstreamCache() {
+        try {
+            paymentService.evictUpstreamCache();
+            logger.info("Evicted all recruiters and addresses from cache");
+            return new ResponseEntity<>(true, HttpStatus.OK);
+        } catch (Exception e) {
+            logger.error("Error while evicting recruiters and addresses from cache", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 }
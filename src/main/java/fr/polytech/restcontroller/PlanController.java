@@ -10,6 +10,7 @@ import jakarta.ws.rs.Produces;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -20,6 +21,7 @@ import java.util.List;
 import java.util.UUID;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/v1/plan")
 public class PlanController {
 
@@ -42,7 +44,7 @@ public class PlanController {
             logger.info("Got all plans");
             return new ResponseEntity<>(plans, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while getting all plans" + e.getStatusCode(), e);
+            logger.error("Error while getting all plans {}", e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
         } catch (Exception e) {
             logger.error("Error while getting all plans", e);
@@ -62,13 +64,13 @@ public class PlanController {
     public ResponseEntity<Plan> getPlanById(@PathVariable("id") UUID id) {
         try {
             Plan plan = planService.getPlanById(id);
-            logger.info("Got plan by id: " + id);
+            logger.info("Got plan by id: {}", id);
             return new ResponseEntity<>(plan, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while getting plan by id: " + id + " " + e.getStatusCode(), e);
+            logger.error("Error while getting plan by id: {} {}", id, e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
         } catch (Exception e) {
-            logger.error("Error while getting plan by id: " + id, e);
+            logger.error("Error while getting plan by id: {}", id, e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
@@ -85,13 +87,13 @@ public class PlanController {
     public ResponseEntity<List<Plan>> getPlanByCurrency(@PathVariable("currency") String currency) {
         try {
             List<Plan> plans = planService.getPlansByCurrency(currency);
-            logger.info("Got plan by currency: " + currency);
+            logger.info("Got plan by currency: {}", currency);
             return new ResponseEntity<>(plans, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while getting plan by currency: " + currency + " " + e.getStatusCode(), e);
+            logger.error("Error while getting plan by currency: {} {}", currency, e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
         } catch (Exception e) {
-            logger.error("Error while getting plan by currency: " + currency, e);
+            logger.error("Error while getting plan by currency: {}", currency, e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
@@ -109,13 +111,13 @@ public class PlanController {
     public ResponseEntity<Plan> updatePlan(@RequestBody PlanDTO plan) {
         try {
             Plan updatedPlan = planService.updatePlan(plan);
-            logger.info("Updated plan with id: " + plan.getId());
+            logger.info("Updated plan with id: {}", plan.getId());
             return new ResponseEntity<>(updatedPlan, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while updating plan with id: " + plan.getId() + " " + e.getStatusCode(), e);
+            logger.error("Error while updating plan with id: {} {}", plan.getId(), e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
         } catch (Exception e) {
-            logger.error("Error while updating plan with id: " + plan.getId(), e);
+            logger.error("Error while updating plan with id: {}", plan.getId(), e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
@@ -133,13 +135,13 @@ public class PlanController {
     public ResponseEntity<Plan> createPlan(@RequestBody PlanDTO plan) {
         try {
             Plan createdPlan = planService.createPlan(plan);
-            logger.info("Created plan with id: " + plan.getId());
+            logger.info("Created plan with id: {}", plan.getId());
             return new ResponseEntity<>(createdPlan, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while creating plan with id: " + plan.getId() + " " + e.getStatusCode(), e);
+            logger.error("Error while creating plan with id: {} {}", plan.getId(), e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
         } catch (Exception e) {
-            logger.error("Error while creating plan with id: " + plan.getId(), e);
+            logger.error("Error while creating plan with id: {}", plan.getId(), e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
@@ -156,13 +158,13 @@ public class PlanController {
     public ResponseEntity<Boolean> deletePlan(@PathVariable("id") UUID id) {
         try {
             planService.deletePlan(id);
-            logger.info("Deleted plan with id: " + id);
+            logger.info("Deleted plan with id: {}", id);
             return new ResponseEntity<>(true, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
-            logger.error("Error while deleting plan with id: " + id + " " + e.getStatusCode(), e);
+            logger.error("Error while deleting plan with id: {} {}", id, e.getStatusCode(), e);
             return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
         } catch (Exception e) {
-            logger.error("Error while deleting plan with id: " + id, e);
+            logger.error("Error while deleting plan with id: {}", id, e);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
@@ -0,0 +1,258 @@
+package fr.polytech.restcontroller;
+
+import fr.polytech.annotation.IsAdmin;
+import fr.polytech.annotation.IsRecruiter;
+import fr.polytech.annotation.IsRecruiterOrAdmin;
+import fr.polytech.model.ActiveSubscriptionDTO;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentDTO;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.model.PaymentPageDTO;
+import fr.polytech.service.ReactivePaymentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reactive variant of PaymentController, selected with the reactive profile. Same paths, roles, statuses and bodies.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/v1/payment")
+public class ReactivePaymentController {
+
+    private final Logger logger = LoggerFactory.getLogger(ReactivePaymentController.class);
+
+    @Autowired
+    private ReactivePaymentService paymentService;
+
+    /**
+     * Get all payments.
+     *
+     * @return List of all payments.
+     */
+    @GetMapping(value = "/", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsAdmin
+    public Mono<ResponseEntity<List<Payment>>> getPayment() {
+        return paymentService.getAllPayments()
+                .map(payments -> {
+                    logger.info("Got all payments");
+                    return new ResponseEntity<>(payments, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while getting all payments"));
+    }
+
+    /**
+     * Get a page of payments ordered by payment date.
+     *
+     * @param cursor Cursor returned with the previous page, absent for the first page.
+     * @param size   Maximum number of payments in the page.
+     * @return Page of payments.
+     */
+    @GetMapping(value = "/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsAdmin
+    public Mono<ResponseEntity<PaymentPageDTO>> getPaymentPage(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "100") int size
+    ) {
+        return paymentService.getPaymentsPage(cursor, size)
+                .map(page -> {
+                    logger.info("Got payments page");
+                    return new ResponseEntity<>(page, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while getting payments page"));
+    }
+
+    /**
+     * Stream all payments as newline-delimited JSON, one payment per line.
+     *
+     * @return Streamed payments.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @IsAdmin
+    public Flux<Payment> streamPayments() {
+        return paymentService.streamAllPayments()
+                .doOnComplete(() -> logger.info("Streamed all payments"))
+                .doOnError(e -> logger.error("Error while streaming all payments", e));
+    }
+
+    /**
+     * Get payment by id.
+     *
+     * @param id Payment id.
+     * @return Payment with the specified id.
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsRecruiterOrAdmin
+    public Mono<ResponseEntity<Payment>> getPaymentById(@PathVariable("id") UUID id) {
+        return paymentService.getPaymentById(id)
+                .map(payment -> {
+                    logger.info("Got payment with id {}", id);
+                    return new ResponseEntity<>(payment, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while getting payment with id " + id));
+    }
+
+    /**
+     * Get payment by user id.
+     *
+     * @param id User id.
+     * @return Payment with the specified user id.
+     */
+    @GetMapping(value = "/user/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsRecruiterOrAdmin
+    public Mono<ResponseEntity<List<Payment>>> getPaymentByUserId(@PathVariable("id") UUID id) {
+        return paymentService.getPaymentsByUserId(id)
+                .map(payments -> {
+                    logger.info("Got payment with user id {}", id);
+                    return new ResponseEntity<>(payments, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while getting payment with user id " + id));
+    }
+
+    /**
+     * Get a page of the payments of a user, most recent first.
+     *
+     * @param id     User id.
+     * @param cursor Cursor returned with the previous page, absent for the first page.
+     * @param size   Maximum number of payments in the page.
+     * @return Page of payments with the specified user id.
+     */
+    @GetMapping(value = "/user/{id}/page", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsRecruiterOrAdmin
+    public Mono<ResponseEntity<PaymentPageDTO>> getPaymentPageByUserId(
+            @PathVariable("id") UUID id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        return paymentService.getPaymentsPageByUserId(id, cursor, size)
+                .map(page -> {
+                    logger.info("Got payments page with user id {}", id);
+                    return new ResponseEntity<>(page, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while getting payments page with user id " + id));
+    }
+
+    /**
+     * Get the active subscription of a user.
+     *
+     * @param id User id.
+     * @return Plan id and expiry date of the active subscription.
+     */
+    @GetMapping(value = "/user/{id}/active", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsRecruiterOrAdmin
+    public Mono<ResponseEntity<ActiveSubscriptionDTO>> getActiveSubscriptionByUserId(@PathVariable("id") UUID id) {
+        return paymentService.getActiveSubscription(id)
+                .map(subscription -> {
+                    logger.info("Got active subscription with user id {}", id);
+                    return new ResponseEntity<>(subscription, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while getting active subscription with user id " + id));
+    }
+
+    /**
+     * Get available payment methods.
+     *
+     * @return List of available payment methods.
+     */
+    @GetMapping(value = "/methods/", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsRecruiterOrAdmin
+    public Mono<ResponseEntity<List<PaymentMethod>>> getPaymentByPaymentMethod() {
+        logger.info("Got payment methods");
+        return Mono.just(new ResponseEntity<>(paymentService.getPaymentMethods(), HttpStatus.OK));
+    }
+
+    /**
+     * Create a new payment.
+     * Idempotency keys are only supported by the servlet stack, so a request carrying one is refused rather than
+     * risking a duplicate payment.
+     *
+     * @param payment        Payment to create.
+     * @param idempotencyKey Optional idempotency key.
+     * @return Created payment.
+     */
+    @PostMapping(value = "/", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsRecruiter
+    public Mono<ResponseEntity<Payment>> createPayment(
+            @RequestBody PaymentDTO payment,
+            @RequestHeader("Authorization") String token,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
+    ) {
+        if (idempotencyKey != null) {
+            logger.error("Idempotency-Key is not supported by the reactive stack");
+            return Mono.just(new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED));
+        }
+        return paymentService.createPayment(payment, token)
+                .map(createdPayment -> {
+                    logger.info("Created payment with id {}", createdPayment.getId());
+                    return new ResponseEntity<>(createdPayment, HttpStatus.CREATED);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while creating payment"));
+    }
+
+    /**
+     * Evict a recruiter and its address from the upstream cache.
+     *
+     * @param id Recruiter id.
+     * @return True if the recruiter has been evicted.
+     */
+    @DeleteMapping(value = "/cache/recruiter/{id}", produces = MediaType.TEXT_PLAIN_VALUE)
+    @IsAdmin
+    public Mono<ResponseEntity<Boolean>> evictRecruiterCache(@PathVariable("id") UUID id) {
+        return Mono.fromRunnable(() -> paymentService.evictRecruiterCache(id))
+                .then(Mono.fromCallable(() -> {
+                    logger.info("Evicted recruiter with id {} from cache", id);
+                    return new ResponseEntity<>(true, HttpStatus.OK);
+                }))
+                .onErrorResume(e -> errorResponse(e, "Error while evicting recruiter with id " + id + " from cache"));
+    }
+
+    /**
+     * Evict every recruiter and address from the upstream cache.
+     *
+     * @return True if the cache has been cleared.
+     */
+    @DeleteMapping(value = "/cache/", produces = MediaType.TEXT_PLAIN_VALUE)
+    @IsAdmin
+    public Mono<ResponseEntity<Boolean>> evictUpstreamCache() {
+        return Mono.fromRunnable(paymentService::evictUpstreamCache)
+                .then(Mono.fromCallable(() -> {
+                    logger.info("Evicted all recruiters and addresses from cache");
+                    return new ResponseEntity<>(true, HttpStatus.OK);
+                }))
+                .onErrorResume(e -> errorResponse(e, "Error while evicting recruiters and addresses from cache"));
+    }
+
+    /**
+     * Answer with the status of an HttpClientErrorException, 503 when a dependency is unavailable, or 500 for any other
+     * error, as PaymentController does.
+     *
+     * @param e       Error.
+     * @param message Log message.
+     * @return Response without body.
+     */
+    private <T> Mono<ResponseEntity<T>> errorResponse(Throwable e, String message) {
+        if (e instanceof HttpClientErrorException clientError) {
+            logger.error("{} {}", message, clientError.getStatusCode(), e);
+            return Mono.just(new ResponseEntity<>(HttpStatus.valueOf(clientError.getStatusCode().value())));
+        }
+        if (e instanceof HttpServerErrorException.ServiceUnavailable) {
+            logger.error("{}, a dependency is unavailable", message, e);
+            return Mono.just(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        logger.error(message, e);
+        return Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+}
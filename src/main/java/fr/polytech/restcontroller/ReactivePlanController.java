@@ -0,0 +1,151 @@
+package fr.polytech.restcontroller;
+
+import fr.polytech.annotation.IsAdmin;
+import fr.polytech.annotation.IsRecruiterOrAdmin;
+import fr.polytech.model.Plan;
+import fr.polytech.model.PlanDTO;
+import fr.polytech.service.ReactivePlanService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpClientErrorException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reactive variant of PlanController, selected with the reactive profile. Same paths, roles, statuses and bodies.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/v1/plan")
+public class ReactivePlanController {
+
+    private final Logger logger = LoggerFactory.getLogger(ReactivePlanController.class);
+
+    @Autowired
+    private ReactivePlanService planService;
+
+    /**
+     * Get all plans.
+     *
+     * @return List of all plans.
+     */
+    @GetMapping(value = "/", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsRecruiterOrAdmin
+    public Mono<ResponseEntity<List<Plan>>> getAllPlans() {
+        return planService.getAllPlans()
+                .map(plans -> {
+                    logger.info("Got all plans");
+                    return new ResponseEntity<>(plans, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while getting all plans"));
+    }
+
+    /**
+     * Get plan by id.
+     *
+     * @param id Plan id.
+     * @return Plan with the specified id.
+     */
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsRecruiterOrAdmin
+    public Mono<ResponseEntity<Plan>> getPlanById(@PathVariable("id") UUID id) {
+        return planService.getPlanById(id)
+                .map(plan -> {
+                    logger.info("Got plan by id: {}", id);
+                    return new ResponseEntity<>(plan, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while getting plan by id: " + id));
+    }
+
+    /**
+     * Get plan by currency.
+     *
+     * @param currency Plan currency.
+     * @return Plan with the specified currency.
+     */
+    @GetMapping(value = "/currency/{currency}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsRecruiterOrAdmin
+    public Mono<ResponseEntity<List<Plan>>> getPlanByCurrency(@PathVariable("currency") String currency) {
+        return planService.getPlansByCurrency(currency)
+                .map(plans -> {
+                    logger.info("Got plan by currency: {}", currency);
+                    return new ResponseEntity<>(plans, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while getting plan by currency: " + currency));
+    }
+
+    /**
+     * Update plan.
+     *
+     * @param plan Plan to update.
+     * @return Updated plan.
+     */
+    @PutMapping(value = "/", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsAdmin
+    public Mono<ResponseEntity<Plan>> updatePlan(@RequestBody PlanDTO plan) {
+        return planService.updatePlan(plan)
+                .map(updatedPlan -> {
+                    logger.info("Updated plan with id: {}", plan.getId());
+                    return new ResponseEntity<>(updatedPlan, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while updating plan with id: " + plan.getId()));
+    }
+
+    /**
+     * Create a new plan.
+     *
+     * @param plan Plan to create.
+     * @return Created plan.
+     */
+    @PostMapping(value = "/", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @IsAdmin
+    public Mono<ResponseEntity<Plan>> createPlan(@RequestBody PlanDTO plan) {
+        return planService.createPlan(plan)
+                .map(createdPlan -> {
+                    logger.info("Created plan with id: {}", createdPlan.getId());
+                    return new ResponseEntity<>(createdPlan, HttpStatus.OK);
+                })
+                .onErrorResume(e -> errorResponse(e, "Error while creating plan"));
+    }
+
+    /**
+     * Delete a plan.
+     *
+     * @param id Plan id.
+     * @return True if the plan has been deleted, false otherwise.
+     */
+    @DeleteMapping(value = "/{id}", produces = MediaType.TEXT_PLAIN_VALUE)
+    @IsAdmin
+    public Mono<ResponseEntity<Boolean>> deletePlan(@PathVariable("id") UUID id) {
+        return planService.deletePlan(id)
+                .then(Mono.fromCallable(() -> {
+                    logger.info("Deleted plan with id: {}", id);
+                    return new ResponseEntity<>(true, HttpStatus.OK);
+                }))
+                .onErrorResume(e -> errorResponse(e, "Error while deleting plan with id: " + id));
+    }
+
+    /**
+     * Answer with the status of an HttpClientErrorException, or 500 for any other error, as PlanController does.
+     *
+     * @param e       Error.
+     * @param message Log message.
+     * @return Response without body.
+     */
+    private <T> Mono<ResponseEntity<T>> errorResponse(Throwable e, String message) {
+        if (e instanceof HttpClientErrorException clientError) {
+            logger.error("{} {}", message, clientError.getStatusCode(), e);
+            return Mono.just(new ResponseEntity<>(HttpStatus.valueOf(clientError.getStatusCode().value())));
+        }
+        logger.error(message, e);
+        return Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+}
@@ -0,0 +1,58 @@
+package fr.polytech.restcontroller;
+
+import fr.polytech.annotation.IsAdmin;
+import fr.polytech.model.SubscriptionEvent;
+import fr.polytech.service.SubscriptionEventService;
+import jakarta.ws.rs.Produces;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.List;
+
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/v1/payment/subscription-events")
+public class SubscriptionEventController {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(SubscriptionEventController.class);
+
+    @Autowired
+    private SubscriptionEventService subscriptionEventService;
+
+    /**
+     * Get the subscription expiry events stored after an event, in the order they were stored.
+     *
+     * @param after Id of the last event already read, absent to read from the first event.
+     * @param size  Maximum number of events.
+     * @return Events stored after the given one.
+     */
+    @GetMapping("/")
+    @IsAdmin
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<SubscriptionEvent>> getSubscriptionEvents(
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @RequestParam(value = "size", defaultValue = "100") int size
+    ) {
+        try {
+            List<SubscriptionEvent> events = subscriptionEventService.getEventsAfter(after, size);
+            logger.info("Got {} subscription events", events.size());
+            return new ResponseEntity<>(events, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while getting subscription events {}", e.getStatusCode(), e);
+            return new ResponseEntity<>(HttpStatus.valueOf(e.getStatusCode().value()));
+        } catch (Exception e) {
+            logger.error("Error while getting subscription events", e);
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
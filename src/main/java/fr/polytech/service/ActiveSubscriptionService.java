@@ -0,0 +1,119 @@
+package fr.polytech.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import fr.polytech.model.ActiveSubscriptionDTO;
+import fr.polytech.repository.PaymentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Answers "which plan does this recruiter currently have" from a per-recruiter cache backed by an index-only lookup
+ * on (recruiter_id, expires_on DESC, plan_id).
+ * Reads are eventually consistent: a payment invalidates the cache of the replica that saved it only, so the other
+ * replicas may answer with the previous subscription for up to the time to live.
+ */
+@Service
+@Profile("!reactive")
+public class ActiveSubscriptionService {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(ActiveSubscriptionService.class);
+
+    private final PaymentRepository paymentRepository;
+
+    private final Cache<UUID, Optional<ActiveSubscriptionDTO>> subscriptions;
+
+    public ActiveSubscriptionService(
+            PaymentRepository paymentRepository,
+            MeterRegistry meterRegistry,
+            @Value("${payment.active-subscription-cache.max-size:50000}") long maxSize,
+            @Value("${payment.active-subscription-cache.ttl:30s}") Duration ttl,
+            @Value("${payment.active-subscription-cache.negative-ttl:10s}") Duration negativeTtl
+    ) {
+        this.paymentRepository = paymentRepository;
+        this.subscriptions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new SubscriptionExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, subscriptions, "active-subscriptions");
+    }
+
+    /**
+     * Get the active subscription of a recruiter, that is the unexpired payment that expires last.
+     *
+     * @param recruiterId Recruiter id.
+     * @return Active subscription.
+     * @throws HttpClientErrorException If the recruiter has no active subscription.
+     */
+    public ActiveSubscriptionDTO getActiveSubscription(UUID recruiterId) throws HttpClientErrorException {
+        logger.info("Getting active subscription of recruiter: {}", recruiterId);
+        return subscriptions.get(recruiterId, this::findActiveSubscription)
+                .filter(subscription -> subscription.getExpiresOn().after(new Date()))
+                .orElseThrow(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND, "No active subscription"));
+    }
+
+    /**
+     * Forget the cached subscription of a recruiter on this replica, after one of its payments has been written.
+     *
+     * @param recruiterId Recruiter id.
+     */
+    public void invalidate(UUID recruiterId) {
+        subscriptions.invalidate(recruiterId);
+    }
+
+    /**
+     * Find the active subscription of a recruiter in the database.
+     *
+     * @param recruiterId Recruiter id.
+     * @return Active subscription, empty if there is none.
+     */
+    private Optional<ActiveSubscriptionDTO> findActiveSubscription(UUID recruiterId) {
+        List<ActiveSubscriptionDTO> activeSubscriptions = paymentRepository.findActiveSubscriptions(recruiterId, new Date(), PageRequest.of(0, 1));
+        return activeSubscriptions.stream().findFirst();
+    }
+
+    /**
+     * Keep a subscription no longer than the configured time to live nor past its own expiry date, and keep the
+     * absence of subscription for a shorter time so that a payment made through another replica shows up quickly.
+     */
+    private record SubscriptionExpiry(long ttlNanos, long negativeTtlNanos) implements Expiry<UUID, Optional<ActiveSubscriptionDTO>> {
+
+        @Override
+        public long expireAfterCreate(UUID recruiterId, Optional<ActiveSubscriptionDTO> subscription, long currentTime) {
+            if (subscription.isEmpty()) {
+                return negativeTtlNanos;
+            }
+            long untilExpiry = Duration.ofMillis(subscription.get().getExpiresOn().getTime() - System.currentTimeMillis()).toNanos();
+            return Math.max(0, Math.min(ttlNanos, untilExpiry));
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID recruiterId, Optional<ActiveSubscriptionDTO> subscription, long currentTime, long currentDuration) {
+            return expireAfterCreate(recruiterId, subscription, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(UUID recruiterId, Optional<ActiveSubscriptionDTO> subscription, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package fr.polytech.service;
+
+import fr.polytech.model.ActivePlanSubscriptionsDTO;
+import fr.polytech.model.Payment;
+import fr.polytech.model.Plan;
+import fr.polytech.model.RevenueDTO;
+import fr.polytech.model.RevenueRollupId;
+import fr.polytech.model.SubscriptionExpiryChange;
+import fr.polytech.model.SubscriptionRollupId;
+import fr.polytech.repository.RecruiterPlanSubscriptionRepository;
+import fr.polytech.repository.RevenueRollupRepository;
+import fr.polytech.repository.SubscriptionRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Revenue and subscription aggregates, served from rollup tables maintained in the transaction inserting each payment.
+ * A query reads one row per bucket instead of scanning the payments. Revenue adds up the amount charged by each
+ * payment, and a subscription is a recruiter and a plan, counted once whatever the number of payments renewing it.
+ */
+@Service
+@Profile("!reactive")
+public class AnalyticsService {
+
+    private static final Comparator<RevenueRollupId> REVENUE_BUCKET_ORDER = Comparator
+            .comparing(RevenueRollupId::getPlanId)
+            .thenComparing(RevenueRollupId::getCurrency)
+            .thenComparing(RevenueRollupId::getPaymentMethod)
+            .thenComparing(RevenueRollupId::getMonth);
+
+    private static final Comparator<SubscriptionRollupId> SUBSCRIPTION_BUCKET_ORDER = Comparator
+            .comparing(SubscriptionRollupId::getPlanId)
+            .thenComparing(SubscriptionRollupId::getExpiresOn);
+
+    private static final Comparator<Payment> SUBSCRIPTION_ORDER = Comparator
+            .comparing(Payment::getRecruiterId)
+            .thenComparing(Payment::getPlanId);
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(AnalyticsService.class);
+
+    private final RevenueRollupRepository revenueRollupRepository;
+
+    private final SubscriptionRollupRepository subscriptionRollupRepository;
+
+    private final RecruiterPlanSubscriptionRepository recruiterPlanSubscriptionRepository;
+
+    public AnalyticsService(
+            RevenueRollupRepository revenueRollupRepository,
+            SubscriptionRollupRepository subscriptionRollupRepository,
+            RecruiterPlanSubscriptionRepository recruiterPlanSubscriptionRepository
+    ) {
+        this.revenueRollupRepository = revenueRollupRepository;
+        this.subscriptionRollupRepository = subscriptionRollupRepository;
+        this.recruiterPlanSubscriptionRepository = recruiterPlanSubscriptionRepository;
+    }
+
+    /**
+     * Add saved payments to the rollups, in the transaction that inserted them.
+     * Payments of the same bucket are summed first, and rows are updated in a fixed order so that concurrent
+     * transactions lock them in the same order. A payment extending the subscription of its recruiter to its plan
+     * moves the subscription from the bucket of the previous expiry to the one of the new expiry.
+     *
+     * @param payments Saved payments.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordPayments(List<Payment> payments) {
+        Map<RevenueRollupId, BigDecimal> amounts = new TreeMap<>(REVENUE_BUCKET_ORDER);
+        Map<RevenueRollupId, Long> paymentCounts = new TreeMap<>(REVENUE_BUCKET_ORDER);
+        Map<SubscriptionRollupId, Long> subscriptionCounts = new TreeMap<>(SUBSCRIPTION_BUCKET_ORDER);
+
+        for (Payment payment : payments) {
+            if (payment.getAmount() == null || payment.getCurrency() == null) {
+                logger.warn("Payment {} has no amount, left out of the revenue rollup", payment.getId());
+                continue;
+            }
+            RevenueRollupId revenueBucket = new RevenueRollupId(
+                    payment.getPlanId(),
+                    payment.getCurrency(),
+                    payment.getPaymentMethod(),
+                    RevenueRollupId.monthOf(payment.getPaymentDate())
+            );
+            amounts.merge(revenueBucket, payment.getAmount(), BigDecimal::add);
+            paymentCounts.merge(revenueBucket, 1L, Long::sum);
+        }
+
+        LocalDate today = LocalDate.now();
+        for (Payment payment : payments.stream().sorted(SUBSCRIPTION_ORDER).toList()) {
+            SubscriptionExpiryChange change = recruiterPlanSubscriptionRepository.extend(
+                    payment.getRecruiterId(),
+                    payment.getPlanId(),
+                    payment.getExpiresOn()
+            );
+            LocalDate day = SubscriptionRollupId.dayOf(change.getExpiresOn());
+            if (change.getPreviousExpiresOn() == null) {
+                subscriptionCounts.merge(new SubscriptionRollupId(payment.getPlanId(), day), 1L, Long::sum);
+                continue;
+            }
+            LocalDate previousDay = SubscriptionRollupId.dayOf(change.getPreviousExpiresOn());
+            if (!previousDay.equals(day)) {
+                subscriptionCounts.merge(new SubscriptionRollupId(payment.getPlanId(), day), 1L, Long::sum);
+                // Buckets that expired are no longer read and may be purged already
+                if (!previousDay.isBefore(today)) {
+                    subscriptionCounts.merge(new SubscriptionRollupId(payment.getPlanId(), previousDay), -1L, Long::sum);
+                }
+            }
+        }
+
+        amounts.forEach((bucket, amount) -> revenueRollupRepository.add(
+                bucket.getPlanId(),
+                bucket.getCurrency(),
+                bucket.getPaymentMethod().name(),
+                bucket.getMonth(),
+                amount,
+                paymentCounts.get(bucket)
+        ));
+        subscriptionCounts.forEach((bucket, count) -> {
+            if (count != 0) {
+                subscriptionRollupRepository.add(bucket.getPlanId(), bucket.getExpiresOn(), count);
+            }
+        });
+    }
+
+    /**
+     * Get the revenue of each plan.
+     *
+     * @return Revenue by plan.
+     */
+    public List<RevenueDTO> getRevenueByPlan() {
+        logger.info("Getting revenue by plan");
+        return revenueRollupRepository.sumByPlan();
+    }
+
+    /**
+     * Get the revenue in each currency.
+     *
+     * @return Revenue by currency.
+     */
+    public List<RevenueDTO> getRevenueByCurrency() {
+        logger.info("Getting revenue by currency");
+        return revenueRollupRepository.sumByCurrency();
+    }
+
+    /**
+     * Get the revenue of each payment method, by currency.
+     *
+     * @return Revenue by payment method and currency.
+     */
+    public List<RevenueDTO> getRevenueByPaymentMethod() {
+        logger.info("Getting revenue by payment method");
+        return revenueRollupRepository.sumByPaymentMethod();
+    }
+
+    /**
+     * Get the revenue of each month, by currency.
+     *
+     * @param from First month, or null for the first month with payments.
+     * @param to   Last month, or null for the current month.
+     * @return Revenue by month and currency.
+     * @throws HttpClientErrorException If the range is not valid.
+     */
+    public List<RevenueDTO> getRevenueByMonth(LocalDate from, LocalDate to) throws HttpClientErrorException {
+        logger.info("Getting revenue by month");
+        LocalDate firstMonth = from == null ? LocalDate.of(1970, 1, 1) : from.withDayOfMonth(1);
+        LocalDate lastMonth = to == null ? LocalDate.now().withDayOfMonth(1) : to.withDayOfMonth(1);
+        if (firstMonth.isAfter(lastMonth)) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "The first month must not be after the last one");
+        }
+        return revenueRollupRepository.sumByMonth(firstMonth, lastMonth);
+    }
+
+    /**
+     * Get the number of recruiters subscribed to each plan until today or later.
+     *
+     * @return Active subscriptions by plan.
+     */
+    public List<ActivePlanSubscriptionsDTO> getActiveSubscriptionsByPlan() {
+        logger.info("Getting active subscriptions by plan");
+        return subscriptionRollupRepository.sumActiveByPlan(LocalDate.now());
+    }
+
+    /**
+     * Recompute the rollups from the payment table, for instance to initialise them on existing payments.
+     * Payments being inserted wait on the table lock, so none is counted twice or missed. Revenue is recomputed from
+     * the amount stored on each payment, and payments without one are left out.
+     */
+    @Transactional
+    public void rebuild() {
+        logger.info("Rebuilding revenue and subscription rollups");
+        revenueRollupRepository.lockRollups();
+        revenueRollupRepository.clear();
+        subscriptionRollupRepository.clear();
+        recruiterPlanSubscriptionRepository.clear();
+        revenueRollupRepository.rebuildFromPayments();
+        recruiterPlanSubscriptionRepository.rebuildFromPayments();
+        subscriptionRollupRepository.rebuildFromSubscriptions();
+    }
+
+    /**
+     * Remove the subscription buckets and the subscriptions that expired, which no query reads anymore. A payment
+     * renewing a purged subscription counts it again from its new expiry.
+     */
+    @Scheduled(cron = "${payment.analytics.purge-cron:0 30 3 * * *}")
+    public void purgeExpiredSubscriptions() {
+        LocalDate today = LocalDate.now();
+        int purged = subscriptionRollupRepository.deleteExpiredBefore(today);
+        int subscriptions = recruiterPlanSubscriptionRepository.deleteExpiredBefore(
+                Date.from(today.atStartOfDay(ZoneId.systemDefault()).toInstant())
+        );
+        if (purged > 0 || subscriptions > 0) {
+            logger.info("Purged {} expired subscription buckets and {} expired subscriptions", purged, subscriptions);
+        }
+    }
+
+    /**
+     * Get the price of a plan as the amount charged by a payment, rounded to cents.
+     *
+     * @param plan Plan of the payment.
+     * @return Amount of the payment.
+     */
+    static BigDecimal priceOf(Plan plan) {
+        return new BigDecimal(Float.toString(plan.getPrice())).setScale(2, RoundingMode.HALF_UP);
+    }
+}
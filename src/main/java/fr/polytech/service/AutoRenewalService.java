@@ -0,0 +1,160 @@
+package fr.polytech.service;
+
+import fr.polytech.model.AutoRenewal;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.model.RenewalTask;
+import fr.polytech.model.RenewalTaskStatus;
+import fr.polytech.model.SubscriptionRenewalDueEvent;
+import fr.polytech.repository.AutoRenewalRepository;
+import fr.polytech.repository.PaymentRepository;
+import fr.polytech.repository.RenewalTaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Opt-in of recruiters to automatic renewal, and queueing of the renewals of their subscriptions as they fall due.
+ * Renewals are run later by RenewalJob.
+ */
+@Service
+@Profile("!reactive")
+public class AutoRenewalService {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(AutoRenewalService.class);
+
+    private final AutoRenewalRepository autoRenewalRepository;
+
+    private final RenewalTaskRepository renewalTaskRepository;
+
+    private final PaymentRepository paymentRepository;
+
+    private final Duration spread;
+
+    public AutoRenewalService(
+            AutoRenewalRepository autoRenewalRepository,
+            RenewalTaskRepository renewalTaskRepository,
+            PaymentRepository paymentRepository,
+            @Value("${payment.renewal.spread:3d}") Duration spread
+    ) {
+        this.autoRenewalRepository = autoRenewalRepository;
+        this.renewalTaskRepository = renewalTaskRepository;
+        this.paymentRepository = paymentRepository;
+        this.spread = spread;
+    }
+
+    /**
+     * Get the automatic renewal opt-in of a recruiter.
+     *
+     * @param recruiterId Recruiter id.
+     * @return Opt-in of the recruiter.
+     * @throws HttpClientErrorException If the recruiter did not opt in.
+     */
+    public AutoRenewal getAutoRenewal(UUID recruiterId) throws HttpClientErrorException {
+        logger.info("Getting auto-renewal of recruiter {}", recruiterId);
+        return autoRenewalRepository.findById(recruiterId)
+                .orElseThrow(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND, "Auto-renewal not found"));
+    }
+
+    /**
+     * Opt a recruiter in to automatic renewal, or change the payment method of their renewals.
+     *
+     * @param recruiterId   Recruiter id.
+     * @param paymentMethod Payment method of the renewals, or null to use the one of each renewed payment.
+     * @return Opt-in of the recruiter.
+     */
+    public AutoRenewal enableAutoRenewal(UUID recruiterId, PaymentMethod paymentMethod) {
+        logger.info("Enabling auto-renewal of recruiter {}", recruiterId);
+        AutoRenewal autoRenewal = autoRenewalRepository.findById(recruiterId).orElseGet(() -> {
+            AutoRenewal created = new AutoRenewal();
+            created.setRecruiterId(recruiterId);
+            created.setCreatedAt(new Date());
+            return created;
+        });
+        autoRenewal.setPaymentMethod(paymentMethod);
+        return autoRenewalRepository.save(autoRenewal);
+    }
+
+    /**
+     * Opt a recruiter out of automatic renewal. Renewals already queued are cancelled when they come up.
+     *
+     * @param recruiterId Recruiter id.
+     * @throws HttpClientErrorException If the recruiter did not opt in.
+     */
+    public void disableAutoRenewal(UUID recruiterId) throws HttpClientErrorException {
+        logger.info("Disabling auto-renewal of recruiter {}", recruiterId);
+        if (!autoRenewalRepository.existsById(recruiterId)) {
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Auto-renewal not found");
+        }
+        autoRenewalRepository.deleteById(recruiterId);
+    }
+
+    /**
+     * Queue the renewal of a subscription falling due, if its recruiter opted in and has no later subscription to the
+     * plan. Runs in the transaction of the expiry scheduler, so the renewal is queued exactly when the event is
+     * recorded as published.
+     *
+     * @param event Subscription entering its renewal notice period.
+     */
+    @EventListener
+    public void onRenewalDue(SubscriptionRenewalDueEvent event) {
+        if (!autoRenewalRepository.existsById(event.getRecruiterId()) || renewalTaskRepository.existsById(event.getPaymentId())) {
+            return;
+        }
+        boolean renewedAlready = paymentRepository.findActiveSubscriptions(event.getRecruiterId(), event.getExpiresOn(), PageRequest.of(0, 10))
+                .stream()
+                .anyMatch(subscription -> subscription.getPlanId().equals(event.getPlanId()));
+        if (renewedAlready) {
+            return;
+        }
+        Optional<Payment> payment = paymentRepository.findById(event.getPaymentId());
+        if (payment.isEmpty()) {
+            return;
+        }
+
+        Date now = new Date();
+        RenewalTask task = new RenewalTask();
+        task.setPaymentId(event.getPaymentId());
+        task.setRecruiterId(event.getRecruiterId());
+        task.setPlanId(event.getPlanId());
+        task.setExpiresOn(event.getExpiresOn());
+        task.setPaymentMethod(payment.get().getPaymentMethod());
+        task.setStatus(RenewalTaskStatus.PENDING);
+        task.setNextAttemptAt(spreadRenewal(event.getPaymentId(), now, event.getExpiresOn()));
+        task.setCreatedAt(now);
+        renewalTaskRepository.save(task);
+        logger.info("Queued renewal of payment {} for {}", task.getPaymentId(), task.getNextAttemptAt());
+    }
+
+    /**
+     * Pick the time a renewal runs at, spread uniformly over the spread window by payment id, so subscriptions
+     * expiring together, at month boundaries for instance, are renewed over days instead of in one burst. The
+     * renewal always runs before the subscription expires.
+     *
+     * @param paymentId Id of the renewed payment.
+     * @param now       Current time.
+     * @param expiresOn Expiry of the renewed payment.
+     * @return Time of the renewal.
+     */
+    private Date spreadRenewal(UUID paymentId, Date now, Date expiresOn) {
+        long window = Math.min(spread.toMillis(), expiresOn.getTime() - now.getTime());
+        if (window <= 0) {
+            return now;
+        }
+        return new Date(now.getTime() + Math.floorMod(paymentId.getLeastSignificantBits(), window));
+    }
+}
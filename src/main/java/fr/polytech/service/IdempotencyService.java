@@ -0,0 +1,333 @@
+package fr.polytech.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.polytech.model.IdempotencyRecord;
+import fr.polytech.model.Payment;
+import fr.polytech.repository.IdempotencyRecordRepository;
+import fr.polytech.repository.PaymentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Run a payment creation at most once per idempotency key within the idempotency window.
+ * Concurrent duplicates on the same replica wait for the first execution, completed results are served from a
+ * bounded in-memory store, and the database holds the results and reservations shared by all replicas. A reservation
+ * is leased: one left by a replica that stopped is taken over once the lease expires. The action completes the
+ * reservation in the transaction saving the payment, so a payment is never committed without its key, nor under a
+ * reservation taken over meanwhile. Each key remembers the fingerprint of its request, and reusing it for a different
+ * request is rejected.
+ */
+@Service
+@Profile("!reactive")
+public class IdempotencyService {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private final PaymentRepository paymentRepository;
+
+    private final Duration window;
+
+    private final Duration lease;
+
+    private final boolean purgeEnabled;
+
+    private final Cache<String, Execution> completed;
+
+    private final ConcurrentHashMap<String, Execution> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(
+            IdempotencyRecordRepository idempotencyRecordRepository,
+            PaymentRepository paymentRepository,
+            MeterRegistry meterRegistry,
+            @Value("${payment.idempotency.window:24h}") Duration window,
+            @Value("${payment.idempotency.lease:1m}") Duration lease,
+            @Value("${payment.idempotency.max-size:10000}") long maxSize,
+            @Value("${payment.idempotency.purge-enabled:true}") boolean purgeEnabled
+    ) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.paymentRepository = paymentRepository;
+        this.window = window;
+        this.lease = lease;
+        this.purgeEnabled = purgeEnabled;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(window)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "idempotency");
+    }
+
+    /**
+     * Create a payment once for a key.
+     *
+     * @param key         Idempotency key, scoped to the caller.
+     * @param fingerprint Fingerprint of the request, as returned by fingerprint.
+     * @param action      Payment creation, which completes the reservation in the transaction saving the payment.
+     * @return Payment created for the key, now or by a previous request.
+     * @throws HttpClientErrorException If the key was used for another request, or another replica is still creating
+     *                                  the payment for this key.
+     */
+    public Payment execute(String key, String fingerprint, Function<Reservation, Payment> action) throws HttpClientErrorException {
+        Reservation reservation = reserve(key, fingerprint);
+        if (reservation.getReplayed() != null) {
+            return reservation.getReplayed();
+        }
+        Payment payment;
+        try {
+            payment = action.apply(reservation);
+        } catch (RuntimeException e) {
+            reservation.fail(e);
+            throw e;
+        }
+        reservation.succeed(payment);
+        return payment;
+    }
+
+    /**
+     * Reserve a key, or get the payment already created for it, for callers saving several payments in one
+     * transaction. A reservation must then be completed in the transaction saving its payment, and ended with succeed
+     * or fail.
+     *
+     * @param key         Idempotency key, scoped to the caller.
+     * @param fingerprint Fingerprint of the request, as returned by fingerprint.
+     * @return Reservation of the key, or replay of the payment created for it by a previous request.
+     * @throws HttpClientErrorException If the key was used for another request, or another replica is still creating
+     *                                  the payment for this key.
+     */
+    public Reservation reserve(String key, String fingerprint) throws HttpClientErrorException {
+        Execution done = completed.getIfPresent(key);
+        if (done != null) {
+            checkFingerprint(done.fingerprint(), fingerprint);
+            Payment payment = done.result().join();
+            logger.info("Replaying payment {} for idempotency key", payment.getId());
+            return new Reservation(key, null, null, payment);
+        }
+
+        Execution execution = new Execution(fingerprint, new CompletableFuture<>());
+        Execution running = inFlight.putIfAbsent(key, execution);
+        if (running != null) {
+            checkFingerprint(running.fingerprint(), fingerprint);
+            logger.info("Waiting for in-flight payment with the same idempotency key");
+            return new Reservation(key, null, null, await(running.result()));
+        }
+
+        try {
+            Date reservedAt = new Date();
+            Optional<Payment> stored = reserveOnce(key, fingerprint, reservedAt);
+            if (stored.isEmpty()) {
+                return new Reservation(key, execution, reservedAt, null);
+            }
+            execution.result().complete(stored.get());
+            completed.put(key, execution);
+            inFlight.remove(key, execution);
+            return new Reservation(key, null, null, stored.get());
+        } catch (RuntimeException e) {
+            execution.result().completeExceptionally(e);
+            inFlight.remove(key, execution);
+            throw e;
+        }
+    }
+
+    /**
+     * Fingerprint a request: the hex SHA-256 digest of its serialised form.
+     *
+     * @param request Serialised request.
+     * @return Fingerprint.
+     */
+    public static String fingerprint(byte[] request) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(request));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Remove the records older than the idempotency window.
+     */
+    @Scheduled(fixedDelayString = "${payment.idempotency.purge-interval:60000}")
+    public void purge() {
+        if (!purgeEnabled) {
+            return;
+        }
+        int purged = idempotencyRecordRepository.deleteCreatedBefore(new Date(System.currentTimeMillis() - window.toMillis()));
+        if (purged > 0) {
+            logger.info("Purged {} idempotency records", purged);
+        }
+    }
+
+    /**
+     * Reserve the key in the database, or find the payment already stored for the key.
+     *
+     * @param key         Idempotency key.
+     * @param fingerprint Fingerprint of the request.
+     * @param reservedAt  Start of the lease of the reservation.
+     * @return Payment stored for the key, empty if the key has been reserved.
+     */
+    private Optional<Payment> reserveOnce(String key, String fingerprint, Date reservedAt) {
+        if (idempotencyRecordRepository.reserve(key, fingerprint, reservedAt) == 0) {
+            IdempotencyRecord record = idempotencyRecordRepository.findById(key).orElse(null);
+            if (record != null) {
+                checkFingerprint(record.getFingerprint(), fingerprint);
+            }
+            Optional<Payment> stored = Optional.ofNullable(record)
+                    .map(IdempotencyRecord::getPaymentId)
+                    .flatMap(paymentRepository::findById);
+            if (stored.isPresent()) {
+                logger.info("Replaying stored payment {} for idempotency key", stored.get().getId());
+                return stored;
+            }
+            if (record != null && record.getPaymentId() == null) {
+                Date expiredBefore = new Date(reservedAt.getTime() - lease.toMillis());
+                if (idempotencyRecordRepository.takeOver(key, reservedAt, expiredBefore) == 0) {
+                    throw new HttpClientErrorException(HttpStatus.CONFLICT, "A request with this idempotency key is in progress");
+                }
+                logger.warn("Taking over an idempotency reservation whose lease expired");
+            } else {
+                // The record vanished or points to a deleted payment: start over with a fresh reservation
+                idempotencyRecordRepository.deleteById(key);
+                if (idempotencyRecordRepository.reserve(key, fingerprint, reservedAt) == 0) {
+                    throw new HttpClientErrorException(HttpStatus.CONFLICT, "A request with this idempotency key is in progress");
+                }
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Reject a key reused for another request.
+     *
+     * @param stored      Fingerprint stored with the key.
+     * @param fingerprint Fingerprint of the request.
+     * @throws HttpClientErrorException If the fingerprints differ.
+     */
+    private static void checkFingerprint(String stored, String fingerprint) throws HttpClientErrorException {
+        if (!stored.equals(fingerprint)) {
+            throw new HttpClientErrorException(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency key already used for another request");
+        }
+    }
+
+    private static Payment await(CompletableFuture<Payment> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reservation of a key, held by the execution creating its payment, or replay of the payment already created for
+     * the key.
+     */
+    public final class Reservation {
+
+        private final String key;
+
+        private final Execution execution;
+
+        private final Date reservedAt;
+
+        private final Payment replayed;
+
+        private boolean paymentStored;
+
+        private Reservation(String key, Execution execution, Date reservedAt, Payment replayed) {
+            this.key = key;
+            this.execution = execution;
+            this.reservedAt = reservedAt;
+            this.replayed = replayed;
+        }
+
+        /**
+         * @return Payment already created for the key, or null if the key has been reserved.
+         */
+        public Payment getReplayed() {
+            return replayed;
+        }
+
+        /**
+         * Store the payment under the key, in the transaction saving the payment.
+         *
+         * @param paymentId Id of the payment being saved.
+         * @throws HttpClientErrorException If the reservation was taken over after its lease expired, in which case the
+         *                                  transaction must roll back.
+         */
+        public void complete(UUID paymentId) throws HttpClientErrorException {
+            if (idempotencyRecordRepository.complete(key, reservedAt, paymentId) == 0) {
+                logger.warn("Idempotency reservation taken over while creating payment {}, the lease is too short", paymentId);
+                throw new HttpClientErrorException(HttpStatus.CONFLICT, "A request with this idempotency key is in progress");
+            }
+            paymentStored = true;
+        }
+
+        /**
+         * End the reservation once the transaction completing it committed: serve its payment to the waiting and later
+         * requests with the same key.
+         *
+         * @param payment Payment created for the key.
+         */
+        public void succeed(Payment payment) {
+            if (!paymentStored) {
+                IllegalStateException e = new IllegalStateException("Payment " + payment.getId() + " saved without completing its idempotency reservation");
+                fail(e);
+                throw e;
+            }
+            execution.result().complete(payment);
+            completed.put(key, execution);
+            inFlight.remove(key, execution);
+        }
+
+        /**
+         * End the reservation of a payment that failed, releasing the key so that the client can retry.
+         *
+         * @param e Failure.
+         */
+        public void fail(RuntimeException e) {
+            try {
+                idempotencyRecordRepository.release(key, reservedAt);
+            } finally {
+                execution.result().completeExceptionally(e);
+                inFlight.remove(key, execution);
+            }
+        }
+    }
+
+    /**
+     * Execution of the request of a key.
+     *
+     * @param fingerprint Fingerprint of the request.
+     * @param result      Payment created for the request.
+     */
+    private record Execution(String fingerprint, CompletableFuture<Payment> result) {
+    }
+}
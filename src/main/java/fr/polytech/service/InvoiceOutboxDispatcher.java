@@ -0,0 +1,207 @@
+package fr.polytech.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.polytech.model.InvoiceDTO;
+import fr.polytech.model.InvoiceDataDTO;
+import fr.polytech.model.InvoiceOutbox;
+import fr.polytech.model.InvoiceOutboxStatus;
+import fr.polytech.repository.InvoiceOutboxRepository;
+import fr.polytech.repository.PaymentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drain the invoice outbox: create the pending invoices in invoice-api and set their id on the payments.
+ * Entries are claimed with a lease in a short transaction, locking them with SKIP LOCKED so several replicas can
+ * dispatch at the same time without sending an invoice twice. Invoices are created outside of any transaction, with the
+ * token of the service account, and the outcome of each entry is recorded in its own transaction. An entry whose
+ * dispatcher stopped is claimed again once its lease expires.
+ */
+@Service
+@Profile("!reactive")
+public class InvoiceOutboxDispatcher {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(InvoiceOutboxDispatcher.class);
+
+    @Autowired
+    private InvoiceOutboxRepository invoiceOutboxRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ServiceAccountTokenProvider tokenProvider;
+
+    @Value("${payment.invoice-outbox.enabled:false}")
+    private boolean enabled;
+
+    @Value("${payment.invoice-outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${payment.invoice-outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${payment.invoice-outbox.initial-backoff:1s}")
+    private Duration initialBackoff;
+
+    @Value("${payment.invoice-outbox.max-backoff:5m}")
+    private Duration maxBackoff;
+
+    @Value("${payment.invoice-outbox.lease:5m}")
+    private Duration lease;
+
+    /**
+     * Dispatch due entries batch after batch until the outbox has no more due entries.
+     */
+    @Scheduled(fixedDelayString = "${payment.invoice-outbox.poll-interval:1000}")
+    public void dispatch() {
+        if (!enabled) {
+            return;
+        }
+        int dispatched;
+        do {
+            dispatched = dispatchBatch();
+        } while (dispatched == batchSize);
+    }
+
+    /**
+     * Claim and dispatch one batch of due entries.
+     *
+     * @return Number of entries handled.
+     */
+    private int dispatchBatch() {
+        HttpHeaders headers;
+        try {
+            headers = paymentService.createHeaders(PaymentService.extractToken(tokenProvider.getBearerToken()));
+        } catch (Exception e) {
+            // Not the fault of the entries, which stay due for the next poll without using up an attempt
+            logger.error("Error while getting the service account token, invoices postponed to the next poll", e);
+            return 0;
+        }
+
+        List<InvoiceOutbox> entries = transactionTemplate.execute(status -> claimDueEntries());
+        if (entries == null) {
+            return 0;
+        }
+        for (InvoiceOutbox entry : entries) {
+            try {
+                InvoiceDataDTO invoiceData = objectMapper.readValue(entry.getPayload(), InvoiceDataDTO.class);
+                InvoiceDTO invoice = paymentService.createInvoice(invoiceData, headers);
+                transactionTemplate.executeWithoutResult(status -> recordInvoice(entry, invoice));
+            } catch (Exception e) {
+                logger.error("Error while creating invoice for payment {}", entry.getPaymentId(), e);
+                transactionTemplate.executeWithoutResult(status -> findLeased(entry).ifPresent(leased -> scheduleRetry(leased, e)));
+            }
+        }
+        return entries.size();
+    }
+
+    /**
+     * Lock a batch of due entries and lease them to this dispatcher.
+     *
+     * @return Claimed entries.
+     */
+    private List<InvoiceOutbox> claimDueEntries() {
+        Date now = new Date();
+        List<InvoiceOutbox> entries = invoiceOutboxRepository.lockDueEntries(now, batchSize);
+        for (InvoiceOutbox entry : entries) {
+            entry.setStatus(InvoiceOutboxStatus.DISPATCHING);
+            entry.setNextAttemptAt(new Date(now.getTime() + lease.toMillis()));
+        }
+        return invoiceOutboxRepository.saveAll(entries);
+    }
+
+    /**
+     * Set the invoice created for an entry on its payment and delete the entry, if the entry is still leased to this
+     * dispatcher. Otherwise the replica that took the lease over records its own invoice, and the one created here is
+     * left without payment.
+     *
+     * @param entry   Entry as claimed.
+     * @param invoice Invoice created for the entry.
+     */
+    private void recordInvoice(InvoiceOutbox entry, InvoiceDTO invoice) {
+        if (findLeased(entry).isEmpty()) {
+            logger.warn("Lease of the invoice of payment {} taken over during its dispatch, invoice {} not set on the payment",
+                    entry.getPaymentId(), invoice.getId());
+            return;
+        }
+        if (paymentRepository.setInvoiceId(entry.getPaymentId(), invoice.getId()) == 0) {
+            logger.warn("Payment {} already has an invoice or no longer exists, invoice {} not set on the payment",
+                    entry.getPaymentId(), invoice.getId());
+        } else {
+            logger.info("Created invoice {} for payment {}", invoice.getId(), entry.getPaymentId());
+        }
+        invoiceOutboxRepository.deleteById(entry.getId());
+    }
+
+    /**
+     * Find and lock an entry claimed by this dispatcher, if its lease was not taken over by another one after expiring.
+     *
+     * @param claimed Entry as claimed.
+     * @return Entry still leased to this dispatcher.
+     */
+    private Optional<InvoiceOutbox> findLeased(InvoiceOutbox claimed) {
+        return invoiceOutboxRepository.lockById(claimed.getId())
+                .filter(entry -> entry.getStatus() == InvoiceOutboxStatus.DISPATCHING
+                        && entry.getNextAttemptAt().getTime() == claimed.getNextAttemptAt().getTime());
+    }
+
+    /**
+     * Schedule the next attempt of an entry with exponential backoff and jitter, or give up on it.
+     * Client errors other than timeouts and rate limiting will not succeed on retry, so they fail the entry at once.
+     *
+     * @param entry Entry whose dispatch failed.
+     * @param e     Failure.
+     */
+    private void scheduleRetry(InvoiceOutbox entry, Exception e) {
+        int attempts = entry.getAttempts() + 1;
+        entry.setAttempts(attempts);
+        entry.setLastError(truncate(e.toString()));
+
+        boolean retryable = !(e instanceof HttpClientErrorException clientError)
+                || clientError.getStatusCode().isSameCodeAs(HttpStatus.REQUEST_TIMEOUT)
+                || clientError.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)
+                || clientError.getStatusCode().is5xxServerError();
+        if (!retryable || attempts >= maxAttempts) {
+            logger.error("Giving up on invoice for payment {} after {} attempts", entry.getPaymentId(), attempts);
+            entry.setStatus(InvoiceOutboxStatus.FAILED);
+        } else {
+            long backoff = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempts - 1, 30));
+            long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            entry.setStatus(InvoiceOutboxStatus.PENDING);
+            entry.setNextAttemptAt(new Date(System.currentTimeMillis() + jittered));
+        }
+        invoiceOutboxRepository.save(entry);
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+}
@@ -0,0 +1,124 @@
+package fr.polytech.service;
+
+import fr.polytech.model.Payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpStatusCodeException;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Latency histograms of the stages of the payment pipeline, and counters of the created payments.
+ * Stage timers are tagged with the stage, its outcome and the HTTP status it failed with, so that the hop dominating
+ * checkout latency can be read from the payment_stage_seconds histograms.
+ */
+@Service
+public class PaymentMetrics {
+
+    public static final String VALIDATE_ATTRIBUTES = "validate_attributes";
+
+    public static final String FETCH_RECRUITER = "fetch_recruiter";
+
+    public static final String FETCH_ADDRESS = "fetch_address";
+
+    public static final String FIND_PLAN = "find_plan";
+
+    public static final String CREATE_INVOICE = "create_invoice";
+
+    public static final String SAVE_PAYMENT = "save_payment";
+
+    public static final String SAVE_PAYMENT_BATCH = "save_payment_batch";
+
+    private static final String NO_STATUS = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    public PaymentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run a stage and record its duration.
+     *
+     * @param stage Stage name.
+     * @param step  Stage to run.
+     * @return Result of the stage.
+     */
+    public <T> T time(String stage, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            T result = step.get();
+            record(stage, start, null);
+            return result;
+        } catch (RuntimeException e) {
+            record(stage, start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Run a stage without result and record its duration.
+     *
+     * @param stage Stage name.
+     * @param step  Stage to run.
+     */
+    public void time(String stage, Runnable step) {
+        time(stage, () -> {
+            step.run();
+            return null;
+        });
+    }
+
+    /**
+     * Record the duration of a non-blocking stage, from subscription to completion.
+     *
+     * @param stage Stage name.
+     * @param step  Stage to run.
+     * @return Stage, timed.
+     */
+    public <T> Mono<T> timeAsync(String stage, Mono<T> step) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return step
+                    .doOnSuccess(result -> record(stage, start, null))
+                    .doOnError(e -> record(stage, start, e));
+        });
+    }
+
+    /**
+     * Count a created payment by payment method and plan.
+     *
+     * @param payment Created payment.
+     */
+    public void paymentCreated(Payment payment) {
+        Counter.builder("payment.created")
+                .description("Payments created")
+                .tag("payment_method", String.valueOf(payment.getPaymentMethod()))
+                .tag("plan", String.valueOf(payment.getPlanId()))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private void record(String stage, long start, Throwable failure) {
+        String outcome = "success";
+        String status = NO_STATUS;
+        if (failure instanceof HttpStatusCodeException httpError) {
+            outcome = httpError.getStatusCode().is4xxClientError() ? "client_error" : "server_error";
+            status = String.valueOf(httpError.getStatusCode().value());
+        } else if (failure != null) {
+            outcome = "error";
+        }
+        Timer.builder("payment.stage")
+                .description("Duration of a stage of the payment pipeline")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
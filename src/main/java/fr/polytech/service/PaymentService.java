@@ -1,38 +1,111 @@
 package fr.polytech.service;
 
 import fr.polytech.model.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.polytech.repository.InvoiceOutboxRepository;
 import fr.polytech.repository.PaymentRepository;
-import fr.polytech.repository.PlanRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Profile("!reactive")
 public class PaymentService {
 
     /**
      * Initializing logger
      */
     private final Logger logger = LoggerFactory.getLogger(PaymentService.class);
-    private static final String USER_API_URL = Optional.ofNullable(System.getenv("USER_API_URL")).orElse("lb://user-api/api/v1/user");
-    private static final String ADDRESS_API_URL = Optional.ofNullable(System.getenv("ADDRESS_API_URL")).orElse("lb://address-api/api/v1/address");
-    private static final String INVOICE_API_URL = Optional.ofNullable(System.getenv("INVOICE_API_URL")).orElse("lb://invoice-api/api/v1/invoice");
+    static final String USER_API_URL = Optional.ofNullable(System.getenv("USER_API_URL")).orElse("lb://user-api/api/v1/user");
+    static final String ADDRESS_API_URL = Optional.ofNullable(System.getenv("ADDRESS_API_URL")).orElse("lb://address-api/api/v1/address");
+    static final String INVOICE_API_URL = Optional.ofNullable(System.getenv("INVOICE_API_URL")).orElse("lb://invoice-api/api/v1/invoice");
 
     @Autowired
     private PaymentRepository paymentRepository;
 
     @Autowired
-    private PlanRepository planRepository;
+    private PlanCatalog planCatalog;
 
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private UpstreamCache upstreamCache;
+
+    @Autowired
+    private UpstreamGuard upstreamGuard;
+
+    @Autowired
+    private PaymentMetrics paymentMetrics;
+
+    @Autowired
+    private ActiveSubscriptionService activeSubscriptionService;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    @Qualifier("paymentExecutor")
+    private Executor paymentExecutor;
+
+    @Autowired
+    private InvoiceOutboxRepository invoiceOutboxRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${payment.orchestration.async:false}")
+    private boolean asyncOrchestration;
+
+    @Value("${payment.invoice-outbox.enabled:false}")
+    private boolean invoiceOutbox;
+
+    @Value("${payment.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${payment.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${payment.batch.invoice-parallelism:8}")
+    private int invoiceParallelism;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int saveChunkSize;
+
     /**
      * Get all payments.
      *
@@ -43,6 +116,45 @@ public class PaymentService {
         return paymentRepository.findAll();
     }
 
+    /**
+     * Get a page of payments ordered by payment date and id.
+     * Pages are read with a keyset condition on (paymentDate, id), so every page costs the same whatever its position.
+     *
+     * @param cursor Cursor returned with the previous page, or null for the first page.
+     * @param size   Maximum number of payments in the page.
+     * @return Page of payments, with the cursor of the next page if there may be one.
+     * @throws HttpClientErrorException If the cursor or the size is not valid.
+     */
+    public PaymentPageDTO getPaymentsPage(String cursor, int size) throws HttpClientErrorException {
+        logger.info("Getting payments page");
+        Pageable limit = pageLimit(size);
+        List<Payment> payments;
+        if (cursor == null) {
+            payments = paymentRepository.findFirstPage(limit);
+        } else {
+            PaymentCursor position = decodeCursor(cursor);
+            payments = paymentRepository.findPageAfter(position.paymentDate(), position.id(), limit);
+        }
+        return toPage(payments, size);
+    }
+
+    /**
+     * Stream every payment ordered by payment date and id.
+     * Rows are read from a database cursor and detached once consumed, so memory use does not grow with the table.
+     *
+     * @param action Action run on each payment.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllPayments(Consumer<Payment> action) {
+        logger.info("Streaming all payments");
+        try (Stream<Payment> payments = paymentRepository.streamAll()) {
+            payments.forEach(payment -> {
+                action.accept(payment);
+                entityManager.detach(payment);
+            });
+        }
+    }
+
     /**
      * Get payment by id.
      *
@@ -51,7 +163,7 @@ public class PaymentService {
      * @throws HttpClientErrorException If payment is not found.
      */
     public Payment getPaymentById(UUID id) throws HttpClientErrorException {
-        logger.info("Getting payment by id: " + id);
+        logger.info("Getting payment by id: {}", id);
         Payment payment = paymentRepository.findById(id).orElse(null);
         if (payment == null) {
             throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
@@ -66,10 +178,32 @@ public class PaymentService {
      * @return List of payments.
      */
     public List<Payment> getPaymentsByUserId(UUID userId) {
-        logger.info("Getting payments by user id: " + userId);
+        logger.info("Getting payments by user id: {}", userId);
         return paymentRepository.getPaymentsByUserId(userId);
     }
 
+    /**
+     * Get a page of the payments of a user, most recent first.
+     *
+     * @param userId User id.
+     * @param cursor Cursor returned with the previous page, or null for the first page.
+     * @param size   Maximum number of payments in the page.
+     * @return Page of payments, with the cursor of the next page if there may be one.
+     * @throws HttpClientErrorException If the cursor or the size is not valid.
+     */
+    public PaymentPageDTO getPaymentsPageByUserId(UUID userId, String cursor, int size) throws HttpClientErrorException {
+        logger.info("Getting payments page by user id: {}", userId);
+        Pageable limit = pageLimit(size);
+        List<Payment> payments;
+        if (cursor == null) {
+            payments = paymentRepository.findFirstPageByUserId(userId, limit);
+        } else {
+            PaymentCursor position = decodeCursor(cursor);
+            payments = paymentRepository.findPageByUserIdBefore(userId, position.paymentDate(), position.id(), limit);
+        }
+        return toPage(payments, size);
+    }
+
     /**
      * Create a payment.
      *
@@ -79,8 +213,43 @@ public class PaymentService {
      * @throws HttpClientErrorException If payment creation failed.
      */
     public Payment createPayment(PaymentDTO payment, String bearerToken) throws HttpClientErrorException {
+        return createPaymentStartingOn(payment, bearerToken, new Date(), null);
+    }
+
+    /**
+     * Renew a subscription: create a payment for its plan whose period starts when the renewed payment expires.
+     * The renewed payment is the idempotency key, so a renewal retried within the idempotency window is not charged
+     * twice.
+     *
+     * @param payment          Payment to create.
+     * @param bearerToken      Bearer token.
+     * @param renewedPaymentId Id of the payment being renewed.
+     * @param startsOn         Start of the new period, the expiry of the renewed payment or now if it already expired.
+     * @return Created payment, or the payment already created for this renewal.
+     * @throws HttpClientErrorException If payment creation failed.
+     */
+    public Payment renewPayment(PaymentDTO payment, String bearerToken, UUID renewedPaymentId, Date startsOn) throws HttpClientErrorException {
+        String scopedKey = payment.getRecruiterId() + ":renewal:" + renewedPaymentId;
+        String fingerprint = IdempotencyService.fingerprint(payment.getPlanId().toString().getBytes(StandardCharsets.UTF_8));
+        return idempotencyService.execute(scopedKey, fingerprint, reservation -> createPaymentStartingOn(payment, bearerToken, startsOn, reservation));
+    }
+
+    /**
+     * Create a payment whose period starts at the given date.
+     *
+     * @param payment     Payment to create.
+     * @param bearerToken Bearer token.
+     * @param startsOn    Start of the period paid for.
+     * @param reservation Idempotency reservation to complete with the payment, or null.
+     * @return Created payment.
+     * @throws HttpClientErrorException If payment creation failed.
+     */
+    private Payment createPaymentStartingOn(PaymentDTO payment, String bearerToken, Date startsOn, IdempotencyService.Reservation reservation) throws HttpClientErrorException {
         logger.info("Creating payment");
-        validateAttributes(payment);
+        if (asyncOrchestration) {
+            return createPaymentConcurrently(payment, bearerToken, startsOn, reservation);
+        }
+        paymentMetrics.time(PaymentMetrics.VALIDATE_ATTRIBUTES, () -> validateAttributes(payment));
 
         String token = extractToken(bearerToken);
         HttpHeaders headers = createHeaders(token);
@@ -88,12 +257,420 @@ public class PaymentService {
         RecruiterDTO recruiter = fetchRecruiter(payment.getRecruiterId(), headers);
         AddressDTO address = fetchAddress(recruiter.getAddressId(), headers);
 
-        Plan plan = planRepository.findById(payment.getPlanId()).orElseThrow(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND, "Plan not found"));
+        Plan plan = findPlan(payment.getPlanId());
         InvoiceDataDTO invoiceData = buildInvoiceData(payment, recruiter, address, plan);
         validateInvoiceData(invoiceData);
 
+        return completePayment(payment, plan, invoiceData, headers, computeExpiryDate(startsOn, plan.getMonthsDuration()), reservation);
+    }
+
+    /**
+     * Create a payment at most once per idempotency key.
+     * The key is scoped to the authenticated caller, so two callers using the same key do not collide, and reusing a
+     * key for a different payment is rejected.
+     *
+     * @param payment        Payment to create.
+     * @param bearerToken    Bearer token.
+     * @param idempotencyKey Idempotency key sent by the client, or null.
+     * @param principal      Subject of the token of the caller.
+     * @return Created payment, or the payment already created for the key.
+     * @throws HttpClientErrorException If payment creation failed, or the key was used for another payment.
+     */
+    public Payment createPayment(PaymentDTO payment, String bearerToken, String idempotencyKey, String principal) throws HttpClientErrorException {
+        if (idempotencyKey == null) {
+            return createPayment(payment, bearerToken);
+        }
+        String scopedKey = scopeIdempotencyKey(idempotencyKey, principal);
+        return idempotencyService.execute(scopedKey, fingerprint(payment), reservation -> createPaymentStartingOn(payment, bearerToken, new Date(), reservation));
+    }
+
+    /**
+     * Scope an idempotency key to the authenticated caller.
+     *
+     * @param idempotencyKey Idempotency key sent by the client.
+     * @param principal      Subject of the token of the caller.
+     * @return Scoped key.
+     * @throws HttpClientErrorException If the key is not valid.
+     */
+    private static String scopeIdempotencyKey(String idempotencyKey, String principal) throws HttpClientErrorException {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > 200) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Invalid idempotency key");
+        }
+        if (principal == null || principal.isBlank()) {
+            throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED, "Invalid token");
+        }
+        return principal + ":" + idempotencyKey;
+    }
+
+    /**
+     * Fingerprint a request sent with an idempotency key.
+     *
+     * @param request Request body.
+     * @return Fingerprint.
+     */
+    private String fingerprint(Object request) {
+        try {
+            return IdempotencyService.fingerprint(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Request cannot be serialised", e);
+        }
+    }
+
+    /**
+     * Create a payment, overlapping the independent steps of the pipeline.
+     * The plan lookup runs while the recruiter and then the address are fetched, so the request only waits for the
+     * slowest branch before creating the invoice.
+     *
+     * @param payment     Payment to create.
+     * @param bearerToken Bearer token.
+     * @param startsOn    Start of the period paid for.
+     * @param reservation Idempotency reservation to complete with the payment, or null.
+     * @return Created payment.
+     * @throws HttpClientErrorException If payment creation failed.
+     */
+    private Payment createPaymentConcurrently(PaymentDTO payment, String bearerToken, Date startsOn, IdempotencyService.Reservation reservation) throws HttpClientErrorException {
+        paymentMetrics.time(PaymentMetrics.VALIDATE_ATTRIBUTES, () -> validateAttributes(payment));
+
+        String token = extractToken(bearerToken);
+        HttpHeaders headers = createHeaders(token);
+
+        CompletableFuture<Plan> planFuture = CompletableFuture.supplyAsync(() -> findPlan(payment.getPlanId()), paymentExecutor);
+        CompletableFuture<RecruiterDTO> recruiterFuture = CompletableFuture.supplyAsync(() -> fetchRecruiter(payment.getRecruiterId(), headers), paymentExecutor);
+        CompletableFuture<AddressDTO> addressFuture = recruiterFuture.thenApplyAsync(recruiter -> fetchAddress(recruiter.getAddressId(), headers), paymentExecutor);
+
+        // The address branch is the first operand so its failure wins over the plan lookup, as in the sequential flow
+        InvoiceDataDTO invoiceData = await(addressFuture.thenCombine(planFuture, (address, plan) ->
+                buildInvoiceData(payment, recruiterFuture.join(), address, plan)
+        ));
+        validateInvoiceData(invoiceData);
+
+        Plan plan = planFuture.join();
+        return completePayment(payment, plan, invoiceData, headers, computeExpiryDate(startsOn, plan.getMonthsDuration()), reservation);
+    }
+
+    /**
+     * Create the invoice and save the payment, either directly or through the invoice outbox.
+     *
+     * @param payment     Payment to create.
+     * @param plan        Plan of the payment, whose price is charged.
+     * @param invoiceData Invoice data.
+     * @param headers     Headers.
+     * @param expiresOn   Expiry date of the payment.
+     * @param reservation Idempotency reservation to complete with the payment, or null.
+     * @return Created payment.
+     */
+    private Payment completePayment(PaymentDTO payment, Plan plan, InvoiceDataDTO invoiceData, HttpHeaders headers, Date expiresOn, IdempotencyService.Reservation reservation) {
+        if (invoiceOutbox) {
+            return savePaymentWithPendingInvoice(payment, plan, invoiceData, expiresOn, reservation);
+        }
         InvoiceDTO invoice = createInvoice(invoiceData, headers);
-        return savePayment(payment, invoice.getId(), plan.getMonthsDuration());
+        return savePayment(payment, plan, invoice.getId(), expiresOn, reservation);
+    }
+
+    /**
+     * Save the payment without invoice together with an outbox entry and the completion of its idempotency reservation,
+     * in one transaction.
+     * The invoice is created later by InvoiceOutboxDispatcher with the token of the service account, which then sets
+     * its id on the payment.
+     *
+     * @param paymentDTO  Payment to save.
+     * @param plan        Plan of the payment.
+     * @param invoiceData Invoice data.
+     * @param expiresOn   Expiry date of the payment.
+     * @param reservation Idempotency reservation to complete in the same transaction, or null.
+     * @return Saved payment.
+     */
+    private Payment savePaymentWithPendingInvoice(PaymentDTO paymentDTO, Plan plan, InvoiceDataDTO invoiceData, Date expiresOn, IdempotencyService.Reservation reservation) {
+        String payload = serialise(invoiceData);
+        Payment savedPayment = paymentMetrics.time(PaymentMetrics.SAVE_PAYMENT, () -> transactionTemplate.execute(status -> {
+            Payment payment = paymentRepository.save(buildPayment(paymentDTO, plan, null, expiresOn));
+            if (reservation != null) {
+                reservation.complete(payment.getId());
+            }
+            analyticsService.recordPayments(List.of(payment));
+            invoiceOutboxRepository.save(outboxEntry(payment.getId(), payload, new Date()));
+            return payment;
+        }));
+        activeSubscriptionService.invalidate(savedPayment.getRecruiterId());
+        paymentMetrics.paymentCreated(savedPayment);
+        return savedPayment;
+    }
+
+    /**
+     * Serialise invoice data as the payload of an outbox entry.
+     *
+     * @param invoiceData Invoice data.
+     * @return Payload.
+     */
+    private String serialise(InvoiceDataDTO invoiceData) {
+        try {
+            return objectMapper.writeValueAsString(invoiceData);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invoice data cannot be serialised", e);
+        }
+    }
+
+    /**
+     * Build the outbox entry of the invoice of a payment, due at once.
+     *
+     * @param paymentId Payment id.
+     * @param payload   Serialised invoice data.
+     * @param now       Current date.
+     * @return Outbox entry.
+     */
+    private static InvoiceOutbox outboxEntry(UUID paymentId, String payload, Date now) {
+        InvoiceOutbox entry = new InvoiceOutbox();
+        entry.setPaymentId(paymentId);
+        entry.setPayload(payload);
+        entry.setStatus(InvoiceOutboxStatus.PENDING);
+        entry.setNextAttemptAt(now);
+        entry.setCreatedAt(now);
+        return entry;
+    }
+
+    /**
+     * Create several payments at once.
+     * The token is checked once, each recruiter and address is fetched once for the whole batch, and invoices are
+     * created with bounded parallelism, or left to the invoice outbox when it is enabled. The payments are then inserted
+     * in chunks of one JDBC batch, each chunk in one transaction with its outbox entries. A chunk that fails is saved
+     * again one payment per transaction, so a failing item does not fail the others. With an idempotency key, each
+     * item is created at most once under the key and its index, its reservation being completed in the transaction
+     * saving it: a retried batch replays the items already created and runs the others again.
+     *
+     * @param payments       Payments to create.
+     * @param bearerToken    Bearer token.
+     * @param idempotencyKey Idempotency key sent by the client, or null.
+     * @param principal      Subject of the token of the caller.
+     * @return Result of each payment, in the order of the request.
+     * @throws HttpClientErrorException If the token, the idempotency key or the batch size is not valid.
+     */
+    public List<PaymentBatchResultDTO> createPayments(List<PaymentDTO> payments, String bearerToken, String idempotencyKey, String principal) throws HttpClientErrorException {
+        logger.info("Creating {} payments", payments.size());
+        if (payments.isEmpty() || payments.size() > maxBatchSize) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Batch size must be between 1 and " + maxBatchSize);
+        }
+        String token = extractToken(bearerToken);
+        String scopedKey = idempotencyKey == null ? null : scopeIdempotencyKey(idempotencyKey, principal);
+
+        Map<UUID, CompletableFuture<RecruiterDTO>> recruiters = new ConcurrentHashMap<>();
+        Map<UUID, CompletableFuture<AddressDTO>> addresses = new ConcurrentHashMap<>();
+        Semaphore invoiceSlots = new Semaphore(invoiceParallelism);
+
+        List<CompletableFuture<BatchItem>> pendingItems = new ArrayList<>(payments.size());
+        for (int i = 0; i < payments.size(); i++) {
+            String itemKey = scopedKey == null ? null : scopedKey + ":" + i;
+            pendingItems.add(prepareBatchItem(i, payments.get(i), token, itemKey, recruiters, addresses, invoiceSlots));
+        }
+
+        PaymentBatchResultDTO[] results = new PaymentBatchResultDTO[payments.size()];
+        List<BatchItem> preparedItems = new ArrayList<>();
+        for (int i = 0; i < pendingItems.size(); i++) {
+            try {
+                BatchItem item = await(pendingItems.get(i));
+                if (item.saved()) {
+                    results[i] = new PaymentBatchResultDTO(i, HttpStatus.CREATED.value(), item.payment(), null);
+                } else {
+                    preparedItems.add(item);
+                }
+            } catch (Exception e) {
+                logger.error("Error while preparing payment {} of batch", i, e);
+                results[i] = failedBatchResult(i, e);
+            }
+        }
+
+        for (int from = 0; from < preparedItems.size(); from += saveChunkSize) {
+            saveBatchItems(preparedItems.subList(from, Math.min(from + saveChunkSize, preparedItems.size())), results);
+        }
+        return List.of(results);
+    }
+
+    /**
+     * Prepare one payment of a batch: fetch its recruiter and address, shared with the rest of the batch, reserve its
+     * idempotency key, then create its invoice or serialise the invoice data for the outbox.
+     *
+     * @param index        Index of the payment in the batch.
+     * @param payment      Payment to create.
+     * @param token        Token.
+     * @param itemKey      Idempotency key of the item, scoped to the caller, or null.
+     * @param recruiters   Recruiters already requested in the batch.
+     * @param addresses    Addresses already requested in the batch.
+     * @param invoiceSlots Permits bounding the number of concurrent invoice creations.
+     * @return Payment ready to be saved, or payment already created for the idempotency key of the item.
+     */
+    private CompletableFuture<BatchItem> prepareBatchItem(
+            int index,
+            PaymentDTO payment,
+            String token,
+            String itemKey,
+            Map<UUID, CompletableFuture<RecruiterDTO>> recruiters,
+            Map<UUID, CompletableFuture<AddressDTO>> addresses,
+            Semaphore invoiceSlots
+    ) {
+        try {
+            paymentMetrics.time(PaymentMetrics.VALIDATE_ATTRIBUTES, () -> validateAttributes(payment));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<RecruiterDTO> recruiterFuture = recruiters.computeIfAbsent(payment.getRecruiterId(), id ->
+                CompletableFuture.supplyAsync(() -> fetchRecruiter(id, createHeaders(token)), paymentExecutor)
+        );
+        CompletableFuture<AddressDTO> addressFuture = recruiterFuture.thenCompose(recruiter -> {
+            if (recruiter.getAddressId() == null) {
+                return CompletableFuture.supplyAsync(() -> fetchAddress(null, createHeaders(token)), paymentExecutor);
+            }
+            return addresses.computeIfAbsent(recruiter.getAddressId(), id ->
+                    CompletableFuture.supplyAsync(() -> fetchAddress(id, createHeaders(token)), paymentExecutor)
+            );
+        });
+
+        return addressFuture.thenApplyAsync(address -> {
+            Plan plan = findPlan(payment.getPlanId());
+            InvoiceDataDTO invoiceData = buildInvoiceData(payment, recruiterFuture.join(), address, plan);
+            validateInvoiceData(invoiceData);
+
+            IdempotencyService.Reservation reservation = null;
+            if (itemKey != null) {
+                reservation = idempotencyService.reserve(itemKey, fingerprint(payment));
+                if (reservation.getReplayed() != null) {
+                    return new BatchItem(index, reservation.getReplayed(), true, null, null);
+                }
+            }
+            try {
+                Date expiresOn = computeExpiryDate(plan.getMonthsDuration());
+                if (invoiceOutbox) {
+                    return new BatchItem(index, buildPayment(payment, plan, null, expiresOn), false, serialise(invoiceData), reservation);
+                }
+                invoiceSlots.acquireUninterruptibly();
+                try {
+                    InvoiceDTO invoice = createInvoice(invoiceData, createHeaders(token));
+                    return new BatchItem(index, buildPayment(payment, plan, invoice.getId(), expiresOn), false, null, reservation);
+                } finally {
+                    invoiceSlots.release();
+                }
+            } catch (RuntimeException e) {
+                if (reservation != null) {
+                    reservation.fail(e);
+                }
+                throw e;
+            }
+        }, paymentExecutor);
+    }
+
+    /**
+     * Insert prepared payments of a batch with their outbox entries, and complete their idempotency reservations, in
+     * one transaction. If it fails, each payment is saved again in its own transaction.
+     *
+     * @param items   Prepared payments.
+     * @param results Results of the batch, where the result of each payment is set.
+     */
+    private void saveBatchItems(List<BatchItem> items, PaymentBatchResultDTO[] results) {
+        List<Payment> savedPayments;
+        try {
+            savedPayments = paymentMetrics.time(PaymentMetrics.SAVE_PAYMENT_BATCH, () -> transactionTemplate.execute(status -> insertBatchItems(items)));
+        } catch (Exception e) {
+            if (items.size() > 1) {
+                logger.warn("Error while saving {} payments of batch, saving them one by one", items.size(), e);
+                for (BatchItem item : items) {
+                    // Ids generated by the rolled back insert are not persisted
+                    item.payment().setId(null);
+                    saveBatchItems(List.of(item), results);
+                }
+                return;
+            }
+            BatchItem item = items.get(0);
+            logger.error("Error while saving payment {} of batch", item.index(), e);
+            if (item.reservation() != null) {
+                item.reservation().fail(e instanceof RuntimeException runtimeException ? runtimeException : new IllegalStateException(e));
+            }
+            results[item.index()] = failedBatchResult(item.index(), e);
+            return;
+        }
+
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            Payment savedPayment = savedPayments.get(i);
+            if (item.reservation() != null) {
+                item.reservation().succeed(savedPayment);
+            }
+            activeSubscriptionService.invalidate(savedPayment.getRecruiterId());
+            paymentMetrics.paymentCreated(savedPayment);
+            results[item.index()] = new PaymentBatchResultDTO(item.index(), HttpStatus.CREATED.value(), savedPayment, null);
+        }
+    }
+
+    /**
+     * Insert prepared payments of a batch, their outbox entries and their analytics, and complete their idempotency
+     * reservations, in the current transaction.
+     *
+     * @param items Prepared payments.
+     * @return Saved payments, in the order of the items.
+     */
+    private List<Payment> insertBatchItems(List<BatchItem> items) {
+        List<Payment> savedPayments = paymentRepository.saveAll(items.stream().map(BatchItem::payment).toList());
+        Date now = new Date();
+        List<InvoiceOutbox> entries = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            Payment savedPayment = savedPayments.get(i);
+            if (item.reservation() != null) {
+                item.reservation().complete(savedPayment.getId());
+            }
+            if (item.invoicePayload() != null) {
+                entries.add(outboxEntry(savedPayment.getId(), item.invoicePayload(), now));
+            }
+        }
+        invoiceOutboxRepository.saveAll(entries);
+        analyticsService.recordPayments(savedPayments);
+        return savedPayments;
+    }
+
+    /**
+     * Build the result of a failed payment of a batch.
+     *
+     * @param index Index of the payment in the batch.
+     * @param e     Failure.
+     * @return Batch result.
+     */
+    private static PaymentBatchResultDTO failedBatchResult(int index, Exception e) {
+        if (e instanceof HttpClientErrorException clientError) {
+            return new PaymentBatchResultDTO(index, clientError.getStatusCode().value(), null, clientError.getStatusText());
+        }
+        if (e instanceof HttpServerErrorException.ServiceUnavailable unavailable) {
+            return new PaymentBatchResultDTO(index, unavailable.getStatusCode().value(), null, unavailable.getStatusText());
+        }
+        return new PaymentBatchResultDTO(index, HttpStatus.INTERNAL_SERVER_ERROR.value(), null, HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase());
+    }
+
+    /**
+     * Find plan by id.
+     *
+     * @param planId Plan id.
+     * @return Plan.
+     * @throws HttpClientErrorException If plan is not found.
+     */
+    private Plan findPlan(UUID planId) throws HttpClientErrorException {
+        return paymentMetrics.time(PaymentMetrics.FIND_PLAN, () ->
+                planCatalog.findById(planId).orElseThrow(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND, "Plan not found"))
+        );
+    }
+
+    /**
+     * Wait for a future and rethrow the exception of the failed step as is, so callers see the same errors as in the
+     * sequential flow.
+     *
+     * @param future Future to wait for.
+     * @return Result of the future.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
     /**
@@ -102,7 +679,7 @@ public class PaymentService {
      * @param bearerToken Bearer token.
      * @return Token.
      */
-    private String extractToken(String bearerToken) throws HttpClientErrorException {
+    static String extractToken(String bearerToken) throws HttpClientErrorException {
         if (bearerToken == null || !bearerToken.startsWith("Bearer ")) {
             throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED, "Invalid token");
         }
@@ -115,7 +692,7 @@ public class PaymentService {
      * @param token Token.
      * @return Headers.
      */
-    private HttpHeaders createHeaders(String token) {
+    HttpHeaders createHeaders(String token) {
         HttpHeaders headers = new HttpHeaders();
         headers.setBearerAuth(token);
         return headers;
@@ -130,14 +707,18 @@ public class PaymentService {
      */
     private RecruiterDTO fetchRecruiter(UUID recruiterId, HttpHeaders headers) {
         logger.info("Fetching recruiter");
-        String url = USER_API_URL + "/" + recruiterId;
-        HttpEntity<String> entity = new HttpEntity<>("parameters", headers);
-        ResponseEntity<RecruiterDTO> response = restTemplate.exchange(url, HttpMethod.GET, entity, RecruiterDTO.class);
-        RecruiterDTO recruiter = response.getBody();
-        if (recruiter == null || !recruiter.getRole().equals("recruiter")) {
-            throw new HttpClientErrorException(HttpStatus.FORBIDDEN, "User is not a recruiter");
-        }
-        return recruiter;
+        return paymentMetrics.time(PaymentMetrics.FETCH_RECRUITER, () -> {
+            RecruiterDTO recruiter = upstreamCache.getRecruiter(UpstreamCache.principalOf(headers.getFirst(HttpHeaders.AUTHORIZATION)), recruiterId, id -> upstreamGuard.call(UpstreamGuard.USER_API, true, () -> {
+                String url = USER_API_URL + "/" + id;
+                HttpEntity<String> entity = new HttpEntity<>("parameters", headers);
+                ResponseEntity<RecruiterDTO> response = restTemplate.exchange(url, HttpMethod.GET, entity, RecruiterDTO.class);
+                return response.getBody();
+            }));
+            if (recruiter == null || !recruiter.getRole().equals("recruiter")) {
+                throw new HttpClientErrorException(HttpStatus.FORBIDDEN, "User is not a recruiter");
+            }
+            return recruiter;
+        });
     }
 
     /**
@@ -149,17 +730,21 @@ public class PaymentService {
      */
     private AddressDTO fetchAddress(UUID addressId, HttpHeaders headers) {
         logger.info("Fetching address");
-        if (addressId == null) {
-            throw new HttpClientErrorException(HttpStatus.FORBIDDEN, "User is not registred");
-        }
-        String url = ADDRESS_API_URL + "/" + addressId;
-        HttpEntity<String> entity = new HttpEntity<>("parameters", headers);
-        ResponseEntity<AddressDTO> response = restTemplate.exchange(url, HttpMethod.GET, entity, AddressDTO.class);
-        AddressDTO address = response.getBody();
-        if (address == null) {
-            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Address not found");
-        }
-        return address;
+        return paymentMetrics.time(PaymentMetrics.FETCH_ADDRESS, () -> {
+            if (addressId == null) {
+                throw new HttpClientErrorException(HttpStatus.FORBIDDEN, "User is not registred");
+            }
+            AddressDTO address = upstreamCache.getAddress(UpstreamCache.principalOf(headers.getFirst(HttpHeaders.AUTHORIZATION)), addressId, id -> upstreamGuard.call(UpstreamGuard.ADDRESS_API, true, () -> {
+                String url = ADDRESS_API_URL + "/" + id;
+                HttpEntity<String> entity = new HttpEntity<>("parameters", headers);
+                ResponseEntity<AddressDTO> response = restTemplate.exchange(url, HttpMethod.GET, entity, AddressDTO.class);
+                return response.getBody();
+            }));
+            if (address == null) {
+                throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Address not found");
+            }
+            return address;
+        });
     }
 
     /**
@@ -170,7 +755,7 @@ public class PaymentService {
      * @param address   Address.
      * @return Invoice data.
      */
-    private InvoiceDataDTO buildInvoiceData(PaymentDTO payment, RecruiterDTO recruiter, AddressDTO address, Plan plan) {
+    static InvoiceDataDTO buildInvoiceData(PaymentDTO payment, RecruiterDTO recruiter, AddressDTO address, Plan plan) {
         InvoiceDataDTO invoiceData = new InvoiceDataDTO();
         invoiceData.setCreationDate(payment.getPaymentDate());
         invoiceData.setName(recruiter.getLastName());
@@ -189,7 +774,7 @@ public class PaymentService {
      * @param invoiceData Invoice data to validate.
      * @throws HttpClientErrorException If invoice data is not valid.
      */
-    private void validateInvoiceData(InvoiceDataDTO invoiceData) {
+    static void validateInvoiceData(InvoiceDataDTO invoiceData) {
         if (invoiceData.hasInvalidFields()) {
             throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Invalid invoice data");
         }
@@ -203,43 +788,94 @@ public class PaymentService {
      * @return Created invoice.
      * @throws HttpClientErrorException If invoice creation failed.
      */
-    private InvoiceDTO createInvoice(InvoiceDataDTO invoiceData, HttpHeaders headers) {
+    InvoiceDTO createInvoice(InvoiceDataDTO invoiceData, HttpHeaders headers) {
         logger.info("Creating invoice");
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<InvoiceDataDTO> request = new HttpEntity<>(invoiceData, headers);
-        ResponseEntity<InvoiceDTO> response = restTemplate.exchange(INVOICE_API_URL + "/", HttpMethod.POST, request, InvoiceDTO.class);
-        InvoiceDTO invoice = response.getBody();
-        if (invoice == null) {
-            throw new HttpClientErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Invoice creation failed");
-        }
-        return invoice;
+        return paymentMetrics.time(PaymentMetrics.CREATE_INVOICE, () -> {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            HttpEntity<InvoiceDataDTO> request = new HttpEntity<>(invoiceData, headers);
+            // Creating an invoice is not idempotent, so it is only retried when invoice-api could not be reached
+            ResponseEntity<InvoiceDTO> response = upstreamGuard.call(UpstreamGuard.INVOICE_API, false, () ->
+                    restTemplate.exchange(INVOICE_API_URL + "/", HttpMethod.POST, request, InvoiceDTO.class)
+            );
+            InvoiceDTO invoice = response.getBody();
+            if (invoice == null) {
+                throw new HttpClientErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Invoice creation failed");
+            }
+            return invoice;
+        });
+    }
+
+    /**
+     * Save payment, complete its idempotency reservation and add it to the analytics rollups, in one transaction.
+     *
+     * @param paymentDTO  Payment to save.
+     * @param plan        Plan of the payment.
+     * @param invoiceId   Invoice id.
+     * @param expiresOn   Expiry date of the payment.
+     * @param reservation Idempotency reservation to complete, or null.
+     * @return Saved payment.
+     */
+    private Payment savePayment(PaymentDTO paymentDTO, Plan plan, UUID invoiceId, Date expiresOn, IdempotencyService.Reservation reservation) {
+        Payment savedPayment = paymentMetrics.time(PaymentMetrics.SAVE_PAYMENT, () -> transactionTemplate.execute(status -> {
+            Payment payment = paymentRepository.save(buildPayment(paymentDTO, plan, invoiceId, expiresOn));
+            if (reservation != null) {
+                reservation.complete(payment.getId());
+            }
+            analyticsService.recordPayments(List.of(payment));
+            return payment;
+        }));
+        activeSubscriptionService.invalidate(savedPayment.getRecruiterId());
+        paymentMetrics.paymentCreated(savedPayment);
+        return savedPayment;
     }
 
     /**
-     * Save payment.
+     * Build the payment entity to save, with the price of its plan as the amount charged, so later price changes do
+     * not alter it.
      *
      * @param paymentDTO Payment to save.
+     * @param plan       Plan of the payment.
      * @param invoiceId  Invoice id.
-     * @return Saved payment.
+     * @param expiresOn  Expiry date of the payment.
+     * @return Payment entity.
      */
-    private Payment savePayment(PaymentDTO paymentDTO, UUID invoiceId, Integer duration) {
+    private Payment buildPayment(PaymentDTO paymentDTO, Plan plan, UUID invoiceId, Date expiresOn) {
         Payment payment = new Payment();
 
-        // expireDate = paymentDTO.getPaymentDate() + duration in months
-        Date expireDate = new Date();
-        Calendar c = Calendar.getInstance();
-        c.setTime(expireDate);
-        c.add(Calendar.MONTH, duration);
-        expireDate = c.getTime();
-
         payment.setPaymentDate(paymentDTO.getPaymentDate());
-        payment.setExpiresOn(expireDate);
+        payment.setExpiresOn(expiresOn);
         payment.setPaymentMethod(paymentDTO.getPaymentMethod());
         payment.setPlanId(paymentDTO.getPlanId());
         payment.setInvoiceId(invoiceId);
         payment.setRecruiterId(paymentDTO.getRecruiterId());
+        payment.setAmount(AnalyticsService.priceOf(plan));
+        payment.setCurrency(plan.getCurrency());
+
+        return payment;
+    }
 
-        return paymentRepository.save(payment);
+    /**
+     * Compute the expiry date of a payment made now.
+     *
+     * @param duration Plan duration in months.
+     * @return Expiry date.
+     */
+    static Date computeExpiryDate(Integer duration) {
+        return computeExpiryDate(new Date(), duration);
+    }
+
+    /**
+     * Compute the expiry date of a period starting at the given date.
+     *
+     * @param startsOn Start of the period.
+     * @param duration Plan duration in months.
+     * @return Expiry date.
+     */
+    static Date computeExpiryDate(Date startsOn, Integer duration) {
+        Calendar c = Calendar.getInstance();
+        c.setTime(startsOn);
+        c.add(Calendar.MONTH, duration);
+        return c.getTime();
     }
 
     /**
@@ -248,7 +884,7 @@ public class PaymentService {
      * @param payment Payment to validate.
      * @throws HttpClientErrorException If attributes are not valid.
      */
-    private static void validateAttributes(PaymentDTO payment) throws HttpClientErrorException {
+    static void validateAttributes(PaymentDTO payment) throws HttpClientErrorException {
         if (payment.getRecruiterId() == null ||
                 payment.getPaymentMethod() == null ||
                 payment.getPaymentDate() == null ||
@@ -258,6 +894,83 @@ public class PaymentService {
         }
     }
 
+    /**
+     * Build the page request limiting a keyset query.
+     *
+     * @param size Maximum number of payments in the page.
+     * @return Page request.
+     * @throws HttpClientErrorException If the size is not valid.
+     */
+    private Pageable pageLimit(int size) throws HttpClientErrorException {
+        if (size < 1 || size > maxPageSize) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + maxPageSize);
+        }
+        return PageRequest.of(0, size);
+    }
+
+    /**
+     * Build a page from the result of a keyset query.
+     *
+     * @param payments Payments of the page.
+     * @param size     Requested page size.
+     * @return Page, with a cursor on its last payment if the page is full.
+     */
+    static PaymentPageDTO toPage(List<Payment> payments, int size) {
+        String nextCursor = null;
+        if (payments.size() == size) {
+            nextCursor = encodeCursor(payments.get(payments.size() - 1));
+        }
+        return new PaymentPageDTO(payments, nextCursor);
+    }
+
+    /**
+     * Encode the position of a payment as an opaque cursor.
+     *
+     * @param payment Last payment of a page.
+     * @return Cursor.
+     */
+    private static String encodeCursor(Payment payment) {
+        String position = payment.getPaymentDate().getTime() + ":" + payment.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor built by encodeCursor.
+     *
+     * @param cursor Cursor.
+     * @return Position of the last payment of the previous page.
+     * @throws HttpClientErrorException If the cursor is not valid.
+     */
+    static PaymentCursor decodeCursor(String cursor) throws HttpClientErrorException {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+            return new PaymentCursor(new Date(Long.parseLong(position[0])), UUID.fromString(position[1]));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    record PaymentCursor(Date paymentDate, UUID id) {
+    }
+
+    /**
+     * Evict a recruiter and its address from the upstream cache.
+     *
+     * @param recruiterId Recruiter id.
+     */
+    public void evictRecruiterCache(UUID recruiterId) {
+        logger.info("Evicting recruiter {} from cache", recruiterId);
+        upstreamCache.evictRecruiter(recruiterId);
+    }
+
+    /**
+     * Evict every recruiter and address from the upstream cache.
+     */
+    public void evictUpstreamCache() {
+        logger.info("Evicting all recruiters and addresses from cache");
+        upstreamCache.evictAll();
+    }
+
     /**
      * Get payment methods.
      *
@@ -266,4 +979,16 @@ public class PaymentService {
     public List<PaymentMethod> getPaymentMethods() {
         return List.of(PaymentMethod.values());
     }
+
+    /**
+     * Payment of a batch ready to be saved, or already created for its idempotency key.
+     *
+     * @param index          Index of the payment in the batch.
+     * @param payment        Payment to save, or payment already created.
+     * @param saved          Whether the payment was already created for its idempotency key.
+     * @param invoicePayload Serialised invoice data of the outbox entry to save with the payment, or null.
+     * @param reservation    Idempotency reservation to complete with the payment, or null.
+     */
+    private record BatchItem(int index, Payment payment, boolean saved, String invoicePayload, IdempotencyService.Reservation reservation) {
+    }
 }
@@ -0,0 +1,161 @@
+package fr.polytech.service;
+
+import fr.polytech.model.Plan;
+import fr.polytech.repository.PlanCatalogVersionRepository;
+import fr.polytech.repository.PlanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory copy of the plan catalog.
+ * Reads are answered from an immutable snapshot, writes bump a version row in the database and reload the snapshot,
+ * and other replicas pick the change up by polling that version.
+ */
+@Service
+@Profile("!reactive")
+public class PlanCatalog {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(PlanCatalog.class);
+
+    @Autowired
+    private PlanRepository planRepository;
+
+    @Autowired
+    private PlanCatalogVersionRepository planCatalogVersionRepository;
+
+    @Value("${payment.plan-catalog.reconcile-enabled:true}")
+    private boolean reconcileEnabled;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile PlanCatalogSnapshot snapshot;
+
+    /**
+     * Get all plans.
+     *
+     * @return Unmodifiable list of all plans.
+     */
+    public List<Plan> findAll() {
+        return snapshot().all();
+    }
+
+    /**
+     * Get plan by id.
+     *
+     * @param id Plan id.
+     * @return Plan with the specified id, if any.
+     */
+    public Optional<Plan> findById(UUID id) {
+        return Optional.ofNullable(snapshot().byId().get(id));
+    }
+
+    /**
+     * Get plans by currency.
+     *
+     * @param currency Plan currency.
+     * @return Unmodifiable list of plans with the specified currency, empty if there is none.
+     */
+    public List<Plan> findByCurrency(String currency) {
+        return snapshot().byCurrency().getOrDefault(currency, List.of());
+    }
+
+    /**
+     * Record a write to the plan table: bump the catalog version in the transaction of the write, so that other
+     * replicas reload exactly when the write becomes visible, then reload the local snapshot once it commits. If the
+     * reload fails, the snapshot is dropped and the next read loads it again.
+     */
+    public void planChanged() {
+        planCatalogVersionRepository.incrementCatalogVersion();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadAfterChange();
+                }
+            });
+        } else {
+            reloadAfterChange();
+        }
+    }
+
+    /**
+     * Reload the snapshot after a local write, dropping it if the reload fails.
+     */
+    private void reloadAfterChange() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            logger.error("Error while reloading plan catalog", e);
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Compare the local snapshot with the catalog version in the database and reload it if another replica changed
+     * the plans.
+     */
+    @Scheduled(fixedDelayString = "${payment.plan-catalog.reconcile-interval:30000}")
+    public void reconcile() {
+        if (!reconcileEnabled) {
+            return;
+        }
+        PlanCatalogSnapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        long version = planCatalogVersionRepository.findCatalogVersion().orElse(0L);
+        if (version != current.version()) {
+            logger.info("Plan catalog version changed from {} to {}, reloading", current.version(), version);
+            reload();
+        }
+    }
+
+    /**
+     * Get the current snapshot, loading it on first use.
+     *
+     * @return Current snapshot.
+     */
+    private PlanCatalogSnapshot snapshot() {
+        PlanCatalogSnapshot current = snapshot;
+        if (current == null) {
+            current = reload();
+        }
+        return current;
+    }
+
+    /**
+     * Load the whole catalog from the database.
+     * The version is read before the plans, so a write committed in between is seen as a version change by the next
+     * reconciliation.
+     *
+     * @return Loaded snapshot.
+     */
+    private PlanCatalogSnapshot reload() {
+        // A lock rather than synchronized, so a virtual thread waiting for the database does not pin its carrier thread
+        reloadLock.lock();
+        try {
+            long version = planCatalogVersionRepository.findCatalogVersion().orElse(0L);
+            List<Plan> plans = planRepository.findAll();
+
+            PlanCatalogSnapshot loaded = PlanCatalogSnapshot.of(version, plans);
+            snapshot = loaded;
+            logger.info("Loaded plan catalog version {} with {} plans", version, plans.size());
+            return loaded;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+}
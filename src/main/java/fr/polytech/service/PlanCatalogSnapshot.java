@@ -0,0 +1,37 @@
+package fr.polytech.service;
+
+import fr.polytech.model.Plan;
+
+import java.util.*;
+
+/**
+ * Immutable copy of the plan catalog at a catalog version, indexed by id and by currency.
+ * Shared by PlanCatalog and ReactivePlanCatalog.
+ *
+ * @param version    Catalog version the plans were read at.
+ * @param all        All plans.
+ * @param byId       Plans by id.
+ * @param byCurrency Plans by currency.
+ */
+record PlanCatalogSnapshot(long version, List<Plan> all, Map<UUID, Plan> byId, Map<String, List<Plan>> byCurrency) {
+
+    /**
+     * Index the plans read at a catalog version.
+     *
+     * @param version Catalog version, read before the plans.
+     * @param plans   All plans.
+     * @return Snapshot.
+     */
+    static PlanCatalogSnapshot of(long version, List<Plan> plans) {
+        Map<UUID, Plan> byId = new HashMap<>();
+        Map<String, List<Plan>> byCurrency = new HashMap<>();
+        for (Plan plan : plans) {
+            byId.put(plan.getId(), plan);
+            if (plan.getCurrency() != null) {
+                byCurrency.computeIfAbsent(plan.getCurrency(), currency -> new ArrayList<>()).add(plan);
+            }
+        }
+        byCurrency.replaceAll((currency, currencyPlans) -> List.copyOf(currencyPlans));
+        return new PlanCatalogSnapshot(version, List.copyOf(plans), Map.copyOf(byId), Map.copyOf(byCurrency));
+    }
+}
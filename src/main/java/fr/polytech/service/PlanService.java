@@ -3,17 +3,21 @@ package fr.polytech.service;
 import fr.polytech.model.Plan;
 import fr.polytech.model.PlanDTO;
 import fr.polytech.repository.PlanRepository;
+import io.micrometer.core.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.HttpClientErrorException;
 
 import java.util.List;
 import java.util.UUID;
 
 @Service
+@Profile("!reactive")
 public class PlanService {
     /**
      * Initializing logger
@@ -23,14 +27,18 @@ public class PlanService {
     @Autowired
     private PlanRepository planRepository;
 
+    @Autowired
+    private PlanCatalog planCatalog;
+
     /**
      * Get all plans.
      *
      * @return List of all plans.
      */
+    @Timed(value = "plan.service", histogram = true)
     public List<Plan> getAllPlans() {
         logger.info("Getting all plans");
-        return planRepository.findAll();
+        return planCatalog.findAll();
     }
 
     /**
@@ -40,9 +48,10 @@ public class PlanService {
      * @return Plan with the specified id.
      * @throws HttpClientErrorException If plan is not found.
      */
+    @Timed(value = "plan.service", histogram = true)
     public Plan getPlanById(UUID id) throws HttpClientErrorException {
-        logger.info("Getting plan by id: " + id);
-        Plan plan = planRepository.findById(id).orElse(null);
+        logger.info("Getting plan by id: {}", id);
+        Plan plan = planCatalog.findById(id).orElse(null);
         if (plan == null) {
             logger.error("Plan not found");
             throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
@@ -58,9 +67,10 @@ public class PlanService {
      * @return Plan with the specified currency.
      * @throws HttpClientErrorException If plan is not found.
      */
+    @Timed(value = "plan.service", histogram = true)
     public List<Plan> getPlansByCurrency(String currency) throws HttpClientErrorException {
-        logger.info("Getting plan by currency: " + currency);
-        List<Plan> plans = planRepository.findByCurrency(currency);
+        logger.info("Getting plan by currency: {}", currency);
+        List<Plan> plans = planCatalog.findByCurrency(currency);
         if (plans == null) {
             logger.error("Plan not found");
             throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
@@ -76,6 +86,8 @@ public class PlanService {
      * @return Created plan.
      * @throws HttpClientErrorException If plan is not valid.
      */
+    @Timed(value = "plan.service", histogram = true)
+    @Transactional
     public Plan createPlan(PlanDTO plan) throws HttpClientErrorException {
         logger.info("Creating plan");
 
@@ -88,7 +100,9 @@ public class PlanService {
         newPlan.setName(plan.getName());
         newPlan.setMonthsDuration(plan.getMonthsDuration());
 
-        return planRepository.save(newPlan);
+        Plan createdPlan = planRepository.save(newPlan);
+        planCatalog.planChanged();
+        return createdPlan;
     }
 
     /**
@@ -98,6 +112,8 @@ public class PlanService {
      * @return Updated plan.
      * @throws HttpClientErrorException If plan is not found.
      */
+    @Timed(value = "plan.service", histogram = true)
+    @Transactional
     public Plan updatePlan(PlanDTO plan) throws HttpClientErrorException {
         logger.info("Updating plan");
 
@@ -118,7 +134,9 @@ public class PlanService {
             newPlan.setName(plan.getName());
             newPlan.setMonthsDuration(plan.getMonthsDuration());
 
-            return planRepository.save(newPlan);
+            Plan updatedPlan = planRepository.save(newPlan);
+            planCatalog.planChanged();
+            return updatedPlan;
         }
     }
 
@@ -128,6 +146,8 @@ public class PlanService {
      * @param id Plan id.
      * @throws HttpClientErrorException If plan is not found.
      */
+    @Timed(value = "plan.service", histogram = true)
+    @Transactional
     public void deletePlan(UUID id) throws HttpClientErrorException {
         logger.info("Deleting plan");
         Plan plan = planRepository.findById(id).orElse(null);
@@ -136,6 +156,7 @@ public class PlanService {
             throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
         } else {
             planRepository.delete(plan);
+            planCatalog.planChanged();
         }
     }
 }
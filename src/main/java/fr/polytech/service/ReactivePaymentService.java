@@ -0,0 +1,351 @@
+package fr.polytech.service;
+
+import fr.polytech.model.*;
+import fr.polytech.repository.ReactivePaymentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Non-blocking variant of PaymentService, selected with the reactive profile.
+ * It runs the same pipeline with WebClient and R2DBC, and fails with the same HttpClientErrorException statuses, so
+ * both stacks expose the same contract.
+ */
+@Service
+@Profile("reactive")
+public class ReactivePaymentService {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(ReactivePaymentService.class);
+
+    private final ReactivePaymentRepository paymentRepository;
+
+    private final ReactivePlanCatalog planCatalog;
+
+    private final UpstreamCache upstreamCache;
+
+    private final UpstreamGuard upstreamGuard;
+
+    private final PaymentMetrics paymentMetrics;
+
+    private final WebClient webClient;
+
+    private final int maxPageSize;
+
+    public ReactivePaymentService(
+            ReactivePaymentRepository paymentRepository,
+            ReactivePlanCatalog planCatalog,
+            UpstreamCache upstreamCache,
+            UpstreamGuard upstreamGuard,
+            PaymentMetrics paymentMetrics,
+            @LoadBalanced WebClient.Builder webClientBuilder,
+            @Value("${payment.page.max-size:500}") int maxPageSize
+    ) {
+        this.paymentRepository = paymentRepository;
+        this.planCatalog = planCatalog;
+        this.upstreamCache = upstreamCache;
+        this.upstreamGuard = upstreamGuard;
+        this.paymentMetrics = paymentMetrics;
+        this.webClient = webClientBuilder.build();
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Get all payments.
+     *
+     * @return List of all payments.
+     */
+    public Mono<List<Payment>> getAllPayments() {
+        logger.info("Getting all payments");
+        return paymentRepository.findAll().collectList();
+    }
+
+    /**
+     * Get a page of payments ordered by payment date and id.
+     *
+     * @param cursor Cursor returned with the previous page, or null for the first page.
+     * @param size   Maximum number of payments in the page.
+     * @return Page of payments, with the cursor of the next page if there may be one.
+     */
+    public Mono<PaymentPageDTO> getPaymentsPage(String cursor, int size) {
+        logger.info("Getting payments page");
+        return Mono.defer(() -> {
+            checkPageSize(size);
+            Flux<Payment> payments;
+            if (cursor == null) {
+                payments = paymentRepository.findFirstPage(size);
+            } else {
+                PaymentService.PaymentCursor position = PaymentService.decodeCursor(cursor);
+                payments = paymentRepository.findPageAfter(position.paymentDate(), position.id(), size);
+            }
+            return payments.collectList().map(page -> PaymentService.toPage(page, size));
+        });
+    }
+
+    /**
+     * Stream every payment ordered by payment date and id, at the pace of the client.
+     *
+     * @return Payments.
+     */
+    public Flux<Payment> streamAllPayments() {
+        logger.info("Streaming all payments");
+        return paymentRepository.streamAll();
+    }
+
+    /**
+     * Get payment by id.
+     *
+     * @param id Payment id.
+     * @return Payment with the specified id, or an HttpClientErrorException if it is not found.
+     */
+    public Mono<Payment> getPaymentById(UUID id) {
+        logger.info("Getting payment by id: {}", id);
+        return paymentRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND)));
+    }
+
+    /**
+     * Get payments by user id.
+     *
+     * @param userId User id.
+     * @return List of payments.
+     */
+    public Mono<List<Payment>> getPaymentsByUserId(UUID userId) {
+        logger.info("Getting payments by user id: {}", userId);
+        return paymentRepository.getPaymentsByUserId(userId).collectList();
+    }
+
+    /**
+     * Get a page of the payments of a user, most recent first.
+     *
+     * @param userId User id.
+     * @param cursor Cursor returned with the previous page, or null for the first page.
+     * @param size   Maximum number of payments in the page.
+     * @return Page of payments, with the cursor of the next page if there may be one.
+     */
+    public Mono<PaymentPageDTO> getPaymentsPageByUserId(UUID userId, String cursor, int size) {
+        logger.info("Getting payments page by user id: {}", userId);
+        return Mono.defer(() -> {
+            checkPageSize(size);
+            Flux<Payment> payments;
+            if (cursor == null) {
+                payments = paymentRepository.findFirstPageByUserId(userId, size);
+            } else {
+                PaymentService.PaymentCursor position = PaymentService.decodeCursor(cursor);
+                payments = paymentRepository.findPageByUserIdBefore(userId, position.paymentDate(), position.id(), size);
+            }
+            return payments.collectList().map(page -> PaymentService.toPage(page, size));
+        });
+    }
+
+    /**
+     * Get the active subscription of a recruiter.
+     *
+     * @param recruiterId Recruiter id.
+     * @return Active subscription, or an HttpClientErrorException if the recruiter has none.
+     */
+    public Mono<ActiveSubscriptionDTO> getActiveSubscription(UUID recruiterId) {
+        logger.info("Getting active subscription of recruiter: {}", recruiterId);
+        return paymentRepository.findActiveSubscription(recruiterId, new Date())
+                .switchIfEmpty(Mono.error(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND, "No active subscription")));
+    }
+
+    /**
+     * Create a payment. The plan lookup runs while the recruiter and then the address are fetched.
+     *
+     * @param payment     Payment to create.
+     * @param bearerToken Bearer token.
+     * @return Created payment, or an HttpClientErrorException if payment creation failed.
+     */
+    public Mono<Payment> createPayment(PaymentDTO payment, String bearerToken) {
+        logger.info("Creating payment");
+        return Mono.defer(() -> {
+            paymentMetrics.time(PaymentMetrics.VALIDATE_ATTRIBUTES, () -> PaymentService.validateAttributes(payment));
+            String token = PaymentService.extractToken(bearerToken);
+
+            Mono<Tuple2<RecruiterDTO, AddressDTO>> recruiterAndAddress = fetchRecruiter(payment.getRecruiterId(), token)
+                    .flatMap(recruiter -> fetchAddress(recruiter.getAddressId(), token)
+                            .map(address -> Tuples.of(recruiter, address)));
+
+            return Mono.zip(recruiterAndAddress, findPlan(payment.getPlanId())).flatMap(results -> {
+                Plan plan = results.getT2();
+                InvoiceDataDTO invoiceData = PaymentService.buildInvoiceData(payment, results.getT1().getT1(), results.getT1().getT2(), plan);
+                PaymentService.validateInvoiceData(invoiceData);
+
+                return createInvoice(invoiceData, token)
+                        .flatMap(invoice -> savePayment(payment, invoice.getId(), plan));
+            });
+        });
+    }
+
+    /**
+     * Evict a recruiter and its address from the upstream cache.
+     *
+     * @param recruiterId Recruiter id.
+     */
+    public void evictRecruiterCache(UUID recruiterId) {
+        logger.info("Evicting recruiter {} from cache", recruiterId);
+        upstreamCache.evictRecruiter(recruiterId);
+    }
+
+    /**
+     * Evict every recruiter and address from the upstream cache.
+     */
+    public void evictUpstreamCache() {
+        logger.info("Evicting all recruiters and addresses from cache");
+        upstreamCache.evictAll();
+    }
+
+    /**
+     * Get payment methods.
+     *
+     * @return List of payment methods.
+     */
+    public List<PaymentMethod> getPaymentMethods() {
+        return List.of(PaymentMethod.values());
+    }
+
+    /**
+     * Find plan by id.
+     *
+     * @param planId Plan id.
+     * @return Plan, or an HttpClientErrorException if it is not found.
+     */
+    private Mono<Plan> findPlan(UUID planId) {
+        Mono<Plan> plan = planCatalog.findById(planId)
+                .switchIfEmpty(Mono.error(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND, "Plan not found")));
+        return paymentMetrics.timeAsync(PaymentMetrics.FIND_PLAN, plan);
+    }
+
+    /**
+     * Fetch recruiter from user-api.
+     *
+     * @param recruiterId Recruiter id.
+     * @param token       Token.
+     * @return Recruiter.
+     */
+    private Mono<RecruiterDTO> fetchRecruiter(UUID recruiterId, String token) {
+        logger.info("Fetching recruiter");
+        Mono<RecruiterDTO> recruiter = upstreamCache.getRecruiterAsync(UpstreamCache.principalOf(token), recruiterId, id -> upstreamGuard.callAsync(UpstreamGuard.USER_API, true, webClient.get()
+                        .uri(PaymentService.USER_API_URL + "/" + id)
+                        .headers(headers -> headers.setBearerAuth(token))
+                        .retrieve()
+                        .bodyToMono(RecruiterDTO.class)
+                        .onErrorMap(WebClientResponseException.class, ReactivePaymentService::toClientError)))
+                .filter(fetched -> "recruiter".equals(fetched.getRole()))
+                .switchIfEmpty(Mono.error(() -> new HttpClientErrorException(HttpStatus.FORBIDDEN, "User is not a recruiter")));
+        return paymentMetrics.timeAsync(PaymentMetrics.FETCH_RECRUITER, recruiter);
+    }
+
+    /**
+     * Fetch address from address-api.
+     *
+     * @param addressId Address id.
+     * @param token     Token.
+     * @return Address.
+     */
+    private Mono<AddressDTO> fetchAddress(UUID addressId, String token) {
+        logger.info("Fetching address");
+        if (addressId == null) {
+            return Mono.error(new HttpClientErrorException(HttpStatus.FORBIDDEN, "User is not registred"));
+        }
+        Mono<AddressDTO> address = upstreamCache.getAddressAsync(UpstreamCache.principalOf(token), addressId, id -> upstreamGuard.callAsync(UpstreamGuard.ADDRESS_API, true, webClient.get()
+                        .uri(PaymentService.ADDRESS_API_URL + "/" + id)
+                        .headers(headers -> headers.setBearerAuth(token))
+                        .retrieve()
+                        .bodyToMono(AddressDTO.class)
+                        .onErrorMap(WebClientResponseException.class, ReactivePaymentService::toClientError)))
+                .switchIfEmpty(Mono.error(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND, "Address not found")));
+        return paymentMetrics.timeAsync(PaymentMetrics.FETCH_ADDRESS, address);
+    }
+
+    /**
+     * Create invoice.
+     *
+     * @param invoiceData Invoice data.
+     * @param token       Token.
+     * @return Created invoice.
+     */
+    private Mono<InvoiceDTO> createInvoice(InvoiceDataDTO invoiceData, String token) {
+        logger.info("Creating invoice");
+        Mono<InvoiceDTO> invoice = upstreamGuard.callAsync(UpstreamGuard.INVOICE_API, false, webClient.post()
+                        .uri(PaymentService.INVOICE_API_URL + "/")
+                        .headers(headers -> headers.setBearerAuth(token))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(invoiceData)
+                        .retrieve()
+                        .bodyToMono(InvoiceDTO.class)
+                        .onErrorMap(WebClientResponseException.class, ReactivePaymentService::toClientError))
+                .switchIfEmpty(Mono.error(() -> new HttpClientErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Invoice creation failed")));
+        return paymentMetrics.timeAsync(PaymentMetrics.CREATE_INVOICE, invoice);
+    }
+
+    /**
+     * Save payment.
+     * The payment is added to the analytics rollups by the same statement.
+     *
+     * @param paymentDTO Payment to save.
+     * @param invoiceId  Invoice id.
+     * @param plan       Plan of the payment.
+     * @return Saved payment.
+     */
+    private Mono<Payment> savePayment(PaymentDTO paymentDTO, UUID invoiceId, Plan plan) {
+        Payment payment = new Payment();
+
+        payment.setPaymentDate(paymentDTO.getPaymentDate());
+        payment.setExpiresOn(PaymentService.computeExpiryDate(plan.getMonthsDuration()));
+        payment.setPaymentMethod(paymentDTO.getPaymentMethod());
+        payment.setPlanId(paymentDTO.getPlanId());
+        payment.setInvoiceId(invoiceId);
+        payment.setRecruiterId(paymentDTO.getRecruiterId());
+        payment.setAmount(AnalyticsService.priceOf(plan));
+        payment.setCurrency(plan.getCurrency());
+
+        return paymentMetrics.timeAsync(PaymentMetrics.SAVE_PAYMENT, paymentRepository.insert(payment))
+                .doOnNext(paymentMetrics::paymentCreated);
+    }
+
+    /**
+     * Check the size of a keyset page.
+     *
+     * @param size Maximum number of payments in the page.
+     * @throws HttpClientErrorException If the size is not valid.
+     */
+    private void checkPageSize(int size) throws HttpClientErrorException {
+        if (size < 1 || size > maxPageSize) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + maxPageSize);
+        }
+    }
+
+    /**
+     * Map a 4xx response of another microservice to the exception RestTemplate throws, so the controller answers
+     * with the same status as the servlet stack. Other errors are left as is and end up as 500.
+     *
+     * @param e Error response.
+     * @return Exception to propagate.
+     */
+    private static Throwable toClientError(WebClientResponseException e) {
+        if (e.getStatusCode().is4xxClientError()) {
+            return new HttpClientErrorException(e.getStatusCode(), e.getStatusText());
+        }
+        return e;
+    }
+}
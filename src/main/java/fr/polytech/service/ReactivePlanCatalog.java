@@ -0,0 +1,140 @@
+package fr.polytech.service;
+
+import fr.polytech.model.Plan;
+import fr.polytech.repository.ReactivePlanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Non-blocking variant of PlanCatalog, selected with the reactive profile.
+ * Reads are answered from the same immutable snapshot, writes bump the catalog version and reload it, and the version
+ * is polled to pick up the writes of other replicas, servlet or reactive.
+ */
+@Service
+@Profile("reactive")
+public class ReactivePlanCatalog {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(ReactivePlanCatalog.class);
+
+    @Autowired
+    private ReactivePlanRepository planRepository;
+
+    @Value("${payment.plan-catalog.reconcile-enabled:true}")
+    private boolean reconcileEnabled;
+
+    private final AtomicReference<PlanCatalogSnapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * Get all plans.
+     *
+     * @return Unmodifiable list of all plans.
+     */
+    public Mono<List<Plan>> findAll() {
+        return snapshot().map(PlanCatalogSnapshot::all);
+    }
+
+    /**
+     * Get plan by id.
+     *
+     * @param id Plan id.
+     * @return Plan with the specified id, or an empty Mono if there is none.
+     */
+    public Mono<Plan> findById(UUID id) {
+        return snapshot().mapNotNull(current -> current.byId().get(id));
+    }
+
+    /**
+     * Get plans by currency.
+     *
+     * @param currency Plan currency.
+     * @return Unmodifiable list of plans with the specified currency, empty if there is none.
+     */
+    public Mono<List<Plan>> findByCurrency(String currency) {
+        return snapshot().map(current -> current.byCurrency().getOrDefault(currency, List.of()));
+    }
+
+    /**
+     * Record a write to the plan table: bump the catalog version so that other replicas reload, then reload the local
+     * snapshot. If the reload fails, the snapshot is dropped and the next read loads it again.
+     *
+     * @return Completion, once the version is bumped.
+     */
+    public Mono<Void> planChanged() {
+        return planRepository.incrementCatalogVersion()
+                .then(Mono.defer(() -> reload()
+                        .doOnError(e -> {
+                            logger.error("Error while reloading plan catalog", e);
+                            snapshot.set(null);
+                        })
+                        .onErrorResume(e -> Mono.empty())
+                        .then()));
+    }
+
+    /**
+     * Compare the local snapshot with the catalog version in the database and reload it if another replica changed
+     * the plans.
+     */
+    @Scheduled(fixedDelayString = "${payment.plan-catalog.reconcile-interval:30000}")
+    public void reconcile() {
+        if (!reconcileEnabled) {
+            return;
+        }
+        PlanCatalogSnapshot current = snapshot.get();
+        if (current == null) {
+            return;
+        }
+        planRepository.findCatalogVersion()
+                .defaultIfEmpty(0L)
+                .filter(version -> version != current.version())
+                .flatMap(version -> {
+                    logger.info("Plan catalog version changed from {} to {}, reloading", current.version(), version);
+                    return reload();
+                })
+                .block();
+    }
+
+    /**
+     * Get the current snapshot, loading it on first use.
+     *
+     * @return Current snapshot.
+     */
+    private Mono<PlanCatalogSnapshot> snapshot() {
+        return Mono.defer(() -> {
+            PlanCatalogSnapshot current = snapshot.get();
+            return current != null ? Mono.just(current) : reload();
+        });
+    }
+
+    /**
+     * Load the whole catalog from the database.
+     * The version is read before the plans, so a write committed in between is seen as a version change by the next
+     * reconciliation. Of two concurrent loads, the one at the newer version is kept.
+     *
+     * @return Loaded snapshot.
+     */
+    private Mono<PlanCatalogSnapshot> reload() {
+        return planRepository.findCatalogVersion()
+                .defaultIfEmpty(0L)
+                .flatMap(version -> planRepository.findAll().collectList()
+                        .map(plans -> PlanCatalogSnapshot.of(version, plans)))
+                .map(loaded -> {
+                    PlanCatalogSnapshot kept = snapshot.accumulateAndGet(loaded, (current, candidate) ->
+                            current == null || candidate.version() >= current.version() ? candidate : current);
+                    logger.info("Loaded plan catalog version {} with {} plans", loaded.version(), loaded.all().size());
+                    return kept;
+                });
+    }
+}
@@ -0,0 +1,130 @@
+package fr.polytech.service;
+
+import fr.polytech.model.Plan;
+import fr.polytech.model.PlanDTO;
+import fr.polytech.repository.ReactivePlanRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Non-blocking variant of PlanService, selected with the reactive profile. Plans are read from ReactivePlanCatalog.
+ */
+@Service
+@Profile("reactive")
+public class ReactivePlanService {
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(ReactivePlanService.class);
+
+    @Autowired
+    private ReactivePlanRepository planRepository;
+
+    @Autowired
+    private ReactivePlanCatalog planCatalog;
+
+    /**
+     * Get all plans.
+     *
+     * @return List of all plans.
+     */
+    public Mono<List<Plan>> getAllPlans() {
+        logger.info("Getting all plans");
+        return planCatalog.findAll();
+    }
+
+    /**
+     * Get plan by id.
+     *
+     * @param id Plan id.
+     * @return Plan with the specified id, or an HttpClientErrorException if it is not found.
+     */
+    public Mono<Plan> getPlanById(UUID id) {
+        logger.info("Getting plan by id: {}", id);
+        return planCatalog.findById(id)
+                .switchIfEmpty(Mono.error(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND)));
+    }
+
+    /**
+     * Get plan by currency.
+     *
+     * @param currency Plan currency.
+     * @return Plans with the specified currency.
+     */
+    public Mono<List<Plan>> getPlansByCurrency(String currency) {
+        logger.info("Getting plan by currency: {}", currency);
+        return planCatalog.findByCurrency(currency);
+    }
+
+    /**
+     * Create plan.
+     *
+     * @param plan Plan to create.
+     * @return Created plan, or an HttpClientErrorException if the plan is not valid.
+     */
+    public Mono<Plan> createPlan(PlanDTO plan) {
+        logger.info("Creating plan");
+        return Mono.defer(() -> {
+            plan.validateAttributes();
+            return planRepository.insert(toPlan(plan));
+        }).flatMap(createdPlan -> planCatalog.planChanged().thenReturn(createdPlan));
+    }
+
+    /**
+     * Update plan.
+     *
+     * @param plan Plan to update.
+     * @return Updated plan, or an HttpClientErrorException if the plan is not valid or not found.
+     */
+    public Mono<Plan> updatePlan(PlanDTO plan) {
+        logger.info("Updating plan");
+        return Mono.defer(() -> {
+            plan.validateAttributes();
+            if (plan.getId() == null) {
+                logger.error("Plan id is null");
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+            }
+            Plan updatedPlan = toPlan(plan);
+            updatedPlan.setId(plan.getId());
+            return planRepository.update(updatedPlan);
+        }).switchIfEmpty(Mono.error(() -> new HttpClientErrorException(HttpStatus.NOT_FOUND)))
+                .flatMap(updatedPlan -> planCatalog.planChanged().thenReturn(updatedPlan));
+    }
+
+    /**
+     * Delete plan.
+     *
+     * @param id Plan id.
+     * @return Completion, or an HttpClientErrorException if the plan is not found.
+     */
+    public Mono<Void> deletePlan(UUID id) {
+        logger.info("Deleting plan");
+        return planRepository.deleteById(id)
+                .flatMap(rows -> {
+                    if (rows == 0) {
+                        logger.error("Plan not found");
+                        return Mono.error(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+                    }
+                    return planCatalog.planChanged();
+                });
+    }
+
+    private static Plan toPlan(PlanDTO plan) {
+        Plan newPlan = new Plan();
+        newPlan.setCurrency(plan.getCurrency());
+        newPlan.setPrice(plan.getPrice());
+        newPlan.setDescription(plan.getDescription());
+        newPlan.setName(plan.getName());
+        newPlan.setMonthsDuration(plan.getMonthsDuration());
+        return newPlan;
+    }
+}
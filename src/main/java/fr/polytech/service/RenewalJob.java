@@ -0,0 +1,373 @@
+package fr.polytech.service;
+
+import fr.polytech.model.AutoRenewal;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentDTO;
+import fr.polytech.model.RenewalTask;
+import fr.polytech.model.RenewalTaskStatus;
+import fr.polytech.repository.AutoRenewalRepository;
+import fr.polytech.repository.RenewalTaskRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Run the queued renewals that are due through the payment pipeline, with the token of the service account.
+ * Each run claims due renewals batch after batch with SKIP LOCKED in a short transaction, leasing them to this replica,
+ * so replicas share the work without holding row locks or a connection during the calls. The outcome of each renewal is
+ * recorded in its own transaction, if the lease was not taken over meanwhile, and the status of each renewal is its
+ * checkpoint: a renewal left running by a crashed replica is claimed again once its lease expires. Renewals are started
+ * at a bounded rate and at most a bounded number at a time, which bounds the concurrent calls to invoice-api. The
+ * renewed payment is the idempotency key of the new one, so a renewal retried after a crash is not charged twice.
+ */
+@Service
+@Profile("!reactive")
+public class RenewalJob {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(RenewalJob.class);
+
+    private final RenewalTaskRepository renewalTaskRepository;
+
+    private final AutoRenewalRepository autoRenewalRepository;
+
+    private final PaymentService paymentService;
+
+    private final ServiceAccountTokenProvider tokenProvider;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Executor paymentExecutor;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final double rate;
+
+    private final Semaphore inFlight;
+
+    private final Duration maxRunDuration;
+
+    private final int maxAttempts;
+
+    private final Duration initialBackoff;
+
+    private final Duration maxBackoff;
+
+    private final Duration lease;
+
+    private final Duration idempotencyLease;
+
+    private final Timer runTimer;
+
+    private final DistributionSummary runThroughput;
+
+    public RenewalJob(
+            RenewalTaskRepository renewalTaskRepository,
+            AutoRenewalRepository autoRenewalRepository,
+            PaymentService paymentService,
+            ServiceAccountTokenProvider tokenProvider,
+            TransactionTemplate transactionTemplate,
+            @Qualifier("paymentExecutor") Executor paymentExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${payment.renewal.enabled:false}") boolean enabled,
+            @Value("${payment.renewal.batch-size:50}") int batchSize,
+            @Value("${payment.renewal.rate:5}") double rate,
+            @Value("${payment.renewal.concurrency:4}") int concurrency,
+            @Value("${payment.renewal.max-run-duration:5m}") Duration maxRunDuration,
+            @Value("${payment.renewal.max-attempts:5}") int maxAttempts,
+            @Value("${payment.renewal.initial-backoff:1m}") Duration initialBackoff,
+            @Value("${payment.renewal.max-backoff:1h}") Duration maxBackoff,
+            @Value("${payment.renewal.lease:5m}") Duration lease,
+            @Value("${payment.idempotency.lease:1m}") Duration idempotencyLease
+    ) {
+        this.renewalTaskRepository = renewalTaskRepository;
+        this.autoRenewalRepository = autoRenewalRepository;
+        this.paymentService = paymentService;
+        this.tokenProvider = tokenProvider;
+        this.transactionTemplate = transactionTemplate;
+        this.paymentExecutor = paymentExecutor;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.rate = rate;
+        this.inFlight = new Semaphore(concurrency);
+        this.maxRunDuration = maxRunDuration;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        // A renewal claimed again after a crash must find the idempotency reservation of the crashed attempt orphaned
+        this.lease = lease.compareTo(idempotencyLease) < 0 ? idempotencyLease : lease;
+        this.idempotencyLease = idempotencyLease;
+        this.runTimer = Timer.builder("payment.renewal.run")
+                .description("Duration of the renewal runs that had due renewals")
+                .register(meterRegistry);
+        this.runThroughput = DistributionSummary.builder("payment.renewal.run.throughput")
+                .description("Renewals handled per second by each renewal run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run due renewals batch after batch until none is due or the run has lasted its maximum duration.
+     */
+    @Scheduled(fixedDelayString = "${payment.renewal.poll-interval:60000}")
+    public void run() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        long deadline = started + maxRunDuration.toNanos();
+        Pacer pacer = new Pacer(rate);
+        int handled = 0;
+        Integer batch;
+        do {
+            batch = runBatch(pacer);
+            handled += batch;
+        } while (batch == batchSize && System.nanoTime() < deadline);
+
+        if (handled > 0) {
+            long elapsed = System.nanoTime() - started;
+            runTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            double throughput = handled / Math.max(elapsed / 1e9, 1e-3);
+            runThroughput.record(throughput);
+            logger.info("Renewal run handled {} renewals in {} ms ({} per second)",
+                    handled, TimeUnit.NANOSECONDS.toMillis(elapsed), String.format("%.1f", throughput));
+        }
+    }
+
+    /**
+     * Claim one batch of due renewals, run them concurrently and record their outcome.
+     *
+     * @param pacer Rate limit of the run.
+     * @return Number of renewals handled.
+     */
+    private int runBatch(Pacer pacer) {
+        String bearerToken;
+        try {
+            bearerToken = tokenProvider.getBearerToken();
+        } catch (Exception e) {
+            // Not the fault of the renewals, which stay due for the next run without using up an attempt
+            logger.error("Error while getting the service account token, renewals postponed to the next run", e);
+            return 0;
+        }
+
+        List<RenewalTask> tasks = transactionTemplate.execute(status -> claimDueTasks());
+        if (tasks == null || tasks.isEmpty()) {
+            return 0;
+        }
+        Map<UUID, AutoRenewal> optIns = autoRenewalRepository.findAllById(
+                tasks.stream().map(RenewalTask::getRecruiterId).distinct().toList()
+        ).stream().collect(Collectors.toMap(AutoRenewal::getRecruiterId, Function.identity()));
+
+        List<RenewalTask> started = new ArrayList<>();
+        List<CompletableFuture<Payment>> renewals = new ArrayList<>();
+        for (RenewalTask task : tasks) {
+            AutoRenewal optIn = optIns.get(task.getRecruiterId());
+            if (optIn == null) {
+                record(task, leased -> {
+                    leased.setStatus(RenewalTaskStatus.CANCELLED);
+                    count("cancelled");
+                });
+                continue;
+            }
+            pacer.await();
+            inFlight.acquireUninterruptibly();
+            CompletableFuture<Payment> renewal;
+            try {
+                renewal = CompletableFuture.supplyAsync(() -> renew(task, optIn, bearerToken), paymentExecutor);
+            } catch (RuntimeException e) {
+                renewal = CompletableFuture.failedFuture(e);
+            }
+            renewal.whenComplete((payment, e) -> inFlight.release());
+            started.add(task);
+            renewals.add(renewal);
+        }
+
+        for (int i = 0; i < started.size(); i++) {
+            RenewalTask task = started.get(i);
+            try {
+                Payment payment = renewals.get(i).join();
+                record(task, leased -> {
+                    leased.setStatus(RenewalTaskStatus.RENEWED);
+                    leased.setRenewalPaymentId(payment.getId());
+                    leased.setAttempts(leased.getAttempts() + 1);
+                    count("renewed");
+                });
+                logger.info("Renewed payment {} with payment {}", task.getPaymentId(), payment.getId());
+            } catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.error("Error while renewing payment {}", task.getPaymentId(), cause);
+                Exception failure = cause instanceof Exception exception ? exception : e;
+                record(task, leased -> scheduleRetry(leased, failure));
+            }
+        }
+        return tasks.size();
+    }
+
+    /**
+     * Lock a batch of due renewals, including the ones whose lease expired, and lease them to this replica.
+     *
+     * @return Claimed renewals.
+     */
+    private List<RenewalTask> claimDueTasks() {
+        Date now = new Date();
+        List<RenewalTask> tasks = renewalTaskRepository.lockDueTasks(now, batchSize);
+        for (RenewalTask task : tasks) {
+            task.setStatus(RenewalTaskStatus.RUNNING);
+            task.setNextAttemptAt(new Date(now.getTime() + lease.toMillis()));
+        }
+        return renewalTaskRepository.saveAll(tasks);
+    }
+
+    /**
+     * Record the outcome of a renewal in its own transaction, unless its lease expired and another replica claimed it.
+     *
+     * @param claimed Renewal as claimed.
+     * @param outcome Update of the renewal.
+     */
+    private void record(RenewalTask claimed, Consumer<RenewalTask> outcome) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> renewalTaskRepository.findById(claimed.getPaymentId())
+                    .filter(task -> task.getStatus() == RenewalTaskStatus.RUNNING
+                            && task.getNextAttemptAt().getTime() == claimed.getNextAttemptAt().getTime())
+                    .ifPresentOrElse(task -> {
+                        outcome.accept(task);
+                        renewalTaskRepository.save(task);
+                    }, () -> logger.warn("Lease of renewal of payment {} taken over, outcome not recorded", claimed.getPaymentId())));
+        } catch (Exception e) {
+            // The renewal is claimed again when its lease expires, and the idempotency key replays its payment
+            logger.error("Error while recording renewal of payment {}", claimed.getPaymentId(), e);
+        }
+    }
+
+    /**
+     * Create the payment renewing a subscription, starting when it expires.
+     *
+     * @param task        Renewal to run.
+     * @param optIn       Opt-in of the recruiter.
+     * @param bearerToken Token of the service account.
+     * @return Created payment.
+     */
+    private Payment renew(RenewalTask task, AutoRenewal optIn, String bearerToken) {
+        Date now = new Date();
+        PaymentDTO payment = new PaymentDTO();
+        payment.setRecruiterId(task.getRecruiterId());
+        payment.setPlanId(task.getPlanId());
+        payment.setPaymentDate(now);
+        payment.setPaymentMethod(Optional.ofNullable(optIn.getPaymentMethod()).orElse(task.getPaymentMethod()));
+        Date startsOn = task.getExpiresOn().after(now) ? task.getExpiresOn() : now;
+        return paymentService.renewPayment(payment, bearerToken, task.getPaymentId(), startsOn);
+    }
+
+    /**
+     * Schedule the next attempt of a renewal with exponential backoff and jitter, or give up on it.
+     * A conflict means the payment of the renewal is being created by an attempt still running, as an orphaned
+     * reservation is taken over once the idempotency lease has passed, and a rejected token is not the fault of the
+     * renewal: both postpone it without using up an attempt. Other client errors than timeouts and rate limiting will
+     * not succeed on retry, so they fail the renewal at once.
+     *
+     * @param task Renewal that failed.
+     * @param e    Failure.
+     */
+    private void scheduleRetry(RenewalTask task, Exception e) {
+        task.setLastError(truncate(e.toString()));
+        if (e instanceof HttpClientErrorException clientError
+                && (clientError.getStatusCode().isSameCodeAs(HttpStatus.CONFLICT)
+                || clientError.getStatusCode().isSameCodeAs(HttpStatus.UNAUTHORIZED))) {
+            long delay = clientError.getStatusCode().isSameCodeAs(HttpStatus.CONFLICT)
+                    ? idempotencyLease.toMillis()
+                    : initialBackoff.toMillis();
+            task.setStatus(RenewalTaskStatus.PENDING);
+            task.setNextAttemptAt(new Date(System.currentTimeMillis() + delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1)));
+            count("postponed");
+            return;
+        }
+
+        int attempts = task.getAttempts() + 1;
+        task.setAttempts(attempts);
+        boolean retryable = !(e instanceof HttpClientErrorException clientError)
+                || clientError.getStatusCode().isSameCodeAs(HttpStatus.REQUEST_TIMEOUT)
+                || clientError.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS);
+        if (!retryable || attempts >= maxAttempts) {
+            logger.error("Giving up on renewal of payment {} after {} attempts", task.getPaymentId(), attempts);
+            task.setStatus(RenewalTaskStatus.FAILED);
+            count("failed");
+        } else {
+            long backoff = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempts - 1, 30));
+            long jittered = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            task.setStatus(RenewalTaskStatus.PENDING);
+            task.setNextAttemptAt(new Date(System.currentTimeMillis() + jittered));
+            count("retry");
+        }
+    }
+
+    private void count(String outcome) {
+        Counter.builder("payment.renewal.tasks")
+                .description("Renewals handled by the renewal job")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    /**
+     * Space the start of renewals evenly at a fixed rate within a run.
+     */
+    private static final class Pacer {
+
+        private final long intervalNanos;
+
+        private long next = System.nanoTime();
+
+        private Pacer(double rate) {
+            this.intervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+        }
+
+        private void await() {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            next = Math.max(next, System.nanoTime() - intervalNanos) + intervalNanos;
+        }
+    }
+}
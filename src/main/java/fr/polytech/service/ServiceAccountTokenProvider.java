@@ -0,0 +1,113 @@
+package fr.polytech.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token of the service account of payment-api, obtained from Keycloak with the client credentials grant.
+ * Jobs running without a user request, such as the invoice outbox dispatcher and the renewal job, call the other
+ * microservices with it. The token is reused until shortly before it expires.
+ */
+@Service
+@Profile("!reactive")
+public class ServiceAccountTokenProvider {
+
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(30);
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(ServiceAccountTokenProvider.class);
+
+    private final RestTemplate restTemplate;
+
+    private final String tokenUri;
+
+    private final String clientId;
+
+    private final String clientSecret;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private String token;
+
+    private Instant refreshAt = Instant.MIN;
+
+    public ServiceAccountTokenProvider(
+            RestTemplateBuilder restTemplateBuilder,
+            @Value("${payment.service-account.token-uri:}") String tokenUri,
+            @Value("${payment.service-account.client-id:}") String clientId,
+            @Value("${payment.service-account.client-secret:}") String clientSecret
+    ) {
+        // Keycloak is not registered in Eureka, so the load-balanced RestTemplate cannot reach it
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(2))
+                .setReadTimeout(Duration.ofSeconds(5))
+                .build();
+        this.tokenUri = tokenUri;
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+    }
+
+    /**
+     * Get the token of the service account as an Authorization header value.
+     *
+     * @return Bearer token.
+     * @throws HttpClientErrorException If no service account is configured or Keycloak did not issue a token.
+     */
+    public String getBearerToken() throws HttpClientErrorException {
+        // A lock rather than synchronized, so a virtual thread waiting for Keycloak does not pin its carrier thread
+        lock.lock();
+        try {
+            if (token == null || Instant.now().isAfter(refreshAt)) {
+                fetchToken();
+            }
+            return "Bearer " + token;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Request a new token from Keycloak.
+     *
+     * @throws HttpClientErrorException If no service account is configured or Keycloak did not issue a token.
+     */
+    private void fetchToken() throws HttpClientErrorException {
+        if (tokenUri.isBlank() || clientId.isBlank()) {
+            throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED, "No service account configured");
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "client_credentials");
+        form.add("client_id", clientId);
+        form.add("client_secret", clientSecret);
+
+        Map<?, ?> response = restTemplate.postForObject(tokenUri, new HttpEntity<>(form, headers), Map.class);
+        if (response == null || !(response.get("access_token") instanceof String accessToken)) {
+            throw new HttpClientErrorException(HttpStatus.UNAUTHORIZED, "No token issued for the service account");
+        }
+        long expiresIn = response.get("expires_in") instanceof Number seconds ? seconds.longValue() : 60;
+        token = accessToken;
+        refreshAt = Instant.now().plusSeconds(expiresIn).minus(EXPIRY_MARGIN);
+        logger.info("Fetched service account token valid for {} seconds", expiresIn);
+    }
+}
@@ -0,0 +1,56 @@
+package fr.polytech.service;
+
+import fr.polytech.model.SubscriptionEvent;
+import fr.polytech.repository.SubscriptionEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.List;
+
+/**
+ * Subscription expiry events stored by SubscriptionExpiryScheduler, read by the other services.
+ */
+@Service
+@Profile("!reactive")
+public class SubscriptionEventService {
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(SubscriptionEventService.class);
+
+    private final SubscriptionEventRepository subscriptionEventRepository;
+
+    private final int maxPageSize;
+
+    public SubscriptionEventService(
+            SubscriptionEventRepository subscriptionEventRepository,
+            @Value("${payment.page.max-size:500}") int maxPageSize
+    ) {
+        this.subscriptionEventRepository = subscriptionEventRepository;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Get the events stored after an event, in the order they were stored.
+     * A consumer passes the id of the last event it handled, and gets an empty list once it has read every event.
+     *
+     * @param after Id of the last event already read, 0 to read from the first event.
+     * @param size  Maximum number of events.
+     * @return Events stored after the given one.
+     * @throws HttpClientErrorException If the size is not valid.
+     */
+    public List<SubscriptionEvent> getEventsAfter(long after, int size) throws HttpClientErrorException {
+        logger.info("Getting subscription events after {}", after);
+        if (size < 1 || size > maxPageSize) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + maxPageSize);
+        }
+        return subscriptionEventRepository.findAfter(after, PageRequest.of(0, size));
+    }
+}
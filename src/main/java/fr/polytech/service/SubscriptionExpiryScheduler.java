@@ -0,0 +1,314 @@
+package fr.polytech.service;
+
+import fr.polytech.model.ExpiringSubscriptionDTO;
+import fr.polytech.model.SubscriptionEvent;
+import fr.polytech.model.SubscriptionEventType;
+import fr.polytech.model.SubscriptionExpiredEvent;
+import fr.polytech.model.SubscriptionExpiryEvent;
+import fr.polytech.model.SubscriptionExpiryWatermark;
+import fr.polytech.model.SubscriptionRenewalDueEvent;
+import fr.polytech.repository.PaymentRepository;
+import fr.polytech.repository.SubscriptionEventRepository;
+import fr.polytech.repository.SubscriptionExpiryWatermarkRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Publish a SubscriptionRenewalDueEvent when a subscription enters the renewal notice period and a
+ * SubscriptionExpiredEvent when it expires, and store them in subscription_event for the other services.
+ * The replica holding a Postgres advisory lock keeps the subscriptions falling due within the horizon in a priority
+ * queue, and each tick only reads the slice of the expires_on index that entered the horizon since the previous one.
+ * The last subscription each stage published for is stored, so a replica taking over resumes after it. The lock only
+ * lasts one chunk, so each chunk checks the stored positions are still the ones this replica left: if another replica
+ * published in between, its queue is stale and it resumes from the stored positions instead. The events of a chunk
+ * are stored, and listeners run, in the transaction recording the position: a listener that throws makes the chunk be
+ * published again.
+ */
+@Service
+@Profile("!reactive")
+public class SubscriptionExpiryScheduler {
+
+    /**
+     * Greatest UUID in PostgreSQL order, positioning a stage after every subscription expiring at the same time.
+     */
+    private static final UUID LAST_UUID = new UUID(-1L, -1L);
+
+    private static final Comparator<DueEvent> DUE_ORDER = Comparator
+            .comparingLong(DueEvent::dueAt)
+            .thenComparing(due -> due.subscription().getExpiresOn())
+            .thenComparing(due -> due.subscription().getPaymentId(), SubscriptionExpiryScheduler::compareUuids);
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(SubscriptionExpiryScheduler.class);
+
+    private final PaymentRepository paymentRepository;
+
+    private final SubscriptionExpiryWatermarkRepository watermarkRepository;
+
+    private final SubscriptionEventRepository subscriptionEventRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final Duration horizon;
+
+    private final int chunkSize;
+
+    private final long lockKey;
+
+    private final List<Stage> stages;
+
+    private final PriorityQueue<DueEvent> queue = new PriorityQueue<>(DUE_ORDER);
+
+    private boolean leader;
+
+    public SubscriptionExpiryScheduler(
+            PaymentRepository paymentRepository,
+            SubscriptionExpiryWatermarkRepository watermarkRepository,
+            SubscriptionEventRepository subscriptionEventRepository,
+            ApplicationEventPublisher eventPublisher,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${payment.expiry.enabled:true}") boolean enabled,
+            @Value("${payment.expiry.horizon:1h}") Duration horizon,
+            @Value("${payment.expiry.renewal-notice:7d}") Duration renewalNotice,
+            @Value("${payment.expiry.chunk-size:500}") int chunkSize,
+            @Value("${payment.expiry.lock-key:4823011}") long lockKey
+    ) {
+        this.paymentRepository = paymentRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.subscriptionEventRepository = subscriptionEventRepository;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.horizon = horizon;
+        this.chunkSize = chunkSize;
+        this.lockKey = lockKey;
+        this.stages = List.of(
+                new Stage(SubscriptionEventType.RENEWAL_DUE, renewalNotice, SubscriptionRenewalDueEvent::new, meterRegistry),
+                new Stage(SubscriptionEventType.EXPIRED, Duration.ZERO, SubscriptionExpiredEvent::new, meterRegistry)
+        );
+        Gauge.builder("payment.expiry.queue.size", queue, PriorityQueue::size)
+                .description("Subscriptions falling due within the horizon, waiting in the expiry scheduler")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publish the due events chunk after chunk until none is left, if this replica gets the lock.
+     */
+    @Scheduled(fixedDelayString = "${payment.expiry.tick-interval:10000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Boolean more;
+            do {
+                more = transactionTemplate.execute(status -> runChunk(new Date()));
+            } while (Boolean.TRUE.equals(more));
+        } catch (Exception e) {
+            logger.error("Error while publishing subscription expiry events, resuming from the last stored position", e);
+            leader = false;
+            queue.clear();
+        }
+    }
+
+    /**
+     * Load the subscriptions that entered the horizon and publish at most one chunk of due events, under the lock.
+     *
+     * @param now Current time.
+     * @return True if more events may be due.
+     */
+    private boolean runChunk(Date now) {
+        if (!watermarkRepository.tryLock(lockKey)) {
+            if (leader) {
+                logger.info("Subscription expiry scheduler taken over by another replica");
+            }
+            leader = false;
+            queue.clear();
+            return false;
+        }
+        if (!leader) {
+            resume(now);
+            leader = true;
+        } else if (!holdsStoredPositions()) {
+            logger.info("Subscription expiry events published by another replica meanwhile, resuming from the stored position");
+            resume(now);
+        }
+        for (Stage stage : stages) {
+            load(stage, now);
+        }
+
+        Set<Stage> published = new LinkedHashSet<>();
+        List<SubscriptionEvent> events = new ArrayList<>();
+        int count = 0;
+        while (count < chunkSize && !queue.isEmpty() && queue.peek().dueAt() <= now.getTime()) {
+            DueEvent due = queue.poll();
+            events.add(new SubscriptionEvent(due.stage().type, due.subscription(), now));
+            eventPublisher.publishEvent(due.stage().event.apply(due.subscription()));
+            due.stage().published.increment();
+            due.stage().lastPublished = due.subscription();
+            published.add(due.stage());
+            count++;
+        }
+        if (!events.isEmpty()) {
+            // Only the replica holding the lock stores events, so ids follow the commit order
+            long lastId = subscriptionEventRepository.findLastId();
+            for (SubscriptionEvent event : events) {
+                event.setId(++lastId);
+            }
+            subscriptionEventRepository.saveAll(events);
+        }
+        for (Stage stage : published) {
+            watermarkRepository.save(new SubscriptionExpiryWatermark(
+                    stage.type.name(),
+                    stage.lastPublished.getExpiresOn(),
+                    stage.lastPublished.getPaymentId()
+            ));
+            stage.storedExpiresOn = stage.lastPublished.getExpiresOn();
+            stage.storedPaymentId = stage.lastPublished.getPaymentId();
+        }
+        if (count > 0) {
+            logger.info("Published {} subscription expiry events", count);
+        }
+        return count == chunkSize;
+    }
+
+    /**
+     * Start over from the stored positions, after getting the lock. A stage without position starts at the current
+     * time.
+     *
+     * @param now Current time.
+     */
+    private void resume(Date now) {
+        queue.clear();
+        for (Stage stage : stages) {
+            SubscriptionExpiryWatermark watermark = watermarkRepository.findById(stage.type.name())
+                    .orElseGet(() -> watermarkRepository.save(new SubscriptionExpiryWatermark(stage.type.name(), now, LAST_UUID)));
+            stage.loadedExpiresOn = watermark.getExpiresOn();
+            stage.loadedPaymentId = watermark.getPaymentId();
+            stage.storedExpiresOn = watermark.getExpiresOn();
+            stage.storedPaymentId = watermark.getPaymentId();
+            stage.lastPublished = null;
+        }
+        logger.info("Subscription expiry scheduler running on this replica");
+    }
+
+    /**
+     * Check that no other replica published since this one last held the lock, by comparing the stored positions
+     * with the ones this replica stored or resumed from.
+     *
+     * @return True if the stored positions are still those of this replica.
+     */
+    private boolean holdsStoredPositions() {
+        for (Stage stage : stages) {
+            SubscriptionExpiryWatermark watermark = watermarkRepository.findById(stage.type.name()).orElse(null);
+            if (watermark == null
+                    || watermark.getExpiresOn().getTime() != stage.storedExpiresOn.getTime()
+                    || !watermark.getPaymentId().equals(stage.storedPaymentId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queue the subscriptions of a stage falling due within the horizon that are not queued yet, chunk by chunk.
+     *
+     * @param stage Stage to load.
+     * @param now   Current time.
+     */
+    private void load(Stage stage, Date now) {
+        Date until = new Date(now.getTime() + horizon.toMillis() + stage.lead.toMillis());
+        List<ExpiringSubscriptionDTO> chunk;
+        do {
+            chunk = paymentRepository.findExpiringAfter(stage.loadedExpiresOn, stage.loadedPaymentId, until, PageRequest.of(0, chunkSize));
+            for (ExpiringSubscriptionDTO subscription : chunk) {
+                queue.add(new DueEvent(stage, subscription.getExpiresOn().getTime() - stage.lead.toMillis(), subscription));
+            }
+            if (!chunk.isEmpty()) {
+                ExpiringSubscriptionDTO last = chunk.get(chunk.size() - 1);
+                stage.loadedExpiresOn = last.getExpiresOn();
+                stage.loadedPaymentId = last.getPaymentId();
+            }
+        } while (chunk.size() == chunkSize);
+    }
+
+    /**
+     * Compare UUIDs as PostgreSQL does, byte by byte unsigned, unlike UUID.compareTo.
+     */
+    private static int compareUuids(UUID a, UUID b) {
+        int mostSignificant = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return mostSignificant != 0 ? mostSignificant : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    /**
+     * Event published a fixed time before subscriptions expire, with its loading and publishing positions.
+     */
+    private static final class Stage {
+
+        private final SubscriptionEventType type;
+
+        private final Duration lead;
+
+        private final Function<ExpiringSubscriptionDTO, SubscriptionExpiryEvent> event;
+
+        private final Counter published;
+
+        private Date loadedExpiresOn;
+
+        private UUID loadedPaymentId;
+
+        private ExpiringSubscriptionDTO lastPublished;
+
+        private Date storedExpiresOn;
+
+        private UUID storedPaymentId;
+
+        private Stage(SubscriptionEventType type, Duration lead, Function<ExpiringSubscriptionDTO, SubscriptionExpiryEvent> event, MeterRegistry meterRegistry) {
+            this.type = type;
+            this.lead = lead;
+            this.event = event;
+            this.published = Counter.builder("payment.subscription.events")
+                    .description("Subscription expiry events published")
+                    .tag("type", type.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Event of a stage due at a time for a subscription.
+     *
+     * @param stage        Stage of the event.
+     * @param dueAt        Time the event is due, in milliseconds since the epoch.
+     * @param subscription Subscription the event is about.
+     */
+    private record DueEvent(Stage stage, long dueAt, ExpiringSubscriptionDTO subscription) {
+    }
+}
@@ -0,0 +1,204 @@
+package fr.polytech.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nimbusds.jwt.JWTParser;
+import fr.polytech.model.AddressDTO;
+import fr.polytech.model.RecruiterDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Short-lived cache of the recruiters and addresses fetched from user-api and address-api.
+ * Entries are keyed by the caller as well as the id, so a caller is only served what user-api or address-api returned
+ * to that same caller, and the upstream authorization still applies. Every entry expires on its own after the
+ * configured time to live, and the caches are bounded in size.
+ */
+@Service
+public class UpstreamCache {
+
+    private final boolean enabled;
+
+    private final AsyncCache<Key, RecruiterDTO> recruiters;
+
+    private final AsyncCache<Key, AddressDTO> addresses;
+
+    public UpstreamCache(
+            MeterRegistry meterRegistry,
+            @Value("${payment.upstream-cache.enabled:true}") boolean enabled,
+            @Value("${payment.upstream-cache.max-size:10000}") long maxSize,
+            @Value("${payment.upstream-cache.recruiter-ttl:60s}") Duration recruiterTtl,
+            @Value("${payment.upstream-cache.address-ttl:5m}") Duration addressTtl
+    ) {
+        this.enabled = enabled;
+        this.recruiters = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(recruiterTtl)
+                .recordStats()
+                .buildAsync();
+        this.addresses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(addressTtl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, recruiters.synchronous(), "recruiters");
+        CaffeineCacheMetrics.monitor(meterRegistry, addresses.synchronous(), "addresses");
+    }
+
+    /**
+     * Get the principal a token was issued to, which scopes the entries it may be served.
+     * The token has already been validated by the resource server. A token without subject is its own principal.
+     *
+     * @param token Token, with or without the Bearer prefix.
+     * @return Principal of the token.
+     */
+    public static String principalOf(String token) {
+        String rawToken = token != null && token.startsWith("Bearer ") ? token.substring("Bearer ".length()) : token;
+        try {
+            String subject = JWTParser.parse(rawToken).getJWTClaimsSet().getSubject();
+            return subject != null ? subject : rawToken;
+        } catch (ParseException | RuntimeException e) {
+            return rawToken;
+        }
+    }
+
+    /**
+     * Get a recruiter, loading it on the calling thread on a miss. Concurrent misses of a caller on the same id share
+     * a single load, and a null result or a failed load is not cached.
+     *
+     * @param principal   Caller, as returned by principalOf.
+     * @param recruiterId Recruiter id.
+     * @param loader      Function fetching the recruiter from user-api.
+     * @return Recruiter, or null if the loader returned null.
+     */
+    public RecruiterDTO getRecruiter(String principal, UUID recruiterId, Function<UUID, RecruiterDTO> loader) {
+        if (!enabled) {
+            return loader.apply(recruiterId);
+        }
+        return get(recruiters, new Key(principal, recruiterId), loader);
+    }
+
+    /**
+     * Get an address, loading it on the calling thread on a miss.
+     *
+     * @param principal Caller, as returned by principalOf.
+     * @param addressId Address id.
+     * @param loader    Function fetching the address from address-api.
+     * @return Address, or null if the loader returned null.
+     */
+    public AddressDTO getAddress(String principal, UUID addressId, Function<UUID, AddressDTO> loader) {
+        if (!enabled) {
+            return loader.apply(addressId);
+        }
+        return get(addresses, new Key(principal, addressId), loader);
+    }
+
+    /**
+     * Get a recruiter without blocking, loading it on a miss. Unlike getRecruiter, concurrent misses on the same id
+     * are not coalesced.
+     *
+     * @param principal   Caller, as returned by principalOf.
+     * @param recruiterId Recruiter id.
+     * @param loader      Function fetching the recruiter from user-api.
+     * @return Recruiter, or an empty Mono if the loader completed empty.
+     */
+    public Mono<RecruiterDTO> getRecruiterAsync(String principal, UUID recruiterId, Function<UUID, Mono<RecruiterDTO>> loader) {
+        return getAsync(recruiters, new Key(principal, recruiterId), loader);
+    }
+
+    /**
+     * Get an address without blocking, loading it on a miss.
+     *
+     * @param principal Caller, as returned by principalOf.
+     * @param addressId Address id.
+     * @param loader    Function fetching the address from address-api.
+     * @return Address, or an empty Mono if the loader completed empty.
+     */
+    public Mono<AddressDTO> getAddressAsync(String principal, UUID addressId, Function<UUID, Mono<AddressDTO>> loader) {
+        return getAsync(addresses, new Key(principal, addressId), loader);
+    }
+
+    /**
+     * Get an entry, loading it on a miss. The pending load is published as an incomplete future and the HTTP call is
+     * made outside of the cache, so a slow upstream never holds the lock of a hash bin shared with other keys.
+     * The cache drops futures completed with null or exceptionally.
+     */
+    private static <T> T get(AsyncCache<Key, T> cache, Key key, Function<UUID, T> loader) {
+        CompletableFuture<T> load = new CompletableFuture<>();
+        CompletableFuture<T> existing = cache.get(key, (k, executor) -> load);
+        if (existing != load) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            T value = loader.apply(key.id());
+            load.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private <T> Mono<T> getAsync(AsyncCache<Key, T> cache, Key key, Function<UUID, Mono<T>> loader) {
+        if (!enabled) {
+            return loader.apply(key.id());
+        }
+        CompletableFuture<T> cached = cache.getIfPresent(key);
+        if (cached != null && cached.isDone() && !cached.isCompletedExceptionally() && cached.join() != null) {
+            return Mono.just(cached.join());
+        }
+        return loader.apply(key.id()).doOnNext(value -> cache.put(key, CompletableFuture.completedFuture(value)));
+    }
+
+    /**
+     * Evict a recruiter and the address it points to, for every caller.
+     *
+     * @param recruiterId Recruiter id.
+     */
+    public void evictRecruiter(UUID recruiterId) {
+        recruiters.asMap().entrySet().removeIf(entry -> {
+            if (!entry.getKey().id().equals(recruiterId)) {
+                return false;
+            }
+            RecruiterDTO recruiter = entry.getValue().getNow(null);
+            if (recruiter != null && recruiter.getAddressId() != null) {
+                addresses.asMap().keySet().removeIf(key -> key.id().equals(recruiter.getAddressId()));
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Evict every cached recruiter and address.
+     */
+    public void evictAll() {
+        recruiters.synchronous().invalidateAll();
+        addresses.synchronous().invalidateAll();
+    }
+
+    /**
+     * Cache key: an id as seen by a caller.
+     *
+     * @param principal Caller.
+     * @param id        Recruiter or address id.
+     */
+    private record Key(String principal, UUID id) {
+    }
+}
@@ -0,0 +1,239 @@
+package fr.polytech.service;
+
+import fr.polytech.config.ResilienceProperties;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.backoff.ExponentialRandomBackOffPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Isolates the calls to user-api, address-api and invoice-api from each other and from the rest of the service.
+ * Each dependency gets a bulkhead bounding its concurrent calls, and a circuit breaker failing fast with 503 while the
+ * dependency is unhealthy. Idempotent calls are retried on dependency failures, other calls only when the connection
+ * could not be established, with randomised exponential backoff in both cases.
+ */
+@Service
+public class UpstreamGuard {
+
+    public static final String USER_API = "user-api";
+
+    public static final String ADDRESS_API = "address-api";
+
+    public static final String INVOICE_API = "invoice-api";
+
+    /**
+     * Initializing logger
+     */
+    private final Logger logger = LoggerFactory.getLogger(UpstreamGuard.class);
+
+    private final ResilienceProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final CircuitBreakerRegistry circuitBreakers;
+
+    private final BulkheadRegistry bulkheads;
+
+    private final Map<String, Isolation> isolations = new ConcurrentHashMap<>();
+
+    private final RetryTemplate idempotentRetry;
+
+    private final RetryTemplate connectRetry;
+
+    public UpstreamGuard(ResilienceProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slowCallRateThreshold(properties.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(properties.getSlowCallDuration())
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(properties.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(properties.getPermittedCallsInHalfOpenState())
+                .recordException(UpstreamGuard::isDependencyFailure)
+                .build());
+        this.bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(properties.getMaxConcurrentCalls())
+                .maxWaitDuration(properties.getMaxWaitDuration())
+                .build());
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+
+        this.idempotentRetry = retryTemplate(UpstreamGuard::isDependencyFailure);
+        this.connectRetry = retryTemplate(UpstreamGuard::isConnectFailure);
+
+        // Register the known dependencies up front so their metrics exist before the first call
+        isolation(USER_API);
+        isolation(ADDRESS_API);
+        isolation(INVOICE_API);
+    }
+
+    /**
+     * Call a dependency through its bulkhead and circuit breaker, with retries.
+     *
+     * @param dependency Dependency name.
+     * @param idempotent Whether the call can be repeated after the request may have reached the dependency.
+     * @param call       Call to the dependency.
+     * @return Result of the call.
+     * @throws HttpServerErrorException 503 if the bulkhead is full or the circuit breaker is open.
+     */
+    public <T> T call(String dependency, boolean idempotent, Supplier<T> call) throws HttpServerErrorException {
+        Isolation isolation = isolation(dependency);
+        Supplier<T> isolated = Bulkhead.decorateSupplier(isolation.bulkhead(),
+                CircuitBreaker.decorateSupplier(isolation.circuitBreaker(), call));
+        RetryTemplate retryTemplate = idempotent ? idempotentRetry : connectRetry;
+        try {
+            return retryTemplate.execute(context -> isolated.get());
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            throw unavailable(dependency, e);
+        }
+    }
+
+    /**
+     * Non-blocking variant of call, for the reactive stack. It goes through the same circuit breaker; concurrency is
+     * bounded by the WebClient connection pool and its pending acquisition queue rather than by the bulkhead, whose
+     * wait would block the event loop.
+     *
+     * @param dependency Dependency name.
+     * @param idempotent Whether the call can be repeated after the request may have reached the dependency.
+     * @param call       Call to the dependency.
+     * @return Result of the call, or an HttpServerErrorException 503 if the circuit breaker is open.
+     */
+    public <T> Mono<T> callAsync(String dependency, boolean idempotent, Mono<T> call) {
+        Isolation isolation = isolation(dependency);
+        Predicate<Throwable> retryable = idempotent ? UpstreamGuard::isDependencyFailure : UpstreamGuard::isConnectFailure;
+        return call
+                .transformDeferred(CircuitBreakerOperator.of(isolation.circuitBreaker()))
+                .retryWhen(Retry.backoff(properties.getMaxAttempts() - 1, properties.getInitialBackoff())
+                        .maxBackoff(properties.getMaxBackoff())
+                        .jitter(0.5)
+                        .filter(retryable)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .onErrorMap(CallNotPermittedException.class, e -> unavailable(dependency, e));
+    }
+
+    /**
+     * Get or create the bulkhead and circuit breaker of a dependency, and count their rejections.
+     *
+     * @param dependency Dependency name.
+     * @return Isolation of the dependency.
+     */
+    private Isolation isolation(String dependency) {
+        return isolations.computeIfAbsent(dependency, name -> {
+            Integer maxConcurrentCalls = properties.getMaxConcurrentCallsPerDependency().get(name);
+            Bulkhead bulkhead = maxConcurrentCalls == null
+                    ? bulkheads.bulkhead(name)
+                    : bulkheads.bulkhead(name, BulkheadConfig.from(bulkheads.getDefaultConfig()).maxConcurrentCalls(maxConcurrentCalls).build());
+            CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(name);
+
+            Counter bulkheadRejections = rejectionCounter(name, "bulkhead_full");
+            Counter circuitRejections = rejectionCounter(name, "circuit_open");
+            bulkhead.getEventPublisher().onCallRejected(event -> bulkheadRejections.increment());
+            circuitBreaker.getEventPublisher().onCallNotPermitted(event -> circuitRejections.increment());
+            circuitBreaker.getEventPublisher().onStateTransition(event ->
+                    logger.warn("Circuit breaker of {} went {}", name, event.getStateTransition()));
+            return new Isolation(bulkhead, circuitBreaker);
+        });
+    }
+
+    private Counter rejectionCounter(String dependency, String reason) {
+        return Counter.builder("payment.upstream.rejected")
+                .description("Calls to a dependency rejected without being sent")
+                .tag("dependency", dependency)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Build a retry template retrying the failures accepted by a predicate, with randomised exponential backoff.
+     *
+     * @param retryable Failures worth retrying.
+     * @return Retry template.
+     */
+    private RetryTemplate retryTemplate(Predicate<Throwable> retryable) {
+        ExponentialRandomBackOffPolicy backOffPolicy = new ExponentialRandomBackOffPolicy();
+        backOffPolicy.setInitialInterval(properties.getInitialBackoff().toMillis());
+        backOffPolicy.setMultiplier(properties.getBackoffMultiplier());
+        backOffPolicy.setMaxInterval(properties.getMaxBackoff().toMillis());
+
+        RetryTemplate retryTemplate = new RetryTemplate();
+        retryTemplate.setBackOffPolicy(backOffPolicy);
+        retryTemplate.setRetryPolicy(new SimpleRetryPolicy(properties.getMaxAttempts()) {
+            @Override
+            public boolean canRetry(RetryContext context) {
+                Throwable lastThrowable = context.getLastThrowable();
+                return (lastThrowable == null || retryable.test(lastThrowable)) && super.canRetry(context);
+            }
+        });
+        return retryTemplate;
+    }
+
+    private static HttpServerErrorException unavailable(String dependency, Exception e) {
+        return HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, dependency + " is unavailable: " + e.getMessage(),
+                HttpHeaders.EMPTY, null, null);
+    }
+
+    /**
+     * Whether a failure tells that the dependency is unhealthy: unreachable, timing out or answering 5xx.
+     * Client errors are answers of a healthy dependency and do not count.
+     *
+     * @param e Failure.
+     * @return True if the failure counts against the dependency.
+     */
+    static boolean isDependencyFailure(Throwable e) {
+        return e instanceof ResourceAccessException
+                || e instanceof HttpServerErrorException
+                || e instanceof WebClientRequestException
+                || (e instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError());
+    }
+
+    /**
+     * Whether a failure happened before the request was sent, so repeating a non-idempotent call is safe.
+     *
+     * @param e Failure.
+     * @return True if the connection could not be established.
+     */
+    static boolean isConnectFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Isolation(Bulkhead bulkhead, CircuitBreaker circuitBreaker) {
+    }
+}
@@ -0,0 +1,197 @@
+package fr.polytech.config;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Key caching of the JWT decoder against a JWK set endpoint served by a mock server, with a cache time to live of a
+ * few seconds so expiry and refresh happen within the tests.
+ */
+class JwtDecoderConfigTest {
+
+    private static final String ISSUER = "http://keycloak.test/realms/seasonsforce";
+
+    private static RSAKey key;
+
+    private static RSAKey rotatedKey;
+
+    private final JwkSetDispatcher dispatcher = new JwkSetDispatcher();
+
+    private MockWebServer server;
+
+    @BeforeAll
+    static void generateKeys() throws JOSEException {
+        key = new RSAKeyGenerator(2048).keyID("key").generate();
+        rotatedKey = new RSAKeyGenerator(2048).keyID("rotated-key").generate();
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        dispatcher.jwkSet = new JWKSet(key);
+        server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void fetchesKeysAtStartup() {
+        contextRunner().run(context -> {
+            assertThat(server.getRequestCount()).isEqualTo(1);
+
+            context.getBean(JwtDecoder.class).decode(token(key));
+
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void fetchesKeysOnFirstRequestWithoutWarmUp() {
+        contextRunner().withPropertyValues("payment.jwk.warm-up=false").run(context -> {
+            assertThat(server.getRequestCount()).isZero();
+
+            context.getBean(JwtDecoder.class).decode(token(key));
+
+            assertThat(server.getRequestCount()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void startsWhenJwkSetEndpointIsDown() {
+        dispatcher.down = true;
+        contextRunner().run(context -> {
+            assertThat(context).hasNotFailed();
+
+            dispatcher.down = false;
+            context.getBean(JwtDecoder.class).decode(token(key));
+        });
+    }
+
+    @Test
+    void refreshesKeysAheadOfExpiry() {
+        contextRunner().run(context -> {
+            dispatcher.jwkSet = new JWKSet(rotatedKey);
+
+            // Refreshed in the background one second before the three second time to live ends
+            await().atMost(Duration.ofMillis(2900)).until(() -> server.getRequestCount() == 2);
+            context.getBean(JwtDecoder.class).decode(token(rotatedKey));
+
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void keepsKeysWhileJwkSetEndpointIsDown() {
+        contextRunner().run(context -> {
+            dispatcher.down = true;
+            Thread.sleep(3500);
+
+            context.getBean(JwtDecoder.class).decode(token(key));
+
+            assertThat(server.getRequestCount()).isGreaterThan(1);
+        });
+    }
+
+    @Test
+    void failsWhenJwkSetEndpointIsDownWithoutOutageTolerance() {
+        contextRunner().withPropertyValues("payment.jwk.outage-tolerance=0s").run(context -> {
+            dispatcher.down = true;
+            Thread.sleep(3500);
+
+            String token = token(key);
+            assertThatThrownBy(() -> context.getBean(JwtDecoder.class).decode(token))
+                    .isInstanceOf(JwtException.class);
+        });
+    }
+
+    @Test
+    void fetchesRotatedKeyOnUnknownKeyId() {
+        contextRunner().run(context -> {
+            dispatcher.jwkSet = new JWKSet(List.of(key, rotatedKey));
+            JwtDecoder decoder = context.getBean(JwtDecoder.class);
+
+            decoder.decode(token(rotatedKey));
+            decoder.decode(token(key));
+
+            assertThat(server.getRequestCount()).isEqualTo(2);
+        });
+    }
+
+    private ApplicationContextRunner contextRunner() {
+        return new ApplicationContextRunner()
+                .withUserConfiguration(JwtDecoderConfig.class)
+                .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+                .withPropertyValues(
+                        "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + server.url("/certs"),
+                        "spring.security.oauth2.resourceserver.jwt.issuer-uri=" + ISSUER,
+                        "payment.jwk.cache-ttl=3s",
+                        "payment.jwk.refresh-ahead=1s",
+                        "payment.jwk.refresh-timeout=1s"
+                );
+    }
+
+    private static String token(RSAKey signingKey) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(ISSUER)
+                .subject("recruiter")
+                .issueTime(new Date())
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(signingKey));
+        return jwt.serialize();
+    }
+
+    /**
+     * JWK set endpoint serving the current key set, or failing while down.
+     */
+    private static final class JwkSetDispatcher extends Dispatcher {
+
+        private volatile JWKSet jwkSet;
+
+        private volatile boolean down;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if (down) {
+                return new MockResponse().setResponseCode(503);
+            }
+            return new MockResponse()
+                    .setHeader("Content-Type", "application/json")
+                    .setBody(jwkSet.toString());
+        }
+    }
+}
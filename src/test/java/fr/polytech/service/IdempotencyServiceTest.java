@@ -0,0 +1,172 @@
+package fr.polytech.service;
+
+import fr.polytech.model.IdempotencyRecord;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.repository.IdempotencyRecordRepository;
+import fr.polytech.repository.PaymentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Idempotency reservations shared through PostgreSQL. A second service instance on the same database stands for
+ * another replica, whose in-memory store does not know the keys of the first one.
+ */
+class IdempotencyServiceTest extends PostgresIntegrationTest {
+
+    private static final String FINGERPRINT = IdempotencyService.fingerprint("request".getBytes());
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Test
+    void storesPaymentUnderReservedKey() {
+        String key = UUID.randomUUID().toString();
+
+        Payment payment = idempotencyService.execute(key, FINGERPRINT, this::savePayment);
+
+        IdempotencyRecord record = idempotencyRecordRepository.findById(key).orElseThrow();
+        assertThat(record.getPaymentId()).isEqualTo(payment.getId());
+        assertThat(record.getFingerprint()).isEqualTo(FINGERPRINT);
+    }
+
+    @Test
+    void replaysStoredPaymentOnAnotherReplica() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+        Payment payment = idempotencyService.execute(key, FINGERPRINT, reservation -> {
+            runs.incrementAndGet();
+            return savePayment(reservation);
+        });
+
+        Payment replayed = otherReplica().execute(key, FINGERPRINT, reservation -> {
+            runs.incrementAndGet();
+            return savePayment(reservation);
+        });
+
+        assertThat(replayed.getId()).isEqualTo(payment.getId());
+        assertThat(runs).hasValue(1);
+        assertThat(paymentRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsKeyWhileAnotherReplicaHoldsReservation() {
+        String key = UUID.randomUUID().toString();
+        idempotencyRecordRepository.reserve(key, FINGERPRINT, new Date());
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, FINGERPRINT, this::savePayment))
+                .isInstanceOfSatisfying(HttpClientErrorException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+        assertThat(paymentRepository.count()).isZero();
+    }
+
+    @Test
+    void takesOverReservationWhoseLeaseExpired() {
+        String key = UUID.randomUUID().toString();
+        idempotencyRecordRepository.reserve(key, FINGERPRINT, new Date(System.currentTimeMillis() - Duration.ofMinutes(2).toMillis()));
+
+        Payment payment = idempotencyService.execute(key, FINGERPRINT, this::savePayment);
+
+        assertThat(idempotencyRecordRepository.findById(key).orElseThrow().getPaymentId()).isEqualTo(payment.getId());
+    }
+
+    @Test
+    void rejectsKeyReusedForAnotherRequest() {
+        String key = UUID.randomUUID().toString();
+        idempotencyService.execute(key, FINGERPRINT, this::savePayment);
+        String otherFingerprint = IdempotencyService.fingerprint("other request".getBytes());
+
+        assertThatThrownBy(() -> otherReplica().execute(key, otherFingerprint, this::savePayment))
+                .isInstanceOfSatisfying(HttpClientErrorException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+        assertThat(paymentRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void releasesKeyWhenPaymentFails() {
+        String key = UUID.randomUUID().toString();
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, FINGERPRINT, reservation -> {
+            throw new HttpClientErrorException(HttpStatus.BAD_GATEWAY);
+        })).isInstanceOf(HttpClientErrorException.class);
+        assertThat(idempotencyRecordRepository.findById(key)).isEmpty();
+
+        Payment payment = idempotencyService.execute(key, FINGERPRINT, this::savePayment);
+        assertThat(idempotencyRecordRepository.findById(key).orElseThrow().getPaymentId()).isEqualTo(payment.getId());
+    }
+
+    @Test
+    void replaysPaymentCommittedBeforeCrash() {
+        String key = UUID.randomUUID().toString();
+        // The replica saved the payment, then stopped before answering
+        assertThatThrownBy(() -> idempotencyService.execute(key, FINGERPRINT, reservation -> {
+            savePayment(reservation);
+            throw new IllegalStateException("Replica stopped");
+        })).isInstanceOf(IllegalStateException.class);
+        jdbcTemplate.update("UPDATE idempotency_record SET reserved_at = ?",
+                new Timestamp(System.currentTimeMillis() - Duration.ofMinutes(2).toMillis()));
+
+        Payment replayed = otherReplica().execute(key, FINGERPRINT, this::savePayment);
+
+        assertThat(paymentRepository.count()).isEqualTo(1);
+        assertThat(idempotencyRecordRepository.findById(key).orElseThrow().getPaymentId()).isEqualTo(replayed.getId());
+    }
+
+    @Test
+    void rollsBackPaymentWhenReservationIsTakenOver() {
+        String key = UUID.randomUUID().toString();
+        Timestamp otherReservation = new Timestamp(System.currentTimeMillis() + 1000);
+
+        assertThatThrownBy(() -> idempotencyService.execute(key, FINGERPRINT, reservation -> {
+            // Another replica takes the reservation over after its lease expired, while the payment was being created
+            jdbcTemplate.update("UPDATE idempotency_record SET reserved_at = ?", otherReservation);
+            return savePayment(reservation);
+        })).isInstanceOfSatisfying(HttpClientErrorException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+
+        assertThat(paymentRepository.count()).isZero();
+        IdempotencyRecord record = idempotencyRecordRepository.findById(key).orElseThrow();
+        assertThat(record.getPaymentId()).isNull();
+        assertThat(record.getReservedAt().getTime()).isEqualTo(otherReservation.getTime());
+    }
+
+    private IdempotencyService otherReplica() {
+        return new IdempotencyService(idempotencyRecordRepository, paymentRepository, new SimpleMeterRegistry(),
+                Duration.ofHours(24), Duration.ofMinutes(1), 100, false);
+    }
+
+    private Payment savePayment(IdempotencyService.Reservation reservation) {
+        Payment payment = new Payment();
+        payment.setRecruiterId(UUID.randomUUID());
+        payment.setPlanId(UUID.randomUUID());
+        payment.setPaymentDate(new Date());
+        payment.setExpiresOn(new Date(System.currentTimeMillis() + Duration.ofDays(30).toMillis()));
+        payment.setPaymentMethod(PaymentMethod.CREDIT_CARD);
+        payment.setAmount(new BigDecimal("49.99"));
+        payment.setCurrency("EUR");
+        return transactionTemplate.execute(status -> {
+            Payment saved = paymentRepository.save(payment);
+            reservation.complete(saved.getId());
+            return saved;
+        });
+    }
+}
@@ -0,0 +1,243 @@
+package fr.polytech.service;
+
+import fr.polytech.model.InvoiceOutbox;
+import fr.polytech.model.InvoiceOutboxStatus;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentBatchResultDTO;
+import fr.polytech.model.PaymentDTO;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.model.Plan;
+import fr.polytech.repository.InvoiceOutboxRepository;
+import fr.polytech.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * States of the invoice outbox entries: pending when the payment is saved, leased while being dispatched, deleted once
+ * the invoice id is set on the payment, pending again with backoff after a failure, and failed for good after the last
+ * attempt.
+ */
+@TestPropertySource(properties = {
+        "payment.invoice-outbox.enabled=true",
+        "payment.invoice-outbox.max-attempts=3",
+        "payment.invoice-outbox.initial-backoff=1m"
+})
+class InvoiceOutboxDispatcherTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private InvoiceOutboxDispatcher dispatcher;
+
+    @Autowired
+    private InvoiceOutboxRepository invoiceOutboxRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    private Plan plan;
+
+    @BeforeEach
+    void savePlan() {
+        plan = createPlan("Premium", 1);
+    }
+
+    @Test
+    void savesPaymentWithPendingEntry() {
+        Payment payment = paymentService.createPayment(payment(), BEARER_TOKEN);
+
+        assertThat(payment.getInvoiceId()).isNull();
+        InvoiceOutbox entry = singleEntry();
+        assertThat(entry.getPaymentId()).isEqualTo(payment.getId());
+        assertThat(entry.getStatus()).isEqualTo(InvoiceOutboxStatus.PENDING);
+        verify(paymentService, never()).createInvoice(any(), any());
+    }
+
+    @Test
+    void savesBatchWithPendingEntries() {
+        List<PaymentBatchResultDTO> results = paymentService.createPayments(List.of(payment(), payment(), payment()), BEARER_TOKEN, null, "admin");
+
+        assertThat(results).extracting(PaymentBatchResultDTO::getStatus).containsExactly(201, 201, 201);
+        assertThat(invoiceOutboxRepository.findAll()).extracting(InvoiceOutbox::getPaymentId)
+                .containsExactlyInAnyOrderElementsOf(results.stream().map(result -> result.getPayment().getId()).toList());
+        verify(paymentService, never()).createInvoice(any(), any());
+
+        dispatcher.dispatch();
+
+        assertThat(paymentRepository.findAll()).allSatisfy(payment -> assertThat(payment.getInvoiceId()).isNotNull());
+        assertThat(invoiceOutboxRepository.count()).isZero();
+    }
+
+    @Test
+    void setsInvoiceOnPaymentAndDeletesEntry() {
+        Payment payment = paymentService.createPayment(payment(), BEARER_TOKEN);
+
+        dispatcher.dispatch();
+
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getInvoiceId()).isNotNull();
+        assertThat(invoiceOutboxRepository.count()).isZero();
+        verify(paymentService).createInvoice(any(), argThat(headers ->
+                "Bearer service-account-token".equals(headers.getFirst(HttpHeaders.AUTHORIZATION))));
+    }
+
+    @Test
+    void retriesWithBackoffWhenInvoiceApiFails() {
+        paymentService.createPayment(payment(), BEARER_TOKEN);
+        doThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", HttpHeaders.EMPTY, null, null))
+                .when(paymentService).createInvoice(any(), any());
+
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+
+        InvoiceOutbox entry = singleEntry();
+        assertThat(entry.getStatus()).isEqualTo(InvoiceOutboxStatus.PENDING);
+        assertThat(entry.getAttempts()).isEqualTo(1);
+        assertThat(entry.getNextAttemptAt()).isAfter(new Date());
+        assertThat(entry.getLastError()).contains("503");
+        // Not due again before its backoff ends
+        verify(paymentService, times(1)).createInvoice(any(), any());
+    }
+
+    @Test
+    void failsEntryAfterLastAttempt() {
+        paymentService.createPayment(payment(), BEARER_TOKEN);
+        doThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", HttpHeaders.EMPTY, null, null))
+                .when(paymentService).createInvoice(any(), any());
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            makeDue();
+            dispatcher.dispatch();
+        }
+        makeDue();
+        dispatcher.dispatch();
+
+        InvoiceOutbox entry = singleEntry();
+        assertThat(entry.getStatus()).isEqualTo(InvoiceOutboxStatus.FAILED);
+        assertThat(entry.getAttempts()).isEqualTo(3);
+        verify(paymentService, times(3)).createInvoice(any(), any());
+    }
+
+    @Test
+    void failsEntryAtOnceOnClientError() {
+        paymentService.createPayment(payment(), BEARER_TOKEN);
+        doThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Invalid invoice data"))
+                .when(paymentService).createInvoice(any(), any());
+
+        dispatcher.dispatch();
+
+        InvoiceOutbox entry = singleEntry();
+        assertThat(entry.getStatus()).isEqualTo(InvoiceOutboxStatus.FAILED);
+        assertThat(entry.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void claimsEntryWhoseLeaseExpired() {
+        Payment payment = paymentService.createPayment(payment(), BEARER_TOKEN);
+        // Left dispatching by a replica that stopped, with its lease over
+        jdbcTemplate.update("UPDATE invoice_outbox SET status = 'DISPATCHING', next_attempt_at = ?",
+                new Timestamp(System.currentTimeMillis() - 1000));
+
+        dispatcher.dispatch();
+
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getInvoiceId()).isNotNull();
+        assertThat(invoiceOutboxRepository.count()).isZero();
+    }
+
+    @Test
+    void skipsEntryLeasedToAnotherReplica() {
+        paymentService.createPayment(payment(), BEARER_TOKEN);
+        jdbcTemplate.update("UPDATE invoice_outbox SET status = 'DISPATCHING', next_attempt_at = ?",
+                new Timestamp(System.currentTimeMillis() + 60_000));
+
+        dispatcher.dispatch();
+
+        assertThat(singleEntry().getStatus()).isEqualTo(InvoiceOutboxStatus.DISPATCHING);
+        verify(paymentService, never()).createInvoice(any(), any());
+    }
+
+    @Test
+    void keepsLeaseTakenOverDuringDispatch() {
+        paymentService.createPayment(payment(), BEARER_TOKEN);
+        Timestamp otherLease = new Timestamp(System.currentTimeMillis() + 120_000);
+        doAnswer(invocation -> {
+            // Another replica claims the entry after the lease of this one expired, while invoice-api was slow
+            jdbcTemplate.update("UPDATE invoice_outbox SET next_attempt_at = ?", otherLease);
+            throw HttpServerErrorException.create(HttpStatus.GATEWAY_TIMEOUT, "Gateway Timeout", HttpHeaders.EMPTY, null, null);
+        }).when(paymentService).createInvoice(any(), any());
+
+        dispatcher.dispatch();
+
+        InvoiceOutbox entry = singleEntry();
+        assertThat(entry.getStatus()).isEqualTo(InvoiceOutboxStatus.DISPATCHING);
+        assertThat(entry.getAttempts()).isZero();
+        assertThat(entry.getNextAttemptAt().getTime()).isEqualTo(otherLease.getTime());
+    }
+
+    @Test
+    void keepsLeaseTakenOverBeforeInvoiceIsRecorded() {
+        Payment payment = paymentService.createPayment(payment(), BEARER_TOKEN);
+        Timestamp otherLease = new Timestamp(System.currentTimeMillis() + 120_000);
+        doAnswer(invocation -> {
+            // Another replica claims the entry after the lease of this one expired, while invoice-api was slow
+            jdbcTemplate.update("UPDATE invoice_outbox SET next_attempt_at = ?", otherLease);
+            return invoice();
+        }).when(paymentService).createInvoice(any(), any());
+
+        dispatcher.dispatch();
+
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getInvoiceId()).isNull();
+        InvoiceOutbox entry = singleEntry();
+        assertThat(entry.getStatus()).isEqualTo(InvoiceOutboxStatus.DISPATCHING);
+        assertThat(entry.getNextAttemptAt().getTime()).isEqualTo(otherLease.getTime());
+    }
+
+    @Test
+    void keepsInvoiceAlreadySetOnPayment() {
+        Payment payment = paymentService.createPayment(payment(), BEARER_TOKEN);
+        UUID invoiceId = UUID.randomUUID();
+        jdbcTemplate.update("UPDATE payment SET invoice_id = ?", invoiceId);
+
+        dispatcher.dispatch();
+
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getInvoiceId()).isEqualTo(invoiceId);
+        assertThat(invoiceOutboxRepository.count()).isZero();
+    }
+
+    private InvoiceOutbox singleEntry() {
+        List<InvoiceOutbox> entries = invoiceOutboxRepository.findAll();
+        assertThat(entries).hasSize(1);
+        return entries.get(0);
+    }
+
+    private void makeDue() {
+        jdbcTemplate.update("UPDATE invoice_outbox SET next_attempt_at = ? WHERE status = 'PENDING'",
+                new Timestamp(System.currentTimeMillis() - 1000));
+    }
+
+    private PaymentDTO payment() {
+        PaymentDTO payment = new PaymentDTO();
+        payment.setRecruiterId(UUID.randomUUID());
+        payment.setPlanId(plan.getId());
+        payment.setPaymentDate(new Date());
+        payment.setPaymentMethod(PaymentMethod.PAYPAL);
+        return payment;
+    }
+}
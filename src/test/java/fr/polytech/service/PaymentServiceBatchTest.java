@@ -0,0 +1,146 @@
+package fr.polytech.service;
+
+import fr.polytech.model.IdempotencyRecord;
+import fr.polytech.model.InvoiceDataDTO;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentBatchResultDTO;
+import fr.polytech.model.PaymentDTO;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.model.Plan;
+import fr.polytech.model.RecruiterDTO;
+import fr.polytech.repository.IdempotencyRecordRepository;
+import fr.polytech.repository.PaymentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Batch payments failing for some of their items, before or while being inserted: the other items are saved, and a
+ * retried batch replays them under its idempotency key.
+ */
+class PaymentServiceBatchTest extends PostgresIntegrationTest {
+
+    private static final String UNPAID_NAME = "Unpaid";
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private final UUID recruiterId = UUID.randomUUID();
+
+    private final UUID candidateId = UUID.randomUUID();
+
+    private final UUID unpaidRecruiterId = UUID.randomUUID();
+
+    private final AtomicBoolean invoiceApiDown = new AtomicBoolean(true);
+
+    private Plan plan;
+
+    @BeforeEach
+    void stubUpstreams() {
+        plan = createPlan("Premium", 1);
+        doReturn(recruiter(candidateId, "candidate")).when(upstreamCache).getRecruiter(any(), eq(candidateId), any());
+        RecruiterDTO unpaidRecruiter = recruiter(unpaidRecruiterId, "recruiter");
+        unpaidRecruiter.setLastName(UNPAID_NAME);
+        doReturn(unpaidRecruiter).when(upstreamCache).getRecruiter(any(), eq(unpaidRecruiterId), any());
+        doAnswer(invocation -> {
+            InvoiceDataDTO invoiceData = invocation.getArgument(0);
+            if (UNPAID_NAME.equals(invoiceData.getName()) && invoiceApiDown.get()) {
+                throw HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", HttpHeaders.EMPTY, null, null);
+            }
+            return invoice();
+        }).when(paymentService).createInvoice(any(), any());
+    }
+
+    @Test
+    void savesTheItemsThatSucceed() {
+        List<PaymentBatchResultDTO> results = paymentService.createPayments(batch(), BEARER_TOKEN, null, "admin");
+
+        assertThat(results).extracting(PaymentBatchResultDTO::getIndex).containsExactly(0, 1, 2, 3, 4);
+        assertThat(results).extracting(PaymentBatchResultDTO::getStatus).containsExactly(201, 404, 403, 503, 201);
+        assertThat(results.get(1).getPayment()).isNull();
+        assertThat(results.get(3).getError()).isEqualTo("Service Unavailable");
+
+        List<Payment> payments = paymentRepository.findAll();
+        assertThat(payments).hasSize(2);
+        assertThat(payments).allSatisfy(payment -> {
+            assertThat(payment.getRecruiterId()).isEqualTo(recruiterId);
+            assertThat(payment.getInvoiceId()).isNotNull();
+        });
+    }
+
+    @Test
+    void replaysSavedItemsWhenBatchIsRetried() {
+        List<PaymentDTO> batch = batch();
+        List<PaymentBatchResultDTO> first = paymentService.createPayments(batch, BEARER_TOKEN, "batch-key", "admin");
+
+        invoiceApiDown.set(false);
+        List<PaymentBatchResultDTO> retried = paymentService.createPayments(batch, BEARER_TOKEN, "batch-key", "admin");
+
+        assertThat(retried).extracting(PaymentBatchResultDTO::getStatus).containsExactly(201, 404, 403, 201, 201);
+        assertThat(retried.get(0).getPayment().getId()).isEqualTo(first.get(0).getPayment().getId());
+        assertThat(retried.get(4).getPayment().getId()).isEqualTo(first.get(4).getPayment().getId());
+        assertThat(retried.get(3).getPayment().getRecruiterId()).isEqualTo(unpaidRecruiterId);
+        assertThat(paymentRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void savesTheOtherItemsOfChunkWhoseInsertFails() {
+        UUID rejectedRecruiterId = UUID.randomUUID();
+        jdbcTemplate.execute("ALTER TABLE payment ADD CONSTRAINT payment_rejected_check CHECK (recruiter_id <> '" + rejectedRecruiterId + "')");
+        try {
+            List<PaymentBatchResultDTO> results = paymentService.createPayments(List.of(
+                    payment(recruiterId, plan.getId()),
+                    payment(rejectedRecruiterId, plan.getId()),
+                    payment(recruiterId, plan.getId())
+            ), BEARER_TOKEN, "rejected-batch-key", "admin");
+
+            assertThat(results).extracting(PaymentBatchResultDTO::getStatus).containsExactly(201, 500, 201);
+            assertThat(paymentRepository.findAll()).extracting(Payment::getRecruiterId).containsOnly(recruiterId).hasSize(2);
+            // The key of the rejected item is released, so that the batch can be retried
+            assertThat(idempotencyRecordRepository.findAll()).extracting(IdempotencyRecord::getPaymentId)
+                    .containsExactlyInAnyOrder(results.get(0).getPayment().getId(), results.get(2).getPayment().getId());
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE payment DROP CONSTRAINT payment_rejected_check");
+        }
+    }
+
+    /**
+     * Batch of a valid payment, a payment for an unknown plan, a payment of a user who is not a recruiter, a payment
+     * whose invoice cannot be created while invoice-api is down, and another valid payment.
+     */
+    private List<PaymentDTO> batch() {
+        return List.of(
+                payment(recruiterId, plan.getId()),
+                payment(recruiterId, UUID.randomUUID()),
+                payment(candidateId, plan.getId()),
+                payment(unpaidRecruiterId, plan.getId()),
+                payment(recruiterId, plan.getId())
+        );
+    }
+
+    private static PaymentDTO payment(UUID recruiterId, UUID planId) {
+        PaymentDTO payment = new PaymentDTO();
+        payment.setRecruiterId(recruiterId);
+        payment.setPlanId(planId);
+        payment.setPaymentDate(new Date());
+        payment.setPaymentMethod(PaymentMethod.CREDIT_CARD);
+        return payment;
+    }
+}
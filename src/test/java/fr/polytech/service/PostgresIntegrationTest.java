@@ -0,0 +1,184 @@
+package fr.polytech.service;
+
+import fr.polytech.model.AddressDTO;
+import fr.polytech.model.InvoiceDTO;
+import fr.polytech.model.Plan;
+import fr.polytech.model.RecruiterDTO;
+import fr.polytech.repository.PlanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.Clock;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Application started against PostgreSQL, with the schema created by Hibernate and without the config server, Eureka
+ * or Keycloak. The database is a container started once for the whole run, or the database of TEST_DATABASE_URL
+ * (with TEST_DATABASE_USERNAME and TEST_DATABASE_PASSWORD) on hosts without Docker. The tests are skipped when neither
+ * is available, and each test starts from empty tables.
+ * Scheduling is stubbed, so the jobs only run when a test calls them, unless the test sets test.scheduling.enabled.
+ * The other microservices are replaced by stubs of the upstream cache, the invoice creation and the service account.
+ */
+@SpringBootTest
+@Import(PostgresIntegrationTest.NoScheduling.class)
+@EnabledIf("fr.polytech.service.PostgresIntegrationTest#databaseAvailable")
+@TestPropertySource(properties = {
+        "CONFIG_SERVER_URI=http://localhost:8888",
+        "eureka.client.enabled=false",
+        "spring.security.oauth2.resourceserver.jwt.issuer-uri=http://keycloak.test/realms/seasonsforce",
+        "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=http://keycloak.test/realms/seasonsforce/protocol/openid-connect/certs",
+        "payment.jwk.warm-up=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "payment.renewal.enabled=true",
+        "payment.renewal.rate=0"
+})
+abstract class PostgresIntegrationTest {
+
+    static final String BEARER_TOKEN = "Bearer service-account-token";
+
+    private static final String DATABASE_URL = System.getenv("TEST_DATABASE_URL");
+
+    /**
+     * Started once for the whole run rather than per test class, as the application contexts using it are cached
+     * across test classes.
+     */
+    private static PostgreSQLContainer<?> postgres;
+
+    @MockBean
+    ServiceAccountTokenProvider tokenProvider;
+
+    @MockBean
+    UpstreamCache upstreamCache;
+
+    @SpyBean
+    PaymentService paymentService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    PlanRepository planRepository;
+
+    @Autowired
+    PlanCatalog planCatalog;
+
+    static boolean databaseAvailable() {
+        return DATABASE_URL != null || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    @DynamicPropertySource
+    static synchronized void databaseProperties(DynamicPropertyRegistry registry) {
+        if (DATABASE_URL != null) {
+            registry.add("spring.datasource.url", () -> DATABASE_URL);
+            registry.add("spring.datasource.username", () -> Objects.requireNonNullElse(System.getenv("TEST_DATABASE_USERNAME"), "postgres"));
+            registry.add("spring.datasource.password", () -> Objects.requireNonNullElse(System.getenv("TEST_DATABASE_PASSWORD"), ""));
+            return;
+        }
+        if (postgres == null) {
+            postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+            postgres.start();
+        }
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @BeforeEach
+    void resetState() {
+        List<String> tables = jdbcTemplate.queryForList("SELECT tablename FROM pg_tables WHERE schemaname = current_schema()", String.class);
+        jdbcTemplate.execute("TRUNCATE " + String.join(", ", tables));
+        when(tokenProvider.getBearerToken()).thenReturn(BEARER_TOKEN);
+        when(upstreamCache.getRecruiter(any(), any(), any())).thenAnswer(invocation -> recruiter(invocation.getArgument(1), "recruiter"));
+        when(upstreamCache.getAddress(any(), any(), any())).thenAnswer(invocation -> address(invocation.getArgument(1)));
+        doAnswer(invocation -> invoice()).when(paymentService).createInvoice(any(), any());
+    }
+
+    /**
+     * Save a plan and reload the plan catalog.
+     *
+     * @param name           Plan name.
+     * @param monthsDuration Plan duration in months.
+     * @return Saved plan.
+     */
+    Plan createPlan(String name, int monthsDuration) {
+        return transactionTemplate.execute(status -> {
+            Plan plan = new Plan();
+            plan.setName(name);
+            plan.setDescription(name);
+            plan.setPrice(49.99f);
+            plan.setCurrency("EUR");
+            plan.setMonthsDuration(monthsDuration);
+            Plan saved = planRepository.save(plan);
+            planCatalog.planChanged();
+            return saved;
+        });
+    }
+
+    static RecruiterDTO recruiter(UUID id, String role) {
+        RecruiterDTO recruiter = new RecruiterDTO();
+        recruiter.setId(id);
+        recruiter.setFirstName("Jane");
+        recruiter.setLastName("Doe");
+        recruiter.setRole(role);
+        recruiter.setAddressId(UUID.nameUUIDFromBytes(id.toString().getBytes()));
+        return recruiter;
+    }
+
+    static AddressDTO address(UUID id) {
+        AddressDTO address = new AddressDTO();
+        address.setId(id);
+        address.setStreet("Route des Colles");
+        address.setNumber("930");
+        address.setCity("Biot");
+        address.setZipCode("06410");
+        address.setCountry("France");
+        return address;
+    }
+
+    static InvoiceDTO invoice() {
+        InvoiceDTO invoice = new InvoiceDTO();
+        invoice.setId(UUID.randomUUID());
+        return invoice;
+    }
+
+    /**
+     * Scheduler of the @Scheduled methods that never runs them.
+     */
+    @TestConfiguration
+    @ConditionalOnProperty(name = "test.scheduling.enabled", havingValue = "false", matchIfMissing = true)
+    static class NoScheduling {
+
+        @Bean
+        TaskScheduler taskScheduler() {
+            TaskScheduler taskScheduler = mock(TaskScheduler.class);
+            when(taskScheduler.getClock()).thenReturn(Clock.systemDefaultZone());
+            return taskScheduler;
+        }
+    }
+}
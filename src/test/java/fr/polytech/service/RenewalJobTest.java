@@ -0,0 +1,228 @@
+package fr.polytech.service;
+
+import fr.polytech.model.AutoRenewal;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.model.Plan;
+import fr.polytech.model.RenewalTask;
+import fr.polytech.model.RenewalTaskStatus;
+import fr.polytech.repository.AutoRenewalRepository;
+import fr.polytech.repository.IdempotencyRecordRepository;
+import fr.polytech.repository.PaymentRepository;
+import fr.polytech.repository.RenewalTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Renewals leased to the job while they run, renewed once, retried with backoff, postponed without using up an
+ * attempt, or given up on.
+ */
+class RenewalJobTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private RenewalJob renewalJob;
+
+    @Autowired
+    private RenewalTaskRepository renewalTaskRepository;
+
+    @Autowired
+    private AutoRenewalRepository autoRenewalRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    private final UUID recruiterId = UUID.randomUUID();
+
+    private final UUID renewedPaymentId = UUID.randomUUID();
+
+    private Plan plan;
+
+    @BeforeEach
+    void queueRenewal() {
+        plan = createPlan("Premium", 1);
+        AutoRenewal autoRenewal = new AutoRenewal();
+        autoRenewal.setRecruiterId(recruiterId);
+        autoRenewal.setCreatedAt(new Date());
+        autoRenewalRepository.save(autoRenewal);
+
+        RenewalTask task = new RenewalTask();
+        task.setPaymentId(renewedPaymentId);
+        task.setRecruiterId(recruiterId);
+        task.setPlanId(plan.getId());
+        task.setExpiresOn(in(Duration.ofDays(2)));
+        task.setPaymentMethod(PaymentMethod.CREDIT_CARD);
+        task.setStatus(RenewalTaskStatus.PENDING);
+        task.setNextAttemptAt(new Date());
+        task.setCreatedAt(new Date());
+        renewalTaskRepository.save(task);
+    }
+
+    @Test
+    void renewsSubscriptionFromItsExpiry() {
+        renewalJob.run();
+
+        RenewalTask task = task();
+        assertThat(task.getStatus()).isEqualTo(RenewalTaskStatus.RENEWED);
+        assertThat(task.getAttempts()).isEqualTo(1);
+        Payment renewal = paymentRepository.findById(task.getRenewalPaymentId()).orElseThrow();
+        assertThat(renewal.getRecruiterId()).isEqualTo(recruiterId);
+        assertThat(renewal.getPlanId()).isEqualTo(plan.getId());
+        assertThat(renewal.getExpiresOn().getTime()).isEqualTo(PaymentService.computeExpiryDate(task.getExpiresOn(), 1).getTime());
+    }
+
+    @Test
+    void doesNotChargeTwiceWhenRenewalRunsAgain() {
+        renewalJob.run();
+        UUID renewalPaymentId = task().getRenewalPaymentId();
+        // The replica crashed before recording the outcome: the renewal is claimed again once its lease expires
+        jdbcTemplate.update("UPDATE renewal_task SET status = 'RUNNING', next_attempt_at = ?",
+                new Timestamp(System.currentTimeMillis() - 1000));
+
+        renewalJob.run();
+
+        assertThat(task().getRenewalPaymentId()).isEqualTo(renewalPaymentId);
+        assertThat(paymentRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelsRenewalOfRecruiterWhoOptedOut() {
+        autoRenewalRepository.deleteById(recruiterId);
+
+        renewalJob.run();
+
+        assertThat(task().getStatus()).isEqualTo(RenewalTaskStatus.CANCELLED);
+        verify(paymentService, never()).renewPayment(any(), any(), any(), any());
+    }
+
+    @Test
+    void retriesWithBackoffWhenInvoiceApiFails() {
+        doThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", HttpHeaders.EMPTY, null, null))
+                .when(paymentService).createInvoice(any(), any());
+
+        renewalJob.run();
+
+        RenewalTask task = task();
+        assertThat(task.getStatus()).isEqualTo(RenewalTaskStatus.PENDING);
+        assertThat(task.getAttempts()).isEqualTo(1);
+        // Initial backoff of one minute, with jitter of up to half of it
+        assertThat(task.getNextAttemptAt()).isAfter(in(Duration.ofSeconds(29)));
+        assertThat(task.getNextAttemptAt()).isBefore(in(Duration.ofSeconds(61)));
+        assertThat(task.getLastError()).contains("503");
+        assertThat(idempotencyRecordRepository.count()).isZero();
+    }
+
+    @Test
+    void failsRenewalAfterLastAttempt() {
+        jdbcTemplate.update("UPDATE renewal_task SET attempts = 4");
+        doThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", HttpHeaders.EMPTY, null, null))
+                .when(paymentService).createInvoice(any(), any());
+
+        renewalJob.run();
+
+        RenewalTask task = task();
+        assertThat(task.getStatus()).isEqualTo(RenewalTaskStatus.FAILED);
+        assertThat(task.getAttempts()).isEqualTo(5);
+    }
+
+    @Test
+    void failsRenewalAtOnceOnClientError() {
+        doThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Invalid invoice data"))
+                .when(paymentService).createInvoice(any(), any());
+
+        renewalJob.run();
+
+        RenewalTask task = task();
+        assertThat(task.getStatus()).isEqualTo(RenewalTaskStatus.FAILED);
+        assertThat(task.getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void postponesRenewalWithoutAttemptWhileReservationIsHeld() {
+        // An attempt whose lease expired is still creating the payment on another replica
+        String key = recruiterId + ":renewal:" + renewedPaymentId;
+        String fingerprint = IdempotencyService.fingerprint(plan.getId().toString().getBytes(StandardCharsets.UTF_8));
+        idempotencyRecordRepository.reserve(key, fingerprint, new Date());
+
+        renewalJob.run();
+
+        RenewalTask task = task();
+        assertThat(task.getStatus()).isEqualTo(RenewalTaskStatus.PENDING);
+        assertThat(task.getAttempts()).isZero();
+        assertThat(task.getNextAttemptAt()).isAfter(in(Duration.ofSeconds(59)));
+        assertThat(paymentRepository.count()).isZero();
+    }
+
+    @Test
+    void postponesRunWithoutAttemptWhenTokenIsUnavailable() {
+        when(tokenProvider.getBearerToken()).thenThrow(new HttpClientErrorException(HttpStatus.UNAUTHORIZED, "No service account configured"));
+
+        renewalJob.run();
+
+        RenewalTask task = task();
+        assertThat(task.getStatus()).isEqualTo(RenewalTaskStatus.PENDING);
+        assertThat(task.getAttempts()).isZero();
+        verify(paymentService, never()).renewPayment(any(), any(), any(), any());
+    }
+
+    @Test
+    void skipsRenewalLeasedToAnotherReplica() {
+        Timestamp lease = new Timestamp(System.currentTimeMillis() + 60_000);
+        jdbcTemplate.update("UPDATE renewal_task SET status = 'RUNNING', next_attempt_at = ?", lease);
+
+        renewalJob.run();
+
+        RenewalTask task = task();
+        assertThat(task.getStatus()).isEqualTo(RenewalTaskStatus.RUNNING);
+        assertThat(task.getNextAttemptAt().getTime()).isEqualTo(lease.getTime());
+        verify(paymentService, never()).renewPayment(any(), any(), any(), any());
+    }
+
+    @Test
+    void keepsLeaseTakenOverDuringRenewal() {
+        Timestamp otherLease = new Timestamp(System.currentTimeMillis() + 600_000);
+        doThrow(HttpServerErrorException.create(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable", HttpHeaders.EMPTY, null, null))
+                .when(paymentService).createInvoice(any(), any());
+        doAnswer(invocation -> {
+            // Another replica claims the renewal after the lease of this one expired, while address-api was slow
+            jdbcTemplate.update("UPDATE renewal_task SET next_attempt_at = ?", otherLease);
+            return address(invocation.getArgument(1));
+        }).when(upstreamCache).getAddress(any(), any(), any());
+
+        renewalJob.run();
+
+        RenewalTask task = task();
+        assertThat(task.getStatus()).isEqualTo(RenewalTaskStatus.RUNNING);
+        assertThat(task.getAttempts()).isZero();
+        assertThat(task.getNextAttemptAt().getTime()).isEqualTo(otherLease.getTime());
+    }
+
+    private RenewalTask task() {
+        return renewalTaskRepository.findById(renewedPaymentId).orElseThrow();
+    }
+
+    private static Date in(Duration duration) {
+        return new Date(System.currentTimeMillis() + duration.toMillis());
+    }
+}
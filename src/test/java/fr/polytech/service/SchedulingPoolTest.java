@@ -0,0 +1,109 @@
+package fr.polytech.service;
+
+import fr.polytech.model.AutoRenewal;
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentDTO;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.model.Plan;
+import fr.polytech.model.RenewalTask;
+import fr.polytech.model.RenewalTaskStatus;
+import fr.polytech.repository.AutoRenewalRepository;
+import fr.polytech.repository.PaymentRepository;
+import fr.polytech.repository.RenewalTaskRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Scheduled jobs run by the scheduler of the application, with its configured pool: the invoice outbox keeps being
+ * dispatched while a renewal run waits on slow renewals. The context is closed after the class, so its jobs stop before
+ * other tests run, without dropping the schema the cached contexts use. The jobs reading several tables are disabled,
+ * as they would deadlock with the truncation of the tables before the test.
+ */
+@DirtiesContext
+@TestPropertySource(properties = {
+        "test.scheduling.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=create",
+        "payment.expiry.enabled=false",
+        "payment.plan-catalog.reconcile-enabled=false",
+        "payment.idempotency.purge-enabled=false",
+        "payment.analytics.purge-cron=-",
+        "payment.invoice-outbox.enabled=true",
+        "payment.invoice-outbox.poll-interval=100",
+        "payment.renewal.poll-interval=100"
+})
+class SchedulingPoolTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private RenewalTaskRepository renewalTaskRepository;
+
+    @Autowired
+    private AutoRenewalRepository autoRenewalRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Test
+    void dispatchesInvoicesDuringLongRenewalRun() throws InterruptedException {
+        CountDownLatch renewalStarted = new CountDownLatch(1);
+        CountDownLatch renewalReleased = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            renewalStarted.countDown();
+            renewalReleased.await(30, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(paymentService).renewPayment(any(), any(), any(), any());
+        Plan plan = createPlan("Premium", 1);
+        queueRenewal(plan);
+
+        try {
+            assertThat(renewalStarted.await(10, TimeUnit.SECONDS)).isTrue();
+            Payment payment = paymentService.createPayment(payment(plan), BEARER_TOKEN);
+
+            await().atMost(Duration.ofSeconds(10)).until(() ->
+                    paymentRepository.findById(payment.getId()).orElseThrow().getInvoiceId() != null);
+            assertThat(renewalReleased.getCount()).isOne();
+        } finally {
+            renewalReleased.countDown();
+        }
+    }
+
+    private void queueRenewal(Plan plan) {
+        UUID recruiterId = UUID.randomUUID();
+        AutoRenewal autoRenewal = new AutoRenewal();
+        autoRenewal.setRecruiterId(recruiterId);
+        autoRenewal.setCreatedAt(new Date());
+        autoRenewalRepository.save(autoRenewal);
+
+        RenewalTask task = new RenewalTask();
+        task.setPaymentId(UUID.randomUUID());
+        task.setRecruiterId(recruiterId);
+        task.setPlanId(plan.getId());
+        task.setExpiresOn(new Date(System.currentTimeMillis() + Duration.ofDays(2).toMillis()));
+        task.setPaymentMethod(PaymentMethod.CREDIT_CARD);
+        task.setStatus(RenewalTaskStatus.PENDING);
+        task.setNextAttemptAt(new Date());
+        task.setCreatedAt(new Date());
+        renewalTaskRepository.save(task);
+    }
+
+    private static PaymentDTO payment(Plan plan) {
+        PaymentDTO payment = new PaymentDTO();
+        payment.setRecruiterId(UUID.randomUUID());
+        payment.setPlanId(plan.getId());
+        payment.setPaymentDate(new Date());
+        payment.setPaymentMethod(PaymentMethod.PAYPAL);
+        return payment;
+    }
+}
@@ -0,0 +1,175 @@
+package fr.polytech.service;
+
+import fr.polytech.model.Payment;
+import fr.polytech.model.PaymentMethod;
+import fr.polytech.model.SubscriptionEvent;
+import fr.polytech.model.SubscriptionEventType;
+import fr.polytech.model.SubscriptionExpiredEvent;
+import fr.polytech.model.SubscriptionExpiryEvent;
+import fr.polytech.model.SubscriptionExpiryWatermark;
+import fr.polytech.model.SubscriptionRenewalDueEvent;
+import fr.polytech.repository.PaymentRepository;
+import fr.polytech.repository.SubscriptionExpiryWatermarkRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.web.client.HttpClientErrorException;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Expiry events published from the expires_on index, with the position of each stage stored as a watermark that the
+ * replica holding the lock resumes after.
+ */
+@RecordApplicationEvents
+class SubscriptionExpirySchedulerTest extends PostgresIntegrationTest {
+
+    private static final long LOCK_KEY = 4823011;
+
+    @Autowired
+    private SubscriptionExpiryScheduler scheduler;
+
+    @Autowired
+    private SubscriptionExpiryWatermarkRepository watermarkRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private SubscriptionEventService subscriptionEventService;
+
+    @Autowired
+    private ApplicationEvents events;
+
+    @Test
+    void publishesRenewalDueOnceAndStoresWatermark() {
+        Payment dueSoon = savePayment(in(Duration.ofDays(1)));
+        savePayment(in(Duration.ofDays(30)));
+
+        scheduler.tick();
+        scheduler.tick();
+
+        assertThat(events.stream(SubscriptionRenewalDueEvent.class))
+                .extracting(SubscriptionExpiryEvent::getPaymentId)
+                .containsExactly(dueSoon.getId());
+        SubscriptionExpiryWatermark watermark = watermarkRepository.findById("RENEWAL_DUE").orElseThrow();
+        assertThat(watermark.getPaymentId()).isEqualTo(dueSoon.getId());
+        assertThat(watermark.getExpiresOn().getTime()).isEqualTo(dueSoon.getExpiresOn().getTime());
+    }
+
+    @Test
+    void resumesAfterStoredWatermark() {
+        Payment published = savePayment(in(Duration.ofMinutes(-30)));
+        Payment next = savePayment(in(Duration.ofMinutes(-20)));
+        Payment last = savePayment(in(Duration.ofMinutes(-10)));
+        // Left by the replica that held the lock before
+        watermarkRepository.save(new SubscriptionExpiryWatermark("EXPIRED", published.getExpiresOn(), published.getId()));
+
+        scheduler.tick();
+
+        assertThat(events.stream(SubscriptionExpiredEvent.class))
+                .extracting(SubscriptionExpiryEvent::getPaymentId)
+                .containsExactly(next.getId(), last.getId());
+        assertThat(watermarkRepository.findById("EXPIRED").orElseThrow().getPaymentId()).isEqualTo(last.getId());
+    }
+
+    @Test
+    void resumesFromStoredWatermarkWhenAnotherReplicaPublishedMeanwhile() throws InterruptedException {
+        Payment first = savePayment(in(Duration.ofSeconds(2)));
+        Payment second = savePayment(in(Duration.ofSeconds(3)));
+        scheduler.tick();
+        assertThat(events.stream(SubscriptionExpiredEvent.class)).isEmpty();
+
+        Thread.sleep(3500);
+        // Another replica got the lock in between and published the first expiry
+        watermarkRepository.save(new SubscriptionExpiryWatermark("EXPIRED", first.getExpiresOn(), first.getId()));
+        scheduler.tick();
+
+        assertThat(events.stream(SubscriptionExpiredEvent.class))
+                .extracting(SubscriptionExpiryEvent::getPaymentId)
+                .containsExactly(second.getId());
+    }
+
+    @Test
+    void publishesNothingWhileAnotherReplicaHoldsLock() throws Exception {
+        savePayment(in(Duration.ofDays(1)));
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.createStatement().execute("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")");
+            scheduler.tick();
+            connection.rollback();
+        }
+        assertThat(events.stream(SubscriptionExpiryEvent.class)).isEmpty();
+
+        scheduler.tick();
+        assertThat(events.stream(SubscriptionRenewalDueEvent.class)).hasSize(1);
+    }
+
+    @Test
+    void storesEventsInPublicationOrder() {
+        Payment previous = savePayment(in(Duration.ofMinutes(-20)));
+        Payment expired = savePayment(in(Duration.ofMinutes(-10)));
+        watermarkRepository.save(new SubscriptionExpiryWatermark("EXPIRED", previous.getExpiresOn(), previous.getId()));
+        scheduler.tick();
+        Payment dueSoon = savePayment(in(Duration.ofDays(1)));
+        scheduler.tick();
+
+        assertThat(subscriptionEventService.getEventsAfter(0, 10))
+                .extracting(SubscriptionEvent::getId, SubscriptionEvent::getType, SubscriptionEvent::getPaymentId)
+                .containsExactly(
+                        tuple(1L, SubscriptionEventType.EXPIRED, expired.getId()),
+                        tuple(2L, SubscriptionEventType.RENEWAL_DUE, dueSoon.getId())
+                );
+    }
+
+    @Test
+    void readsEventsAfterLastReadOne() {
+        Payment previous = savePayment(in(Duration.ofMinutes(-40)));
+        Payment first = savePayment(in(Duration.ofMinutes(-30)));
+        Payment second = savePayment(in(Duration.ofMinutes(-20)));
+        Payment third = savePayment(in(Duration.ofMinutes(-10)));
+        watermarkRepository.save(new SubscriptionExpiryWatermark("EXPIRED", previous.getExpiresOn(), previous.getId()));
+        scheduler.tick();
+
+        List<SubscriptionEvent> page = subscriptionEventService.getEventsAfter(0, 2);
+        assertThat(page).extracting(SubscriptionEvent::getPaymentId).containsExactly(first.getId(), second.getId());
+        long lastRead = page.get(page.size() - 1).getId();
+        assertThat(subscriptionEventService.getEventsAfter(lastRead, 2))
+                .extracting(SubscriptionEvent::getPaymentId)
+                .containsExactly(third.getId());
+        assertThat(subscriptionEventService.getEventsAfter(lastRead + 1, 2)).isEmpty();
+        assertThatThrownBy(() -> subscriptionEventService.getEventsAfter(0, 0))
+                .isInstanceOf(HttpClientErrorException.class);
+    }
+
+    private Payment savePayment(Date expiresOn) {
+        Payment payment = new Payment();
+        payment.setRecruiterId(UUID.randomUUID());
+        payment.setPlanId(UUID.randomUUID());
+        payment.setPaymentDate(new Date());
+        payment.setExpiresOn(expiresOn);
+        payment.setPaymentMethod(PaymentMethod.CREDIT_CARD);
+        payment.setAmount(new BigDecimal("49.99"));
+        payment.setCurrency("EUR");
+        return paymentRepository.save(payment);
+    }
+
+    private static Date in(Duration duration) {
+        return new Date(System.currentTimeMillis() + duration.toMillis());
+    }
+}